@@ -29,6 +29,7 @@ import ch.njol.skript.lang.Statement;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.lang.TriggerSection;
 import ch.njol.skript.lang.parser.ParserInstance;
+import ch.njol.skript.lang.parser.ScriptParseCache;
 import ch.njol.skript.log.CountingLogHandler;
 import ch.njol.skript.log.LogEntry;
 import ch.njol.skript.log.RetainingLogHandler;
@@ -607,6 +608,14 @@ public class ScriptLoader {
 				} finally {
 					parser.setInactive();
 
+					for (NonNullPair<Script, List<Structure>> pair : scripts) {
+						ScriptParseCache cache = pair.getFirst().getData(ScriptParseCache.class);
+						if (cache != null) {
+							cache.save();
+							pair.getFirst().removeData(ScriptParseCache.class);
+						}
+					}
+
 					openCloseable.close();
 				}
 			});
@@ -625,6 +634,7 @@ public class ScriptLoader {
 		ParserInstance parser = getParser();
 		List<Structure> structures = new ArrayList<>();
 		Script script = new Script(config, structures);
+		ScriptParseCache.load(script);
 		parser.setActive(script);
 
 		try {
@@ -958,6 +968,7 @@ public class ScriptLoader {
 				if (Skript.debug() || subNode.debug())
 					Skript.debug(SkriptColor.replaceColorChar(parser.getIndentation() + stmt.toString(null, true)));
 
+				stmt.setLineNumber(subNode.getLine());
 				items.add(stmt);
 			} else if (subNode instanceof SectionNode) {
 				TypeHints.enterScope(); // Begin conditional type hints
@@ -969,6 +980,7 @@ public class ScriptLoader {
 				if (Skript.debug() || subNode.debug())
 					Skript.debug(SkriptColor.replaceColorChar(parser.getIndentation() + section.toString(null, true)));
 
+				section.setLineNumber(subNode.getLine());
 				items.add(section);
 
 				// Destroy these conditional type hints
@@ -43,6 +43,7 @@ import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.SkriptEventInfo;
 import ch.njol.skript.lang.Statement;
 import ch.njol.skript.lang.SyntaxElementInfo;
+import ch.njol.skript.lang.SyntaxIndex;
 import ch.njol.skript.lang.Trigger;
 import ch.njol.skript.lang.TriggerItem;
 import ch.njol.skript.lang.util.SimpleExpression;
@@ -1298,11 +1299,15 @@ public final class Skript extends JavaPlugin implements Listener {
 	}
 	
 	private static void stopAcceptingRegistrations() {
-		Converters.createChainedConverters();
-
 		acceptRegistrations = false;
 		
 		Classes.onRegistrationsStop();
+
+		conditionIndex.build();
+		effectIndex.build();
+		statementIndex.build();
+		sectionIndex.build();
+		expressionIndex.build();
 	}
 	
 	// ================ ADDONS ================
@@ -1360,6 +1365,11 @@ public final class Skript extends JavaPlugin implements Listener {
 	private static final Collection<SyntaxElementInfo<? extends Statement>> statements = new ArrayList<>(100);
 	private static final Collection<SyntaxElementInfo<? extends Section>> sections = new ArrayList<>(50);
 
+	private static final SyntaxIndex<SyntaxElementInfo<? extends Condition>> conditionIndex = new SyntaxIndex<>(conditions);
+	private static final SyntaxIndex<SyntaxElementInfo<? extends Effect>> effectIndex = new SyntaxIndex<>(effects);
+	private static final SyntaxIndex<SyntaxElementInfo<? extends Statement>> statementIndex = new SyntaxIndex<>(statements);
+	private static final SyntaxIndex<SyntaxElementInfo<? extends Section>> sectionIndex = new SyntaxIndex<>(sections);
+
 	/**
 	 * registers a {@link Condition}.
 	 * 
@@ -1418,11 +1428,45 @@ public final class Skript extends JavaPlugin implements Listener {
 		return sections;
 	}
 
+	/**
+	 * @param expr The expression to parse.
+	 * @return The statements that may match the given expression, see {@link SyntaxIndex}.
+	 */
+	public static Iterator<SyntaxElementInfo<? extends Statement>> getStatements(String expr) {
+		return statementIndex.getCandidates(expr);
+	}
+
+	/**
+	 * @param expr The expression to parse.
+	 * @return The conditions that may match the given expression, see {@link SyntaxIndex}.
+	 */
+	public static Iterator<SyntaxElementInfo<? extends Condition>> getConditions(String expr) {
+		return conditionIndex.getCandidates(expr);
+	}
+
+	/**
+	 * @param expr The expression to parse.
+	 * @return The effects that may match the given expression, see {@link SyntaxIndex}.
+	 */
+	public static Iterator<SyntaxElementInfo<? extends Effect>> getEffects(String expr) {
+		return effectIndex.getCandidates(expr);
+	}
+
+	/**
+	 * @param expr The expression to parse.
+	 * @return The sections that may match the given expression, see {@link SyntaxIndex}.
+	 */
+	public static Iterator<SyntaxElementInfo<? extends Section>> getSections(String expr) {
+		return sectionIndex.getCandidates(expr);
+	}
+
 	// ================ EXPRESSIONS ================
 	
 	private final static List<ExpressionInfo<?, ?>> expressions = new ArrayList<>(100);
 	
 	private final static int[] expressionTypesStartIndices = new int[ExpressionType.values().length];
+
+	private static final SyntaxIndex<ExpressionInfo<?, ?>> expressionIndex = new SyntaxIndex<>(expressions);
 	
 	/**
 	 * Registers an expression.
@@ -1451,7 +1495,20 @@ public final class Skript extends JavaPlugin implements Listener {
 	}
 	
 	public static Iterator<ExpressionInfo<?, ?>> getExpressions(final Class<?>... returnTypes) {
-		return new CheckedIterator<>(getExpressions(), new NullableChecker<ExpressionInfo<?, ?>>() {
+		return getExpressions(getExpressions(), returnTypes);
+	}
+
+	/**
+	 * @param expr The expression to parse.
+	 * @param returnTypes The types the expression may be converted to.
+	 * @return The expressions that may match the given expression, see {@link SyntaxIndex}.
+	 */
+	public static Iterator<ExpressionInfo<?, ?>> getExpressions(String expr, Class<?>... returnTypes) {
+		return getExpressions(expressionIndex.getCandidates(expr), returnTypes);
+	}
+
+	private static Iterator<ExpressionInfo<?, ?>> getExpressions(Iterator<ExpressionInfo<?, ?>> expressions, Class<?>... returnTypes) {
+		return new CheckedIterator<>(expressions, new NullableChecker<ExpressionInfo<?, ?>>() {
 			@Override
 			public boolean check(final @Nullable ExpressionInfo<?, ?> i) {
 				if (i == null || i.returnType == Object.class)
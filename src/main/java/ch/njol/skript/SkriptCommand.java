@@ -30,6 +30,7 @@ import ch.njol.skript.log.TimingLogHandler;
 import ch.njol.skript.test.runner.SkriptTestEvent;
 import ch.njol.skript.test.runner.TestMode;
 import ch.njol.skript.test.runner.TestTracker;
+import ch.njol.skript.timings.SkriptProfiler;
 import ch.njol.skript.util.ExceptionUtils;
 import ch.njol.skript.util.FileUtils;
 import ch.njol.skript.util.SkriptColor;
@@ -78,6 +79,10 @@ public class SkriptCommand implements CommandExecutor {
 			.add("check")
 			.add("changes")
 			.add("download")
+		).add(new CommandHelp("profile", SkriptColor.DARK_RED)
+			.add("start")
+			.add("stop")
+			.add("report")
 		).add("info"
 		).add("help");
 
@@ -356,6 +361,33 @@ public class SkriptCommand implements CommandExecutor {
 				}
 			}
 
+			else if (args[0].equalsIgnoreCase("profile")) {
+				if (args[1].equalsIgnoreCase("start")) {
+					if (SkriptProfiler.start()) {
+						info(sender, "profile.started");
+					} else {
+						info(sender, "profile.already started");
+					}
+				} else if (args[1].equalsIgnoreCase("stop")) {
+					if (SkriptProfiler.stop()) {
+						info(sender, "profile.stopped");
+					} else {
+						info(sender, "profile.not started");
+					}
+				} else if (args[1].equalsIgnoreCase("report")) {
+					if (!SkriptProfiler.hasData()) {
+						info(sender, "profile.no data");
+						return true;
+					}
+					try {
+						File report = SkriptProfiler.writeReport(new File(Skript.getInstance().getDataFolder(), "profiles"));
+						info(sender, "profile.report", report.getPath());
+					} catch (IOException e) {
+						error(sender, "profile.io error", ExceptionUtils.toString(e));
+					}
+				}
+			}
+
 			else if (args[0].equalsIgnoreCase("info")) {
 				info(sender, "info.aliases");
 				info(sender, "info.documentation");
@@ -52,7 +52,10 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -187,7 +190,6 @@ public class SkriptConfig {
 	public static final Option<Boolean> disableVariableStartingWithExpressionWarnings =
 		new Option<>("disable starting a variable's name with an expression warnings", false);
 	
-	@Deprecated
 	public static final Option<Boolean> enableScriptCaching = new Option<>("enable script caching", false)
 			.optional(true);
 	
@@ -245,6 +247,24 @@ public class SkriptConfig {
 
 	public static final Option<Boolean> caseInsensitiveVariables = new Option<>("case-insensitive variables", true)
 			.setter(t -> Variables.caseInsensitiveVariables = t);
+
+	public static final Option<Set<String>> indexedListVariables = new Option<Set<String>>("indexed list variables", Collections.emptySet(), s -> {
+		Set<String> names = new HashSet<>();
+		for (String name : s.split(",")) {
+			name = name.trim();
+			if (name.isEmpty())
+				continue;
+			if (name.startsWith("{") && name.endsWith("}"))
+				name = name.substring(1, name.length() - 1);
+			if (!name.endsWith("::*") || name.contains("%")) {
+				Skript.error("'" + name + "' is not the name of a list variable, e.g. {online::*}");
+				continue;
+			}
+			names.add(name.toLowerCase(Locale.ENGLISH));
+		}
+		return names;
+	}).optional(true)
+			.setter(t -> Variables.indexedListVariables = t);
 	
 	public static final Option<Boolean> colorResetCodes = new Option<>("color codes reset formatting", true)
 			.setter(t -> {
@@ -20,6 +20,9 @@ package ch.njol.skript;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -27,7 +30,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.bukkit.Bukkit;
 import org.bukkit.event.Cancellable;
@@ -47,6 +49,7 @@ import com.google.common.collect.Multimap;
 
 import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.Trigger;
+import ch.njol.skript.timings.SkriptProfiler;
 import ch.njol.skript.timings.SkriptTimings;
 import ch.njol.skript.util.Task;
 
@@ -91,17 +94,79 @@ public final class SkriptEventHandler {
 	private static final Multimap<Class<? extends Event>, Trigger> triggers = ArrayListMultimap.create();
 
 	/**
-	 * A utility method to get all Triggers registered under the provided Event class.
+	 * An empty Trigger array, used as the dispatch result for events without Triggers.
+	 */
+	private static final Trigger[] NO_TRIGGERS = new Trigger[0];
+
+	/**
+	 * A dispatch table mapping each concrete Event class to the Triggers that should be executed for it,
+	 * indexed by the ordinal of their {@link EventPriority}.
+	 * This table is replaced (and thus lazily recomputed) whenever the registered Triggers change.
+	 * @see #invalidateDispatchTable()
+	 */
+	private static volatile ClassValue<Trigger[][]> dispatchTable = createDispatchTable();
+
+	private static ClassValue<Trigger[][]> createDispatchTable() {
+		return new ClassValue<Trigger[][]>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			protected Trigger[][] computeValue(Class<?> type) {
+				return resolveTriggers((Class<? extends Event>) type);
+			}
+		};
+	}
+
+	/**
+	 * Discards all resolved dispatch entries so that they are recomputed on the next event call.
+	 * Must be called whenever {@link #triggers} is modified.
+	 */
+	private static void invalidateDispatchTable() {
+		dispatchTable = createDispatchTable();
+	}
+
+	/**
+	 * Resolves all Triggers registered under the provided Event class, grouped by their priority.
 	 * @param event The event to find pairs from.
-	 * @return A List containing all Triggers registered under the provided Event class.
+	 * @return An array indexed by {@link EventPriority#ordinal()}, containing the Triggers for that priority.
 	 */
-	private static List<Trigger> getTriggers(Class<? extends Event> event) {
+	private static Trigger[][] resolveTriggers(Class<? extends Event> event) {
+		EventPriority[] priorities = EventPriority.values();
+		Trigger[][] resolved = new Trigger[priorities.length][];
+		Arrays.fill(resolved, NO_TRIGGERS);
+
 		HandlerList eventHandlerList = getHandlerList(event);
-		assert eventHandlerList != null; // It had one at some point so this should remain true
-		return triggers.asMap().entrySet().stream()
-				.filter(entry -> entry.getKey().isAssignableFrom(event) && getHandlerList(entry.getKey()) == eventHandlerList)
-				.flatMap(entry -> entry.getValue().stream())
-				.collect(Collectors.toList()); // forces evaluation now and prevents us from having to call getTriggers again if very high logging is enabled
+		if (eventHandlerList == null)
+			return resolved;
+
+		List<List<Trigger>> byPriority = new ArrayList<>(priorities.length);
+		for (int i = 0; i < priorities.length; i++)
+			byPriority.add(new ArrayList<>());
+		synchronized (triggers) {
+			for (Entry<Class<? extends Event>, Collection<Trigger>> entry : triggers.asMap().entrySet()) {
+				if (!entry.getKey().isAssignableFrom(event) || getHandlerList(entry.getKey()) != eventHandlerList)
+					continue;
+				for (Trigger trigger : entry.getValue())
+					byPriority.get(trigger.getEvent().getEventPriority().ordinal()).add(trigger);
+			}
+		}
+
+		for (int i = 0; i < priorities.length; i++) {
+			List<Trigger> priorityTriggers = byPriority.get(i);
+			if (!priorityTriggers.isEmpty())
+				resolved[i] = priorityTriggers.toArray(NO_TRIGGERS);
+		}
+		return resolved;
+	}
+
+	/**
+	 * A utility method to get all Triggers registered under the provided Event class for a priority.
+	 * The returned array is shared and must not be modified.
+	 * @param event The event to find pairs from.
+	 * @param priority The priority of the Triggers.
+	 * @return An array containing all Triggers registered under the provided Event class with the provided priority.
+	 */
+	private static Trigger[] getTriggers(Class<? extends Event> event, EventPriority priority) {
+		return dispatchTable.get(event)[priority.ordinal()];
 	}
 
 	/**
@@ -112,18 +177,25 @@ public final class SkriptEventHandler {
 	 * @param priority The priority of the Event.
 	 */
 	private static void check(Event event, EventPriority priority) {
-		List<Trigger> triggers = getTriggers(event.getClass());
-		if (triggers.isEmpty())
+		if (SkriptProfiler.isEnabled()) {
+			long start = System.nanoTime();
+			check_i(event, priority);
+			SkriptProfiler.recordEvent(event.getClass(), System.nanoTime() - start);
+		} else {
+			check_i(event, priority);
+		}
+	}
+
+	private static void check_i(Event event, EventPriority priority) {
+		Trigger[] triggers = getTriggers(event.getClass(), priority);
+		if (triggers.length == 0)
 			return;
 
 		if (Skript.logVeryHigh()) {
 			boolean hasTrigger = false;
 			for (Trigger trigger : triggers) {
 				SkriptEvent triggerEvent = trigger.getEvent();
-				if (
-					triggerEvent.getEventPriority() == priority
-					&& triggerEvent.canExecuteAsynchronously() ? triggerEvent.check(event) : Boolean.TRUE.equals(Task.callSync(() -> triggerEvent.check(event)))
-				) {
+				if (triggerEvent.canExecuteAsynchronously() ? triggerEvent.check(event) : Boolean.TRUE.equals(Task.callSync(() -> triggerEvent.check(event)))) {
 					hasTrigger = true;
 					break;
 				}
@@ -145,8 +217,6 @@ public final class SkriptEventHandler {
 
 		for (Trigger trigger : triggers) {
 			SkriptEvent triggerEvent = trigger.getEvent();
-			if (triggerEvent.getEventPriority() != priority)
-				continue;
 
 			// these methods need to be run on whatever thread the trigger is
 			Runnable execute = () -> {
@@ -256,7 +326,10 @@ public final class SkriptEventHandler {
 		if (handlerList == null)
 			return;
 
-		triggers.put(event, trigger);
+		synchronized (triggers) {
+			triggers.put(event, trigger);
+		}
+		invalidateDispatchTable();
 
 		EventPriority priority = trigger.getEvent().getEventPriority();
 
@@ -271,6 +344,13 @@ public final class SkriptEventHandler {
 	 * @param trigger The Trigger to unregister events for.
 	 */
 	public static void unregisterBukkitEvents(Trigger trigger) {
+		synchronized (triggers) {
+			unregisterBukkitEvents_i(trigger);
+		}
+		invalidateDispatchTable();
+	}
+
+	private static void unregisterBukkitEvents_i(Trigger trigger) {
 		Iterator<Entry<Class<? extends Event>, Trigger>> entryIterator = triggers.entries().iterator();
 		entryLoop: while (entryIterator.hasNext()) {
 			Entry<Class<? extends Event>, Trigger> entry = entryIterator.next();
@@ -370,6 +370,13 @@ public abstract class Aliases {
 		return null;
 	}
 	
+	/**
+	 * @return The amount of global aliases that are currently loaded.
+	 */
+	public static int getAliasCount() {
+		return provider.getAliasCount();
+	}
+
 	/**
 	 * Clears aliases. Make sure to load them after this!
 	 */
@@ -73,6 +73,8 @@ public class ClassInfo<T> implements Debuggable {
 	private Serializer<? super T> serializer = null;
 	@Nullable
 	private Class<?> serializeAs = null;
+	@Nullable
+	private Cloner<T> snapshot = null;
 	
 	@Nullable
 	private Arithmetic<? super T, ?> math = null;
@@ -206,6 +208,18 @@ public class ClassInfo<T> implements Debuggable {
 		return this;
 	}
 	
+	/**
+	 * @param snapshot A {@link Cloner} that copies a value on the main thread when a variable is saved,
+	 *                    so that the copy can be serialized on another thread while the value may change.
+	 *                    Should return the given object if it is immutable.
+	 *                    Values of classes without one are serialized on the main thread.
+	 */
+	public ClassInfo<T> snapshot(final Cloner<T> snapshot) {
+		assert this.snapshot == null;
+		this.snapshot = snapshot;
+		return this;
+	}
+	
 	public ClassInfo<T> serializeAs(final Class<?> serializeAs) {
 		assert this.serializeAs == null;
 		if (serializer != null)
@@ -396,6 +410,11 @@ public class ClassInfo<T> implements Debuggable {
 		return serializeAs;
 	}
 	
+	@Nullable
+	public Cloner<? extends T> getSnapshot() {
+		return snapshot;
+	}
+	
 	@Nullable
 	@Deprecated
 	public Arithmetic<? super T, ?> getMath() {
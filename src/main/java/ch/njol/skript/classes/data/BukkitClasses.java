@@ -452,7 +452,8 @@ public class BukkitClasses {
 						}
 					}
 				})
-				.cloner(Location::clone));
+				.cloner(Location::clone)
+				.snapshot(Location::clone));
 		
 		Classes.registerClass(new ClassInfo<>(Vector.class, "vector")
 				.user("vectors?")
@@ -519,7 +520,8 @@ public class BukkitClasses {
 						return false;
 					}
 				})
-				.cloner(Vector::clone));
+				.cloner(Vector::clone)
+				.snapshot(Vector::clone));
 		
 		Classes.registerClass(new ClassInfo<>(World.class, "world")
 				.user("worlds?")
@@ -970,6 +972,7 @@ public class BukkitClasses {
 					}
 				})
 				.cloner(ItemStack::clone)
+				.snapshot(ItemStack::clone)
 				.serializer(new ConfigurationSerializer<>()));
 		
 		Classes.registerClass(new ClassInfo<>(Item.class, "itementity")
@@ -183,7 +183,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Integer.class, "integer")
 				.name(ClassInfo.NO_DOC)
@@ -240,7 +241,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Double.class, "double")
 				.name(ClassInfo.NO_DOC)
@@ -302,7 +304,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Float.class, "float")
 				.name(ClassInfo.NO_DOC)
@@ -363,7 +366,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Boolean.class, "boolean")
 				.user("booleans?")
@@ -428,7 +432,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Short.class, "short")
 				.name(ClassInfo.NO_DOC)
@@ -485,7 +490,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(Byte.class, "byte")
 				.name(ClassInfo.NO_DOC)
@@ -542,7 +548,8 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 		
 		Classes.registerClass(new ClassInfo<>(String.class, "string")
 				.user("(text|string)s?")
@@ -626,6 +633,7 @@ public class JavaClasses {
 					public boolean mustSyncDeserialization() {
 						return false;
 					}
-				}));
+				})
+				.snapshot(value -> value)); // immutable
 	}
 }
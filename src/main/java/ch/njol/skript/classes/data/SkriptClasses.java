@@ -246,6 +246,7 @@ public class SkriptClasses {
 					}
 				})
 				.cloner(ItemType::clone)
+				.snapshot(ItemType::clone)
 				.serializer(new YggdrasilSerializer<>()));
 
 		Classes.registerClass(new ClassInfo<>(Time.class, "time")
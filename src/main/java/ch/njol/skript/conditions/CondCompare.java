@@ -28,6 +28,7 @@ import ch.njol.skript.classes.ClassInfo;
 
 import org.skriptlang.skript.lang.comparator.Comparator;
 import org.skriptlang.skript.lang.comparator.ComparatorInfo;
+import org.skriptlang.skript.lang.comparator.EqualityIndex;
 import org.skriptlang.skript.lang.comparator.Relation;
 import org.skriptlang.skript.lang.converter.ConverterInfo;
 import org.skriptlang.skript.lang.converter.Converters;
@@ -345,6 +346,23 @@ public class CondCompare extends Condition {
 	@SuppressWarnings("unchecked")
 	public boolean check(final Event e) {
 		final Expression<?> third = this.third;
+		if (third == null && relation == Relation.EQUAL && isAnyOfList(second)) {
+			// 'x is a, b, ... or z': look up x in a hash index instead of comparing it with every value
+			Object[] values = second.getAll(e);
+			EqualityIndex index = values.length >= EqualityIndex.MIN_SIZE ? EqualityIndex.of(values, comparator) : null;
+			if (index != null) {
+				return first.check(e, (Checker<Object>) o1 -> {
+					Kleenean contained = index.contains(o1);
+					if (contained != Kleenean.UNKNOWN)
+						return contained.isTrue();
+					for (Object o2 : values) {
+						if (relation.isImpliedBy(comparator != null ? comparator.compare(o1, o2) : Comparators.compare(o1, o2)))
+							return true;
+					}
+					return false;
+				}, isNegated());
+			}
+		}
 		return first.check(e, (Checker<Object>) o1 ->
 			second.check(e, (Checker<Object>) o2 -> {
 				if (third == null)
@@ -382,6 +400,19 @@ public class CondCompare extends Condition {
 		), isNegated());
 	}
 	
+	/**
+	 * @return Whether checking the given expression is the same as checking whether any of its values matches.
+	 */
+	private static boolean isAnyOfList(Expression<?> expression) {
+		if (!(expression instanceof ExpressionList) || expression.getAnd())
+			return false;
+		for (Expression<?> expr : ((ExpressionList<?>) expression).getExpressions()) {
+			if (!expr.isSingle())
+				return false;
+		}
+		return true;
+	}
+	
 	@Override
 	public String toString(final @Nullable Event e, final boolean debug) {
 		String s;
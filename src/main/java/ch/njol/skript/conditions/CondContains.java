@@ -29,8 +29,12 @@ import ch.njol.skript.doc.Since;
 import ch.njol.skript.lang.Condition;
 import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.skript.lang.Variable;
 import ch.njol.skript.lang.util.SimpleExpression;
+import ch.njol.skript.variables.Variables;
 import org.skriptlang.skript.lang.comparator.Comparators;
+import org.skriptlang.skript.lang.comparator.EqualityIndex;
+import ch.njol.util.Checker;
 import ch.njol.util.Kleenean;
 import ch.njol.util.StringUtils;
 import org.bukkit.event.Event;
@@ -39,6 +43,7 @@ import org.bukkit.inventory.ItemStack;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
 
 @Name("Contains")
@@ -93,10 +98,36 @@ public class CondContains extends Condition {
 	}
 
 	@Override
+	@SuppressWarnings("unchecked")
 	public boolean check(Event e) {
 		CheckType checkType = this.checkType;
 
-		Object[] containerValues = containers.getAll(e);
+		Object[] containerValues;
+		// The values of the items if they had to be evaluated already, so that they aren't evaluated twice
+		Object[] itemValues;
+		if (checkType == CheckType.UNKNOWN && !explicitSingle && containers instanceof Variable<?> && ((Variable<?>) containers).isList()) {
+			Variable<?> variable = (Variable<?>) containers;
+			Object list = variable.getRaw(e);
+			// Lists with a reverse index can look up the items without getting all of their values
+			if (list instanceof Map && Variables.isIndexedList((Map<String, Object>) list)) {
+				itemValues = items.getAll(e);
+				boolean[] indexed = {true};
+				boolean result = SimpleExpression.check(itemValues, o1 -> {
+					Kleenean contained = Variables.listContains((Map<String, Object>) list, o1);
+					if (contained == Kleenean.UNKNOWN)
+						indexed[0] = false;
+					return contained.isTrue();
+				}, isNegated(), items.getAnd());
+				if (indexed[0])
+					return result;
+			} else {
+				itemValues = null;
+			}
+			containerValues = variable.getAll(e, list);
+		} else {
+			itemValues = null;
+			containerValues = containers.getAll(e);
+		}
 
 		if (containerValues.length == 0)
 			return isNegated();
@@ -119,7 +150,7 @@ public class CondContains extends Condition {
 			return SimpleExpression.check(containerValues, o -> {
 				Inventory inventory = (Inventory) o;
 
-				return items.check(e, o1 -> {
+				return checkItems(e, itemValues, o1 -> {
 					if (o1 instanceof ItemType)
 						return ((ItemType) o1).isContainedIn(inventory);
 					else if (o1 instanceof ItemStack)
@@ -128,7 +159,7 @@ public class CondContains extends Condition {
 						return Objects.equals(inventory, o1);
 					else
 						return false;
-				});
+				}, false);
 			}, isNegated(), containers.getAnd());
 		} else if (checkType == CheckType.STRING) {
 			boolean caseSensitive = SkriptConfig.caseSensitive.value();
@@ -147,7 +178,15 @@ public class CondContains extends Condition {
 		} else {
 			assert checkType == CheckType.OBJECTS;
 
-			return items.check(e, o1 -> {
+			// large lists are indexed, so each item is looked up instead of being compared with every value
+			EqualityIndex index = containerValues.length >= EqualityIndex.MIN_SIZE ? EqualityIndex.of(containerValues) : null;
+
+			return checkItems(e, itemValues, o1 -> {
+				if (index != null) {
+					Kleenean contained = index.contains(o1);
+					if (contained != Kleenean.UNKNOWN)
+						return contained.isTrue();
+				}
 				for (Object o2 : containerValues) {
 					if (Comparators.compare(o1, o2) == Relation.EQUAL)
 						return true;
@@ -156,6 +195,15 @@ public class CondContains extends Condition {
 			}, isNegated());
 		}
 	}
+
+	/**
+	 * Checks the items, using their values if they have been evaluated already.
+	 */
+	private boolean checkItems(Event e, @Nullable Object[] itemValues, Checker<Object> checker, boolean negated) {
+		if (itemValues != null)
+			return SimpleExpression.check(itemValues, checker, negated, items.getAnd());
+		return items.check(e, checker, negated);
+	}
 	
 	@Override
 	public String toString(@Nullable Event e, boolean debug) {
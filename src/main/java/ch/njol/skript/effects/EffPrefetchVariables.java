@@ -0,0 +1,101 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.effects;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.doc.Description;
+import ch.njol.skript.doc.Examples;
+import ch.njol.skript.doc.Name;
+import ch.njol.skript.doc.Since;
+import ch.njol.skript.lang.Effect;
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.ExpressionList;
+import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.variables.Variables;
+import ch.njol.util.Kleenean;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Name("Prefetch Variables")
+@Description({
+	"Fetches global variables that are loaded lazily from their database in the background, " +
+		"so that the server doesn't have to wait for the database once they are used.",
+	"This only has an effect for variables of an SQLite or MySQL database with a 'lazy pattern', see the config."
+})
+@Examples({
+	"on join:",
+		"\tprefetch {playerdata::%player's uuid%::*}"
+})
+@Since("2.8.2")
+public class EffPrefetchVariables extends Effect {
+
+	static {
+		Skript.registerEffect(EffPrefetchVariables.class, "prefetch [the] [variable[s]] %~objects%");
+	}
+
+	private Expression<?> rawVariables;
+	private List<Variable<?>> variables;
+
+	@Override
+	public boolean init(Expression<?>[] exprs, int matchedPattern, Kleenean isDelayed, ParseResult parseResult) {
+		rawVariables = exprs[0];
+		variables = new ArrayList<>();
+		if (!unwrap(exprs[0], variables)) {
+			Skript.error("You can only prefetch variables");
+			return false;
+		}
+		for (Variable<?> variable : variables) {
+			if (variable.isLocal()) {
+				Skript.error("Local variables can't be prefetched, as they aren't stored in a database");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean unwrap(Expression<?> expression, List<Variable<?>> variables) {
+		if (expression instanceof Variable<?>) {
+			variables.add((Variable<?>) expression);
+			return true;
+		}
+		if (!(expression instanceof ExpressionList<?>))
+			return false;
+		for (Expression<?> subExpression : ((ExpressionList<?>) expression).getExpressions()) {
+			if (!unwrap(subExpression, variables))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	protected void execute(Event event) {
+		for (Variable<?> variable : variables)
+			Variables.prefetchVariable(variable.getName().getSingle(event));
+	}
+
+	@Override
+	public String toString(@Nullable Event event, boolean debug) {
+		return "prefetch " + rawVariables.toString(event, debug);
+	}
+
+}
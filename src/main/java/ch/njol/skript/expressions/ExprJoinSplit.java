@@ -33,6 +33,7 @@ import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.ExpressionType;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.skript.lang.util.SimpleExpression;
+import ch.njol.skript.util.LiteralUtils;
 import ch.njol.util.Kleenean;
 import ch.njol.util.StringUtils;
 
@@ -96,6 +97,11 @@ public class ExprJoinSplit extends SimpleExpression<String> {
 		return join;
 	}
 
+	@Override
+	public boolean isPure() {
+		return LiteralUtils.isConstant(strings) && (delimiter == null || LiteralUtils.isConstant(delimiter));
+	}
+
 	@Override
 	public Class<? extends String> getReturnType() {
 		return String.class;
@@ -126,6 +126,26 @@ public class ArithmeticChain<L, R, T> implements ArithmeticGettable<T> {
 		return returnType;
 	}
 
+	ArithmeticGettable<L> getLeft() {
+		return left;
+	}
+
+	ArithmeticGettable<R> getRight() {
+		return right;
+	}
+
+	Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * @return the operation determined while parsing, or {@code null} if it's only known at runtime.
+	 */
+	@Nullable
+	OperationInfo<? extends L, ? extends R, ? extends T> getOperationInfo() {
+		return operationInfo;
+	}
+
 	@Nullable
 	@SuppressWarnings("unchecked")
 	public static <L, R, T> ArithmeticGettable<T> parse(List<Object> chain) {
@@ -44,4 +44,8 @@ public class ArithmeticExpressionInfo<T> implements ArithmeticGettable<T> {
 		return expression.getReturnType();
 	}
 
+	Expression<? extends T> getExpression() {
+		return expression;
+	}
+
 }
@@ -29,6 +29,7 @@ import ch.njol.skript.lang.ExpressionType;
 import ch.njol.skript.lang.Literal;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.skript.lang.UnparsedLiteral;
+import ch.njol.skript.lang.util.FoldedLiteral;
 import ch.njol.skript.lang.util.SimpleExpression;
 import ch.njol.skript.lang.util.SimpleLiteral;
 import ch.njol.skript.registrations.Classes;
@@ -291,20 +292,35 @@ public class ExprArithmetic<L, R, T> extends SimpleExpression<T> {
 		 *  can be evaluated during runtime for a final result.
 		 */
 
-		if (first instanceof ExprArithmetic && !leftGrouped) { // combine chain of 'first' if we do not have parentheses
-			chain.addAll(((ExprArithmetic<?, ?, L>) first).chain);
+		Expression<?> unfoldedFirst = unfold(first);
+		if (unfoldedFirst instanceof ExprArithmetic && !leftGrouped) { // combine chain of 'first' if we do not have parentheses
+			chain.addAll(((ExprArithmetic<?, ?, L>) unfoldedFirst).chain);
 		} else {
 			chain.add(first);
 		}
 		chain.add(operator);
-		if (second instanceof ExprArithmetic && !rightGrouped) { // combine chain of 'second' if we do not have parentheses
-			chain.addAll(((ExprArithmetic<?, ?, R>) second).chain);
+		Expression<?> unfoldedSecond = unfold(second);
+		if (unfoldedSecond instanceof ExprArithmetic && !rightGrouped) { // combine chain of 'second' if we do not have parentheses
+			chain.addAll(((ExprArithmetic<?, ?, R>) unfoldedSecond).chain);
 		} else {
 			chain.add(second);
 		}
 
 		arithmeticGettable = ArithmeticChain.parse(chain);
-		return arithmeticGettable != null || error(firstClass, secondClass);
+		if (arithmeticGettable == null)
+			return error(firstClass, secondClass);
+
+		/*
+		 * Step 4: Numeric Compilation
+		 *
+		 * If every operand of the chain is known to be a number, the chain is compiled into an evaluator
+		 *  that computes with primitives and only boxes the final result.
+		 */
+
+		ArithmeticGettable<? extends Number> numeric = NumericArithmetic.compile(arithmeticGettable);
+		if (numeric != null)
+			arithmeticGettable = (ArithmeticGettable<? extends T>) numeric;
+		return true;
 	}
 
 	@Override
@@ -316,6 +332,33 @@ public class ExprArithmetic<L, R, T> extends SimpleExpression<T> {
 		return one;
 	}
 
+	/**
+	 * A constant operand like '2 * 3' is folded into a literal before this expression is initialized,
+	 *  with no regard to the order of operations. Its chain is still needed to merge it into this one.
+	 */
+	private static Expression<?> unfold(Expression<?> expression) {
+		if (expression instanceof FoldedLiteral)
+			return ((FoldedLiteral<?>) expression).getOriginal();
+		return expression;
+	}
+
+	ArithmeticGettable<? extends T> getArithmeticGettable() {
+		return arithmeticGettable;
+	}
+
+	/**
+	 * @return whether this chain is evaluated with primitives, see {@link NumericArithmetic}.
+	 */
+	public boolean isNumeric() {
+		return arithmeticGettable instanceof NumericArithmetic;
+	}
+
+	@Override
+	@Nullable
+	protected T getSingleValue(Event event) {
+		return arithmeticGettable.get(event);
+	}
+
 	private boolean error(Class<?> firstClass, Class<?> secondClass) {
 		ClassInfo<?> first = Classes.getSuperClassInfo(firstClass), second = Classes.getSuperClassInfo(secondClass);
 		if (first.getC() != Object.class && second.getC() != Object.class) // errors with "object" are not very useful and often misleading
@@ -333,6 +376,11 @@ public class ExprArithmetic<L, R, T> extends SimpleExpression<T> {
 		return true;
 	}
 
+	@Override
+	public boolean isPure() {
+		return first.isSingle() && second.isSingle() && LiteralUtils.isConstant(first, second);
+	}
+
 	@Override
 	public String toString(@Nullable Event event, boolean debug) {
 		String one = first.toString(event, debug);
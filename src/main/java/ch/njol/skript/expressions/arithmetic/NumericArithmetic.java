@@ -0,0 +1,231 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.expressions.arithmetic;
+
+import ch.njol.skript.lang.Expression;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.arithmetic.Arithmetics;
+import org.skriptlang.skript.lang.arithmetic.OperationInfo;
+import org.skriptlang.skript.lang.arithmetic.Operator;
+
+/**
+ * An arithmetic chain whose operands are all numbers, compiled into a tree that computes with primitives.
+ * <p>
+ * The generic {@link ArithmeticChain} boxes every intermediate result and goes through {@link Arithmetics}
+ * at every node. This evaluator only boxes the final result.
+ * It mirrors the {@link Number} operations registered in {@link ch.njol.skript.classes.data.DefaultOperations}:
+ * an operation is performed on longs if neither operand is a {@link Double} or {@link Float},
+ * division always yields a double (so division by zero results in infinity or NaN),
+ * and exponentiation only stays integral for non-negative exponents.
+ */
+public class NumericArithmetic implements ArithmeticGettable<Number> {
+
+	/**
+	 * Compiles the given arithmetic gettable if all of its operands are known to return numbers,
+	 * and all of its operations are the default number operations.
+	 *
+	 * @param gettable the gettable to compile.
+	 * @return the compiled gettable, or {@code null} if it can't be compiled.
+	 */
+	@Nullable
+	public static NumericArithmetic compile(ArithmeticGettable<?> gettable) {
+		if (gettable instanceof NumericArithmetic)
+			return (NumericArithmetic) gettable;
+		Node root = compileNode(gettable);
+		return root == null ? null : new NumericArithmetic(root);
+	}
+
+	@Nullable
+	private static Node compileNode(ArithmeticGettable<?> gettable) {
+		if (gettable instanceof NumericArithmetic)
+			return ((NumericArithmetic) gettable).root;
+
+		if (gettable instanceof ArithmeticChain) {
+			ArithmeticChain<?, ?, ?> chain = (ArithmeticChain<?, ?, ?>) gettable;
+			Operator operator = chain.getOperator();
+			OperationInfo<?, ?, ?> operationInfo = chain.getOperationInfo();
+			// only the default number operations are mirrored, an addon might have registered something more specific
+			if (operationInfo == null || operationInfo != Arithmetics.getOperationInfo(operator, Number.class, Number.class))
+				return null;
+			Node left = compileNode(chain.getLeft());
+			if (left == null)
+				return null;
+			Node right = compileNode(chain.getRight());
+			if (right == null)
+				return null;
+			return new OperationNode(left, operator, right);
+		}
+
+		if (gettable instanceof ArithmeticExpressionInfo) {
+			Expression<?> expression = ((ArithmeticExpressionInfo<?>) gettable).getExpression();
+			// a group like '(a + b)' is inlined. Its return type is only a guess if it couldn't be compiled itself
+			if (expression instanceof ExprArithmetic)
+				return compileNode(((ExprArithmetic<?, ?, ?>) expression).getArithmeticGettable());
+			Class<?> type = expression.getReturnType();
+			if (!Number.class.isAssignableFrom(type))
+				return null;
+			Object defaultValue = Arithmetics.getDefaultValue(type);
+			if (!(defaultValue instanceof Number))
+				return null;
+			//noinspection unchecked
+			return new ExpressionNode((Expression<? extends Number>) expression, (Number) defaultValue);
+		}
+
+		return null;
+	}
+
+	private final Node root;
+
+	private NumericArithmetic(Node root) {
+		this.root = root;
+	}
+
+	@Override
+	public Number get(Event event) {
+		Value value = new Value();
+		root.evaluate(event, value);
+		return value.decimal ? (Number) value.doubleValue : (Number) value.longValue;
+	}
+
+	@Override
+	public Class<? extends Number> getReturnType() {
+		return Number.class;
+	}
+
+	/**
+	 * The result of evaluating a node. A single instance is passed through the whole tree,
+	 * binary nodes keep their left operand on the stack while the right one is evaluated.
+	 */
+	private static final class Value {
+
+		private boolean decimal;
+		private long longValue;
+		private double doubleValue;
+
+		private void set(long value) {
+			decimal = false;
+			longValue = value;
+		}
+
+		private void set(double value) {
+			decimal = true;
+			doubleValue = value;
+		}
+
+		private double asDouble() {
+			return decimal ? doubleValue : longValue;
+		}
+
+	}
+
+	private interface Node {
+
+		void evaluate(Event event, Value out);
+
+	}
+
+	private static final class ExpressionNode implements Node {
+
+		private final Expression<? extends Number> expression;
+		private final Number defaultValue;
+
+		private ExpressionNode(Expression<? extends Number> expression, Number defaultValue) {
+			this.expression = expression;
+			this.defaultValue = defaultValue;
+		}
+
+		@Override
+		public void evaluate(Event event, Value out) {
+			Number number = expression.getSingle(event);
+			if (number == null)
+				number = defaultValue;
+			if (number instanceof Double || number instanceof Float) {
+				out.set(number.doubleValue());
+			} else {
+				out.set(number.longValue());
+			}
+		}
+
+	}
+
+	private static final class OperationNode implements Node {
+
+		private final Node left;
+		private final Operator operator;
+		private final Node right;
+
+		private OperationNode(Node left, Operator operator, Node right) {
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		public void evaluate(Event event, Value out) {
+			left.evaluate(event, out);
+			boolean leftDecimal = out.decimal;
+			long leftLong = out.longValue;
+			double leftDouble = out.asDouble();
+
+			right.evaluate(event, out);
+			boolean integer = !leftDecimal && !out.decimal;
+			long rightLong = out.longValue;
+			double rightDouble = out.asDouble();
+
+			switch (operator) {
+				case ADDITION:
+					if (integer) {
+						out.set(leftLong + rightLong);
+					} else {
+						out.set(leftDouble + rightDouble);
+					}
+					break;
+				case SUBTRACTION:
+					if (integer) {
+						out.set(leftLong - rightLong);
+					} else {
+						out.set(leftDouble - rightDouble);
+					}
+					break;
+				case MULTIPLICATION:
+					if (integer) {
+						out.set(leftLong * rightLong);
+					} else {
+						out.set(leftDouble * rightDouble);
+					}
+					break;
+				case DIVISION:
+					out.set(leftDouble / rightDouble);
+					break;
+				case EXPONENTIATION:
+					if (integer && rightLong >= 0) {
+						out.set((long) Math.pow(leftLong, rightLong));
+					} else {
+						out.set(Math.pow(leftDouble, rightDouble));
+					}
+					break;
+				default:
+					throw new IllegalStateException("Unknown operator: " + operator);
+			}
+		}
+
+	}
+
+}
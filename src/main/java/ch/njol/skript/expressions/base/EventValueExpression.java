@@ -78,6 +78,16 @@ public class EventValueExpression<T> extends SimpleExpression<T> implements Defa
 		Skript.registerExpression(expression, type, ExpressionType.EVENT, "[the] " + pattern);
 	}
 
+	/**
+	 * Whether a subclass overrides {@link #get(Event)}, in which case the event value can't be used directly.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_GET = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return overrides(type, EventValueExpression.class, "get", Event.class);
+		}
+	};
+
 	private final Map<Class<? extends Event>, Getter<? extends T, ?>> getters = new HashMap<>();
 
 	private final Class<?> componentType;
@@ -171,7 +181,7 @@ public class EventValueExpression<T> extends SimpleExpression<T> implements Defa
 	protected T[] get(Event event) {
 		T value = getValue(event);
 		if (value == null)
-			return (T[]) Array.newInstance(componentType, 0);
+			return emptyArray((Class<T>) componentType);
 		if (single) {
 			T[] one = (T[]) Array.newInstance(type, 1);
 			one[0] = value;
@@ -183,6 +193,14 @@ public class EventValueExpression<T> extends SimpleExpression<T> implements Defa
 		return array;
 	}
 
+	@Override
+	@Nullable
+	protected T getSingleValue(Event event) {
+		if (!single || OVERRIDES_GET.get(getClass()))
+			return super.getSingleValue(event);
+		return getValue(event);
+	}
+
 	@Nullable
 	@SuppressWarnings("unchecked")
 	private <E extends Event> T getValue(E event) {
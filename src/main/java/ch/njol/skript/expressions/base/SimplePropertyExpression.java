@@ -51,11 +51,30 @@ public abstract class SimplePropertyExpression<F, T> extends PropertyExpression<
 	@Nullable
 	public abstract T convert(F from);
 
+	/**
+	 * Whether a subclass overrides {@link #get(Event, Object[])}, in which case {@link #convert(Object)} can't be used directly.
+	 */
+	private static final ClassValue<Boolean> OVERRIDES_GET = new ClassValue<Boolean>() {
+		@Override
+		protected Boolean computeValue(Class<?> type) {
+			return overrides(type, SimplePropertyExpression.class, "get", Event.class, Object[].class);
+		}
+	};
+
 	@Override
 	protected T[] get(Event event, F[] source) {
 		return super.get(source, this);
 	}
 
+	@Override
+	@Nullable
+	protected T getSingleValue(Event event) {
+		if (!getExpr().isSingle() || OVERRIDES_GET.get(getClass()))
+			return super.getSingleValue(event);
+		F from = getExpr().getSingle(event);
+		return from == null ? null : convert(from);
+	}
+
 	/**
 	 * Used to collect the property type used in the register method.
 	 * This forms the toString of this SimplePropertyExpression.
@@ -73,7 +73,7 @@ public abstract class Condition extends Statement {
 		input = input.trim();
 		while (input.startsWith("(") && SkriptParser.next(input, 0, ParseContext.DEFAULT) == input.length())
 			input = input.substring(1, input.length() - 1);
-		return (Condition) SkriptParser.parse(input, (Iterator) Skript.getConditions().iterator(), defaultError);
+		return (Condition) SkriptParser.parse(input, (Iterator) Skript.getConditions(input), defaultError);
 	}
 
 }
@@ -23,6 +23,7 @@ import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.lang.SkriptParser.ParseResult;
 import ch.njol.skript.lang.parser.ParserInstance;
 import ch.njol.util.Kleenean;
+import ch.njol.util.coll.iterator.CheckedIterator;
 import org.eclipse.jdt.annotation.Nullable;
 
 import java.util.Iterator;
@@ -77,9 +78,8 @@ public abstract class EffectSection extends Section {
 		return sectionContext.modify(sectionNode, triggerItems, () ->
 			(EffectSection) SkriptParser.parse(
 				input,
-				(Iterator) Skript.getSections().stream()
-					.filter(info -> EffectSection.class.isAssignableFrom(info.getElementClass()))
-					.iterator(),
+				(Iterator) new CheckedIterator<>(Skript.getSections(input),
+					info -> info != null && EffectSection.class.isAssignableFrom(info.getElementClass())),
 				defaultError));
 	}
 
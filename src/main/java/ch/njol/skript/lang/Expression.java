@@ -261,6 +261,22 @@ public interface Expression<T> extends SyntaxElement, Debuggable {
 	 */
 	Expression<? extends T> simplify();
 
+	/**
+	 * Whether this expression is pure, i.e. it always returns the same values, regardless of the event or any other state,
+	 * and evaluating it has no side effects. Most expressions can only be pure if all of their own expressions are constant,
+	 * see {@link ch.njol.skript.util.LiteralUtils#isConstant(Expression[])}.
+	 * <p>
+	 * Pure expressions are evaluated once after they were parsed and replaced with a
+	 * {@link ch.njol.skript.lang.util.FoldedLiteral} of their values.
+	 * This is only called after {@link #init(Expression[], int, ch.njol.util.Kleenean, ch.njol.skript.lang.SkriptParser.ParseResult)}
+	 * succeeded.
+	 *
+	 * @return Whether this expression can be replaced with a literal of its values.
+	 */
+	default boolean isPure() {
+		return false;
+	}
+
 	/**
 	 * Tests whether this expression supports the given mode, and if yes what type it expects the <code>delta</code> to be.
 	 * <p>
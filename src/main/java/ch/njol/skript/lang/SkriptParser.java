@@ -26,11 +26,14 @@ import ch.njol.skript.command.Argument;
 import ch.njol.skript.command.Commands;
 import ch.njol.skript.command.ScriptCommand;
 import ch.njol.skript.command.ScriptCommandEvent;
+import ch.njol.skript.config.Node;
 import ch.njol.skript.expressions.ExprParse;
 import ch.njol.skript.lang.function.ExprFunctionCall;
 import ch.njol.skript.lang.function.FunctionReference;
 import ch.njol.skript.lang.function.Functions;
 import ch.njol.skript.lang.parser.ParserInstance;
+import ch.njol.skript.lang.parser.ScriptParseCache;
+import ch.njol.skript.lang.util.FoldedLiteral;
 import ch.njol.skript.lang.util.SimpleLiteral;
 import ch.njol.skript.localization.Language;
 import ch.njol.skript.localization.Message;
@@ -48,12 +51,15 @@ import ch.njol.util.NonNullPair;
 import ch.njol.util.StringUtils;
 import ch.njol.util.coll.CollectionUtils;
 import com.google.common.primitives.Booleans;
+import org.bukkit.event.Event;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.eclipse.jdt.annotation.Nullable;
 import org.skriptlang.skript.lang.script.Script;
 import org.skriptlang.skript.lang.script.ScriptWarning;
+import org.skriptlang.skript.lang.structure.Structure;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -62,6 +68,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -215,59 +222,41 @@ public class SkriptParser {
 	private <T extends SyntaxElement> T parse(Iterator<? extends SyntaxElementInfo<? extends T>> source) {
 		ParseLogHandler log = SkriptLogger.startParseLogHandler();
 		try {
-			while (source.hasNext()) {
-				SyntaxElementInfo<? extends T> info = source.next();
-				patternsLoop: for (int patternIndex = 0; patternIndex < info.patterns.length; patternIndex++) {
+			// With script caching, first try the syntax element that parsed this the last time the script was loaded
+			ScriptParseCache cache = ScriptParseCache.getActive();
+			List<SyntaxElementInfo<? extends T>> candidates = null;
+			String cacheKey = null;
+			ScriptParseCache.Hint hint = null;
+			if (cache != null) {
+				candidates = new ArrayList<>();
+				source.forEachRemaining(candidates::add);
+				source = candidates.iterator();
+				cacheKey = cache.createKey(expr, flags, context, candidates);
+
+				hint = cache.getHint(cacheKey, candidates);
+				if (hint != null) {
 					log.clear();
-					try {
-						String pattern = info.patterns[patternIndex];
-						assert pattern != null;
-						ParseResult parseResult;
-						try {
-							parseResult = parse_i(pattern);
-						} catch (MalformedPatternException e) {
-							String message = "pattern compiling exception, element class: " + info.getElementClass().getName();
-							try {
-								JavaPlugin providingPlugin = JavaPlugin.getProvidingPlugin(info.getElementClass());
-								message += " (provided by " + providingPlugin.getName() + ")";
-							} catch (IllegalArgumentException | IllegalStateException ignored) {}
-							throw new RuntimeException(message, e);
+					T element = parse(candidates.get(hint.candidate), hint.pattern);
+					if (element != null) {
+						log.printLog();
+						return element;
+					}
+				}
+			}
 
-						}
-						if (parseResult != null) {
-							int startIndex = -1;
-							for (int i = 0; (startIndex = nextUnescaped(pattern, '%', startIndex + 1)) != -1; i++) {
-								int endIndex = nextUnescaped(pattern, '%', startIndex + 1);
-								if (parseResult.exprs[i] == null) {
-									String name = pattern.substring(startIndex + 1, endIndex);
-									if (!name.startsWith("-")) {
-										ExprInfo exprInfo = getExprInfo(name);
-										DefaultExpression<?> expr = exprInfo.classes[0].getDefaultExpression();
-										if (expr == null)
-											throw new SkriptAPIException("The class '" + exprInfo.classes[0].getCodeName() + "' does not provide a default expression. Either allow null (with %-" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
-										if (!(expr instanceof Literal) && (exprInfo.flagMask & PARSE_EXPRESSIONS) == 0)
-											throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is not a literal. Either allow null (with %-*" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
-										if (expr instanceof Literal && (exprInfo.flagMask & PARSE_LITERALS) == 0)
-											throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is a literal. Either allow null (with %-~" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
-										if (!exprInfo.isPlural[0] && !expr.isSingle())
-											throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is not a single-element expression. Change your pattern to allow multiple elements or make the expression mandatory [pattern: " + info.patterns[patternIndex] + "]");
-										if (exprInfo.time != 0 && !expr.setTime(exprInfo.time))
-											throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' does not have distinct time states. [pattern: " + info.patterns[patternIndex] + "]");
-										if (!expr.init())
-											continue patternsLoop;
-										parseResult.exprs[i] = expr;
-									}
-								}
-								startIndex = endIndex;
-							}
-							T element = info.getElementClass().newInstance();
-							if (element.init(parseResult.exprs, patternIndex, getParser().getHasDelayBefore(), parseResult)) {
-								log.printLog();
-								return element;
-							}
-						}
-					} catch (InstantiationException | IllegalAccessException e) {
-						assert false;
+			for (int candidate = 0; source.hasNext(); candidate++) {
+				SyntaxElementInfo<? extends T> info = source.next();
+				for (int patternIndex = 0; patternIndex < info.patterns.length; patternIndex++) {
+					// The hinted pattern has already failed to parse this
+					if (hint != null && candidate == hint.candidate && patternIndex == hint.pattern)
+						continue;
+					log.clear();
+					T element = parse(info, patternIndex);
+					if (element != null) {
+						if (cache != null)
+							cache.putHint(cacheKey, candidates, candidate, patternIndex);
+						log.printLog();
+						return element;
 					}
 				}
 			}
@@ -278,6 +267,66 @@ public class SkriptParser {
 		}
 	}
 
+	/**
+	 * Attempts to parse this parser's expression as the given pattern of a syntax element.
+	 * @return The initialized syntax element, or null if the pattern doesn't match or initialization failed.
+	 */
+	@Nullable
+	private <T extends SyntaxElement> T parse(SyntaxElementInfo<? extends T> info, int patternIndex) {
+		try {
+			String pattern = info.patterns[patternIndex];
+			assert pattern != null;
+			ParseResult parseResult;
+			try {
+				SkriptPattern skriptPattern = getPattern(pattern);
+				if (!containsKeywords(skriptPattern))
+					return null;
+				parseResult = parse_i(skriptPattern, false);
+			} catch (MalformedPatternException e) {
+				String message = "pattern compiling exception, element class: " + info.getElementClass().getName();
+				try {
+					JavaPlugin providingPlugin = JavaPlugin.getProvidingPlugin(info.getElementClass());
+					message += " (provided by " + providingPlugin.getName() + ")";
+				} catch (IllegalArgumentException | IllegalStateException ignored) {}
+				throw new RuntimeException(message, e);
+
+			}
+			if (parseResult != null) {
+				int startIndex = -1;
+				for (int i = 0; (startIndex = nextUnescaped(pattern, '%', startIndex + 1)) != -1; i++) {
+					int endIndex = nextUnescaped(pattern, '%', startIndex + 1);
+					if (parseResult.exprs[i] == null) {
+						String name = pattern.substring(startIndex + 1, endIndex);
+						if (!name.startsWith("-")) {
+							ExprInfo exprInfo = getExprInfo(name);
+							DefaultExpression<?> expr = exprInfo.classes[0].getDefaultExpression();
+							if (expr == null)
+								throw new SkriptAPIException("The class '" + exprInfo.classes[0].getCodeName() + "' does not provide a default expression. Either allow null (with %-" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
+							if (!(expr instanceof Literal) && (exprInfo.flagMask & PARSE_EXPRESSIONS) == 0)
+								throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is not a literal. Either allow null (with %-*" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
+							if (expr instanceof Literal && (exprInfo.flagMask & PARSE_LITERALS) == 0)
+								throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is a literal. Either allow null (with %-~" + exprInfo.classes[0].getCodeName() + "%) or make it mandatory [pattern: " + info.patterns[patternIndex] + "]");
+							if (!exprInfo.isPlural[0] && !expr.isSingle())
+								throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' is not a single-element expression. Change your pattern to allow multiple elements or make the expression mandatory [pattern: " + info.patterns[patternIndex] + "]");
+							if (exprInfo.time != 0 && !expr.setTime(exprInfo.time))
+								throw new SkriptAPIException("The default expression of '" + exprInfo.classes[0].getCodeName() + "' does not have distinct time states. [pattern: " + info.patterns[patternIndex] + "]");
+							if (!expr.init())
+								return null;
+							parseResult.exprs[i] = expr;
+						}
+					}
+					startIndex = endIndex;
+				}
+				T element = info.getElementClass().newInstance();
+				if (element.init(parseResult.exprs, patternIndex, getParser().getHasDelayBefore(), parseResult))
+					return element;
+			}
+		} catch (InstantiationException | IllegalAccessException e) {
+			assert false;
+		}
+		return null;
+	}
+
 	private static final Pattern VARIABLE_PATTERN = Pattern.compile("((the )?var(iable)? )?\\{.+\\}", Pattern.CASE_INSENSITIVE);
 
 	/**
@@ -312,14 +361,21 @@ public class SkriptParser {
 		if (expr.startsWith("\"") && expr.length() != 1 && nextQuote(expr, 1) == expr.length() - 1) {
 			return VariableString.newInstance("" + expr.substring(1, expr.length() - 1));
 		} else {
-			return (Expression<?>) parse(expr, (Iterator) Skript.getExpressions(types), null);
+			Expression<?> expression = (Expression<?>) parse(expr, (Iterator) Skript.getExpressions(expr, types), null);
+			// replace constant expressions like '2 * 60 * 20' with their values
+			return expression == null ? null : FoldedLiteral.fold(expression);
 		}
 	}
 
 
 	@Nullable
-	@SuppressWarnings({"unchecked", "rawtypes"})
 	private <T> Expression<? extends T> parseSingleExpr(boolean allowUnparsedLiteral, @Nullable LogEntry error, Class<? extends T>... types) {
+		return memoizeFailure(1, allowUnparsedLiteral, types, () -> parseSingleExpr_i(allowUnparsedLiteral, error, types));
+	}
+
+	@Nullable
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private <T> Expression<? extends T> parseSingleExpr_i(boolean allowUnparsedLiteral, @Nullable LogEntry error, Class<? extends T>... types) {
 		assert types.length > 0;
 		assert types.length == 1 || !CollectionUtils.contains(types, Object.class);
 		if (expr.isEmpty())
@@ -411,6 +467,11 @@ public class SkriptParser {
 
 	@Nullable
 	private Expression<?> parseSingleExpr(boolean allowUnparsedLiteral, @Nullable LogEntry error, ExprInfo exprInfo) {
+		return memoizeFailure(2, allowUnparsedLiteral, getMemoKey(exprInfo), () -> parseSingleExpr_i(allowUnparsedLiteral, error, exprInfo));
+	}
+
+	@Nullable
+	private Expression<?> parseSingleExpr_i(boolean allowUnparsedLiteral, @Nullable LogEntry error, ExprInfo exprInfo) {
 		if (expr.isEmpty()) // Empty expressions return nothing, obviously
 			return null;
 
@@ -600,6 +661,141 @@ public class SkriptParser {
 		}
 	}
 
+	/**
+	 * Remembers which (sub)expressions of the line that is currently being parsed failed to parse,
+	 * along with the error that was printed, so that they are not parsed again
+	 * while searching for a valid way to split the line.
+	 * <p>
+	 * Only failures are remembered, as successfully parsed expressions cannot be shared between parents.
+	 * The memo is discarded as soon as the parser's state (the current node, events, sections, ...) changes.
+	 */
+	private static final class FailureMemo {
+
+		private static final ThreadLocal<FailureMemo> MEMO = ThreadLocal.withInitial(FailureMemo::new);
+
+		/**
+		 * Used as the value of failures that did not print an error.
+		 */
+		private static final Object NO_ERROR = new Object();
+
+		/**
+		 * Maps failed parse attempts to the {@link LogEntry} of their error, or {@link #NO_ERROR}.
+		 */
+		private final Map<MemoKey, Object> failures = new HashMap<>();
+
+		@Nullable
+		private Node node;
+		@Nullable
+		private Structure structure;
+		private Class<? extends Event> @Nullable [] events;
+		private Kleenean hasDelayBefore = Kleenean.UNKNOWN;
+		private int sectionCount;
+		@Nullable
+		private TriggerSection section;
+
+		/**
+		 * @return The memo for the current parser state, or null if the parser isn't parsing a line of a script.
+		 */
+		@Nullable
+		static FailureMemo get() {
+			ParserInstance parser = getParser();
+			Node node = parser.isActive() ? parser.getNode() : null;
+			if (node == null)
+				return null;
+
+			FailureMemo memo = MEMO.get();
+			Structure structure = parser.getCurrentStructure();
+			Class<? extends Event>[] events = parser.getCurrentEvents();
+			Kleenean hasDelayBefore = parser.getHasDelayBefore();
+			List<TriggerSection> sections = parser.getCurrentSections();
+			TriggerSection section = sections.isEmpty() ? null : sections.get(sections.size() - 1);
+			if (memo.node != node || memo.structure != structure || memo.events != events
+					|| memo.hasDelayBefore != hasDelayBefore || memo.sectionCount != sections.size() || memo.section != section) {
+				memo.failures.clear();
+				memo.node = node;
+				memo.structure = structure;
+				memo.events = events;
+				memo.hasDelayBefore = hasDelayBefore;
+				memo.sectionCount = sections.size();
+				memo.section = section;
+			}
+			return memo;
+		}
+
+	}
+
+	/**
+	 * Identifies a parse attempt for the {@link FailureMemo}.
+	 */
+	private static final class MemoKey {
+
+		private final Object[] parts;
+		private final int hashCode;
+
+		MemoKey(Object... parts) {
+			this.parts = parts;
+			this.hashCode = Arrays.deepHashCode(parts);
+		}
+
+		@Override
+		public boolean equals(@Nullable Object object) {
+			return object instanceof MemoKey && Arrays.deepEquals(parts, ((MemoKey) object).parts);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+	}
+
+	private static Object[] getMemoKey(ExprInfo exprInfo) {
+		return new Object[] {exprInfo.classes, exprInfo.isPlural, exprInfo.isOptional, exprInfo.flagMask, exprInfo.time};
+	}
+
+	/**
+	 * Runs the given parse attempt, unless the same attempt has already failed for the line that is currently being parsed,
+	 * in which case the error of that failure is printed again.
+	 * @param method Identifies the parse method making the attempt.
+	 * @param allowUnparsedLiteral Whether the parse method may return an {@link UnparsedLiteral}.
+	 * @param types The types the parse method is parsing.
+	 * @param parse The parse attempt.
+	 * @return The result of the parse attempt.
+	 */
+	@Nullable
+	private <R> R memoizeFailure(int method, boolean allowUnparsedLiteral, Object types, Supplier<R> parse) {
+		FailureMemo memo = FailureMemo.get();
+		if (memo == null)
+			return parse.get();
+
+		MemoKey key = new MemoKey(method, expr, flags, context, allowUnparsedLiteral, suppressMissingAndOrWarnings, types);
+		Object failure = memo.failures.get(key);
+		if (failure != null) {
+			if (failure instanceof LogEntry) {
+				LogEntry error = (LogEntry) failure;
+				SkriptLogger.log(new LogEntry(error.level, error.quality, error.message, error.node));
+			}
+			return null;
+		}
+
+		ParseLogHandler log = SkriptLogger.startParseLogHandler();
+		try {
+			R result = parse.get();
+			if (result != null) {
+				log.printLog();
+				return result;
+			}
+			LogEntry error = log.getError();
+			// The parser state might have changed while parsing, which clears the memo
+			if (FailureMemo.get() == memo)
+				memo.failures.put(key, error != null ? error : FailureMemo.NO_ERROR);
+			log.printError();
+			return null;
+		} finally {
+			log.stop();
+		}
+	}
+
 	/**
 	 * Matches ',', 'and', 'or', etc. as well as surrounding whitespace.
 	 * <p>
@@ -619,8 +815,13 @@ public class SkriptParser {
 	}
 
 	@Nullable
-	@SuppressWarnings("unchecked")
 	public <T> Expression<? extends T> parseExpression(Class<? extends T>... types) {
+		return memoizeFailure(3, false, types, () -> parseExpression_i(types));
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private <T> Expression<? extends T> parseExpression_i(Class<? extends T>... types) {
 		if (expr.length() == 0)
 			return null;
 
@@ -742,6 +943,11 @@ public class SkriptParser {
 
 	@Nullable
 	public Expression<?> parseExpression(ExprInfo exprInfo) {
+		return memoizeFailure(4, false, getMemoKey(exprInfo), () -> parseExpression_i(exprInfo));
+	}
+
+	@Nullable
+	private Expression<?> parseExpression_i(ExprInfo exprInfo) {
 		if (expr.length() == 0)
 			return null;
 
@@ -1246,10 +1452,66 @@ public class SkriptParser {
 
 	private static final Map<String, SkriptPattern> patterns = new ConcurrentHashMap<>();
 
+	/**
+	 * @return The compiled pattern, which is only compiled once for all parsers.
+	 * @throws MalformedPatternException If the pattern is malformed.
+	 */
+	static SkriptPattern getPattern(String pattern) {
+		return patterns.computeIfAbsent(pattern, PatternCompiler::compile);
+	}
+
+	/**
+	 * The lowercase version of {@link #expr}, used for checking keywords.
+	 */
+	@Nullable
+	private String lowerExpr;
+
+	/**
+	 * Keeps track of whether keywords of patterns occur in {@link #expr},
+	 * so that each keyword only has to be searched for once for all patterns requiring it.
+	 */
+	@Nullable
+	private Map<String, Boolean> keywordOccurrences;
+
+	/**
+	 * Checks whether all keywords of the given pattern occur in this parser's expression.
+	 * If they don't, the pattern cannot match, and there is no need to attempt matching it.
+	 * @param pattern The pattern to check the keywords of.
+	 * @return Whether the expression contains all keywords of the pattern.
+	 */
+	private boolean containsKeywords(SkriptPattern pattern) {
+		String[] keywords = pattern.getRequiredKeywords();
+		if (keywords.length == 0)
+			return true;
+		if (lowerExpr == null) {
+			lowerExpr = expr.toLowerCase(Locale.ENGLISH);
+			keywordOccurrences = new HashMap<>();
+		}
+		assert keywordOccurrences != null;
+		for (String keyword : keywords) {
+			Boolean occurs = keywordOccurrences.get(keyword);
+			if (occurs == null) {
+				occurs = lowerExpr.contains(keyword);
+				keywordOccurrences.put(keyword, occurs);
+			}
+			if (!occurs)
+				return false;
+		}
+		return true;
+	}
+
 	@Nullable
 	private ParseResult parse_i(String pattern) {
-		SkriptPattern skriptPattern = patterns.computeIfAbsent(pattern, PatternCompiler::compile);
-		ch.njol.skript.patterns.MatchResult matchResult = skriptPattern.match(expr, flags, context);
+		return parse_i(getPattern(pattern), true);
+	}
+
+	/**
+	 * @param checkKeywords whether the pattern should check its required keywords itself,
+	 * i.e. whether they haven't already been checked with {@link #containsKeywords(SkriptPattern)}.
+	 */
+	@Nullable
+	private ParseResult parse_i(SkriptPattern skriptPattern, boolean checkKeywords) {
+		ch.njol.skript.patterns.MatchResult matchResult = skriptPattern.match(expr, flags, context, checkKeywords);
 		if (matchResult == null)
 			return null;
 		return matchResult.toParseResult();
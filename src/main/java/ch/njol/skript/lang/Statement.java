@@ -56,7 +56,7 @@ public abstract class Statement extends TriggerItem implements SyntaxElement {
 			}
 			log.clear();
 
-			Statement statement = (Statement) SkriptParser.parse(input, (Iterator) Skript.getStatements().iterator(), defaultError);
+			Statement statement = (Statement) SkriptParser.parse(input, (Iterator) Skript.getStatements(input), defaultError);
 			if (statement != null) {
 				log.printLog();
 				return statement;
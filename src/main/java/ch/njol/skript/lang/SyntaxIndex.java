@@ -0,0 +1,187 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang;
+
+import ch.njol.skript.patterns.MalformedPatternException;
+import ch.njol.skript.patterns.SkriptPattern;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An inverted index of the keywords of a type of syntax elements, e.g. all effects,
+ * which finds the syntax elements that may match an expression without trying each of them.
+ * <p>
+ * Every pattern is indexed by one trigram, i.e. three consecutive characters, of its {@link SkriptPattern#getRequiredKeywords() keywords},
+ * preferably one that few other patterns contain. An expression that doesn't contain this trigram cannot match the pattern,
+ * so only the syntax elements with a pattern whose trigram occurs in the expression are candidates for it.
+ * Patterns without a keyword of at least three characters are candidates for every expression.
+ * <p>
+ * The index is {@link #build() built} once all syntax elements are registered.
+ * If more syntax elements are registered afterwards, all of them are candidates until it is rebuilt.
+ *
+ * @param <I> The type of the syntax element infos.
+ */
+public final class SyntaxIndex<I extends SyntaxElementInfo<?>> {
+
+	private static final int TRIGRAM_LENGTH = 3;
+
+	/**
+	 * The indexed syntax elements, in the order they are tried.
+	 */
+	private final Collection<I> elements;
+
+	@Nullable
+	private volatile Index<I> index;
+
+	public SyntaxIndex(Collection<I> elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * Indexes all currently registered syntax elements.
+	 * An element with a malformed pattern is a candidate for every expression, so that the error is reported when it is tried.
+	 */
+	public void build() {
+		index = new Index<>(new ArrayList<>(elements));
+	}
+
+	/**
+	 * @param expr The expression to parse.
+	 * @return The syntax elements that may match the given expression, in the order they are tried.
+	 * The other syntax elements are known not to match it.
+	 */
+	public Iterator<I> getCandidates(String expr) {
+		Index<I> index = this.index;
+		if (index == null || index.elements.size() != elements.size())
+			return elements.iterator();
+		return index.getCandidates(expr);
+	}
+
+	private static final class Index<I extends SyntaxElementInfo<?>> {
+
+		private final List<I> elements;
+
+		/**
+		 * The indices of the elements that are candidates for every expression.
+		 */
+		private final BitSet unindexed = new BitSet();
+
+		/**
+		 * The indices of the elements with a pattern indexed by each trigram.
+		 */
+		private final Map<String, BitSet> trigrams = new HashMap<>();
+
+		Index(List<I> elements) {
+			this.elements = elements;
+
+			// The trigrams of each pattern, or null for patterns that cannot be indexed
+			List<List<Set<String>>> patternTrigrams = new ArrayList<>(elements.size());
+			Map<String, Integer> frequencies = new HashMap<>();
+			for (I element : elements) {
+				List<Set<String>> elementTrigrams = new ArrayList<>(element.patterns.length);
+				for (String pattern : element.patterns) {
+					Set<String> trigrams = getTrigrams(pattern);
+					if (trigrams != null) {
+						for (String trigram : trigrams)
+							frequencies.merge(trigram, 1, Integer::sum);
+					}
+					elementTrigrams.add(trigrams);
+				}
+				patternTrigrams.add(elementTrigrams);
+			}
+
+			for (int i = 0; i < elements.size(); i++) {
+				for (Set<String> trigrams : patternTrigrams.get(i)) {
+					if (trigrams == null) {
+						unindexed.set(i);
+						continue;
+					}
+					String rarest = null;
+					for (String trigram : trigrams) {
+						if (rarest == null || frequencies.get(trigram) < frequencies.get(rarest))
+							rarest = trigram;
+					}
+					this.trigrams.computeIfAbsent(rarest, key -> new BitSet()).set(i);
+				}
+			}
+		}
+
+		/**
+		 * @return The trigrams of the keywords of the given pattern,
+		 * or null if the pattern is malformed or has no keyword with a trigram.
+		 */
+		@Nullable
+		private static Set<String> getTrigrams(String pattern) {
+			SkriptPattern skriptPattern;
+			try {
+				skriptPattern = SkriptParser.getPattern(pattern);
+			} catch (MalformedPatternException e) {
+				// Reported when the pattern is tried
+				return null;
+			}
+			Set<String> trigrams = new HashSet<>();
+			for (String keyword : skriptPattern.getRequiredKeywords()) {
+				for (int i = 0; i + TRIGRAM_LENGTH <= keyword.length(); i++)
+					trigrams.add(keyword.substring(i, i + TRIGRAM_LENGTH));
+			}
+			return trigrams.isEmpty() ? null : trigrams;
+		}
+
+		Iterator<I> getCandidates(String expr) {
+			String lowerExpr = expr.toLowerCase(Locale.ENGLISH);
+			BitSet candidates = (BitSet) unindexed.clone();
+			for (int i = 0; i + TRIGRAM_LENGTH <= lowerExpr.length(); i++) {
+				BitSet elements = trigrams.get(lowerExpr.substring(i, i + TRIGRAM_LENGTH));
+				if (elements != null)
+					candidates.or(elements);
+			}
+
+			return new Iterator<I>() {
+				private int next = candidates.nextSetBit(0);
+
+				@Override
+				public boolean hasNext() {
+					return next >= 0;
+				}
+
+				@Override
+				public I next() {
+					if (next < 0)
+						throw new NoSuchElementException();
+					I element = elements.get(next);
+					next = candidates.nextSetBit(next + 1);
+					return element;
+				}
+			};
+		}
+
+	}
+
+}
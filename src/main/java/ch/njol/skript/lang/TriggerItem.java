@@ -19,6 +19,7 @@
 package ch.njol.skript.lang;
 
 import ch.njol.skript.Skript;
+import ch.njol.skript.timings.SkriptProfiler;
 import ch.njol.skript.util.SkriptColor;
 import ch.njol.util.StringUtils;
 import org.bukkit.event.Event;
@@ -41,6 +42,7 @@ public abstract class TriggerItem implements Debuggable {
 	protected TriggerSection parent = null;
 	@Nullable
 	private TriggerItem next = null;
+	private int line = -1; // -1 is default: it means there is no line number available
 
 	protected TriggerItem() {}
 
@@ -84,8 +86,17 @@ public abstract class TriggerItem implements Debuggable {
 	public static boolean walk(TriggerItem start, Event event) {
 		TriggerItem triggerItem = start;
 		try {
-			while (triggerItem != null)
-				triggerItem = triggerItem.walk(event);
+			if (SkriptProfiler.isEnabled()) {
+				while (triggerItem != null) {
+					TriggerItem current = triggerItem;
+					long startTime = System.nanoTime();
+					triggerItem = current.walk(event);
+					SkriptProfiler.recordItem(current, System.nanoTime() - startTime);
+				}
+			} else {
+				while (triggerItem != null)
+					triggerItem = triggerItem.walk(event);
+			}
 
 			return true;
 		} catch (StackOverflowError err) {
@@ -164,6 +175,22 @@ public abstract class TriggerItem implements Debuggable {
 		return (Trigger) triggerItem;
 	}
 
+	/**
+	 * Sets the line number of this item in its script.
+	 * Only used for debugging and profiling.
+	 * @param line Line number
+	 */
+	public void setLineNumber(int line) {
+		this.line = line;
+	}
+
+	/**
+	 * @return The line number of this item in its script, or -1 if unknown. This should ONLY be used for debugging!
+	 */
+	public int getLineNumber() {
+		return line;
+	}
+
 	public TriggerItem setNext(@Nullable TriggerItem next) {
 		this.next = next;
 		return this;
@@ -26,7 +26,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.TreeMap;
 
 import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
@@ -43,8 +42,10 @@ import ch.njol.skript.lang.parser.ParserInstance;
 import ch.njol.skript.lang.util.SimpleExpression;
 import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.structures.StructVariables.DefaultVariables;
+import ch.njol.skript.timings.SkriptProfiler;
 import ch.njol.skript.util.StringMode;
 import ch.njol.skript.util.Utils;
+import ch.njol.skript.variables.LocalVariableLayout;
 import ch.njol.skript.variables.TypeHints;
 import ch.njol.skript.variables.Variables;
 import ch.njol.util.Checker;
@@ -91,6 +92,16 @@ public class Variable<T> implements Expression<T> {
 	@Nullable
 	private final Variable<?> source;
 
+	/**
+	 * The layout this local variable has a slot in, if its name is constant.
+	 * @see LocalVariableLayout
+	 */
+	@Nullable
+	private final LocalVariableLayout layout;
+	private final int slot;
+	@Nullable
+	private final String slotName;
+
 	@SuppressWarnings("unchecked")
 	private Variable(VariableString name, Class<? extends T>[] types, boolean local, boolean list, @Nullable Variable<?> source) {
 		assert types.length > 0;
@@ -110,6 +121,13 @@ public class Variable<T> implements Expression<T> {
 		this.superType = (Class<T>) Utils.getSuperType(types);
 
 		this.source = source;
+
+		// Constant local variable names are resolved to a slot now, so that they don't have to be looked up on every access
+		String simpleName = local && !list && name.isSimple() ? name.toString(null) : null;
+		LocalVariableLayout layout = simpleName != null && LocalVariableLayout.canHaveSlot(simpleName) ? LocalVariableLayout.get(parser) : null;
+		this.layout = layout;
+		this.slot = layout != null ? layout.getOrCreateSlot(simpleName) : -1;
+		this.slotName = layout != null ? LocalVariableLayout.normalize(simpleName) : null;
 	}
 
 	/**
@@ -312,7 +330,13 @@ public class Variable<T> implements Expression<T> {
 			// prevents e.g. {%expr%} where "%expr%" ends with "::*" from returning a Map
 			if (name.endsWith(Variable.SEPARATOR + "*") != list)
 				return null;
-			Object value = !list ? convertIfOldPlayer(name, event, Variables.getVariable(name, event, local)) : Variables.getVariable(name, event, local);
+			Object value;
+			if (layout != null) {
+				assert slotName != null;
+				value = convertIfOldPlayer(name, event, Variables.getLocalVariable(layout, slot, slotName, event));
+			} else {
+				value = !list ? convertIfOldPlayer(name, event, Variables.getVariable(name, event, local)) : Variables.getVariable(name, event, local);
+			}
 			if (value != null)
 				return value;
 
@@ -333,9 +357,13 @@ public class Variable<T> implements Expression<T> {
 	}
 
 	@Nullable
-	@SuppressWarnings("unchecked")
 	private Object get(Event event) {
-		Object rawValue = getRaw(event);
+		return get(event, getRaw(event));
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private Object get(Event event, @Nullable Object rawValue) {
 		if (!list)
 			return rawValue;
 		if (rawValue == null)
@@ -381,7 +409,7 @@ public class Variable<T> implements Expression<T> {
 		Object val = Variables.getVariable(name + "*", event, local);
 		if (val == null)
 			return new EmptyIterator<>();
-		assert val instanceof TreeMap;
+		assert val instanceof Map;
 		// temporary list to prevent CMEs
 		@SuppressWarnings("unchecked")
 		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) val).keySet()).iterator();
@@ -399,7 +427,7 @@ public class Variable<T> implements Expression<T> {
 					key = keys.next();
 					if (key != null) {
 						next = convertIfOldPlayer(name + key, event, Variables.getVariable(name + key, event, local));
-						if (next != null && !(next instanceof TreeMap))
+						if (next != null && !(next instanceof Map))
 							return true;
 					}
 				}
@@ -435,7 +463,7 @@ public class Variable<T> implements Expression<T> {
 		Object value = Variables.getVariable(name + "*", event, local);
 		if (value == null)
 			return new EmptyIterator<>();
-		assert value instanceof TreeMap;
+		assert value instanceof Map;
 		// temporary list to prevent CMEs
 		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) value).keySet()).iterator();
 		return new Iterator<T>() {
@@ -454,7 +482,7 @@ public class Variable<T> implements Expression<T> {
 					if (key != null) {
 						next = Converters.convert(Variables.getVariable(name + key, event, local), types);
 						next = (T) convertIfOldPlayer(name + key, event, next);
-						if (next != null && !(next instanceof TreeMap))
+						if (next != null && !(next instanceof Map))
 							return true;
 					}
 				}
@@ -490,7 +518,24 @@ public class Variable<T> implements Expression<T> {
 		return Converters.convert((Object[]) get(event), types, superType);
 	}
 
+	/**
+	 * Gets the values of this list variable from its value as stored in the variables map,
+	 * for callers which already got it using {@link #getRaw(Event)}.
+	 *
+	 * @param rawValue the value returned by {@link #getRaw(Event)} for the same event.
+	 * @return the values of this list variable, as returned by {@link #getAll(Event)}.
+	 */
+	public T[] getAll(Event event, @Nullable Object rawValue) {
+		assert list;
+		return Converters.convert((Object[]) get(event, rawValue), types, superType);
+	}
+
 	private void set(Event event, @Nullable Object value) {
+		if (layout != null) {
+			assert slotName != null;
+			Variables.setLocalVariable(layout, slot, slotName, value, event);
+			return;
+		}
 		Variables.setVariable("" + name.toString(event), value, event, local);
 	}
 
@@ -511,6 +556,8 @@ public class Variable<T> implements Expression<T> {
 	@Override
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public void change(Event event, @Nullable Object[] delta, ChangeMode mode) throws UnsupportedOperationException {
+		if (SkriptProfiler.isEnabled())
+			SkriptProfiler.recordVariableChange(toString());
 		switch (mode) {
 			case DELETE:
 				if (list) {
@@ -577,6 +624,13 @@ public class Variable<T> implements Expression<T> {
 							return;
 						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
 						for (Object value : delta) {
+							// Lists with a reverse index know where the value is
+							List<String> indices = Variables.getListIndicesOf(map, value);
+							if (indices != null) {
+								if (!indices.isEmpty())
+									toRemove.add(indices.get(0));
+								continue;
+							}
 							for (Entry<String, Object> entry : map.entrySet()) {
 								if (Relation.EQUAL.isImpliedBy(Comparators.compare(entry.getValue(), value))) {
 									String key = entry.getKey();
@@ -597,11 +651,20 @@ public class Variable<T> implements Expression<T> {
 						if (map == null)
 							return;
 						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
-						for (Entry<String, Object> i : map.entrySet()) {
-							for (Object value : delta) {
-								if (Relation.EQUAL.isImpliedBy(Comparators.compare(i.getValue(), value)))
-									toRemove.add(i.getKey());
+						// Lists with a reverse index can look up each value, if the index can be used for all of them
+						for (Object value : delta) {
+							List<String> indices = Variables.getListIndicesOf(map, value);
+							if (indices == null) {
+								toRemove.clear();
+								for (Entry<String, Object> i : map.entrySet()) {
+									for (Object deltaValue : delta) {
+										if (i.getKey() != null && Relation.EQUAL.isImpliedBy(Comparators.compare(i.getValue(), deltaValue)))
+											toRemove.add(i.getKey());
+									}
+								}
+								break;
 							}
+							toRemove.addAll(indices);
 						}
 						for (String index : toRemove) {
 							assert index != null;
@@ -612,8 +675,7 @@ public class Variable<T> implements Expression<T> {
 						int i = 1;
 						for (Object value : delta) {
 							if (map != null)
-								while (map.containsKey("" + i))
-									i++;
+								i = Variables.getNextFreeListIndex(map, i);
 							setIndex(event, "" + i, value);
 							i++;
 						}
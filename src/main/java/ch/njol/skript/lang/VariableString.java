@@ -32,6 +32,7 @@ import ch.njol.skript.log.RetainingLogHandler;
 import ch.njol.skript.log.SkriptLogger;
 import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.structures.StructVariables.DefaultVariables;
+import ch.njol.skript.util.LiteralUtils;
 import ch.njol.skript.util.StringMode;
 import ch.njol.skript.util.Utils;
 import ch.njol.skript.util.chat.ChatMessages;
@@ -263,6 +264,10 @@ public class VariableString implements Expression<String> {
 		if (strings.size() == 1 && strings.get(0) instanceof String)
 			return new VariableString(original);
 
+		// Inline constant expressions, e.g. "%2 * 60% seconds", and return if nothing else is left
+		if (mode == StringMode.MESSAGE && inlineConstants(strings) && strings.size() == 1 && strings.get(0) instanceof String)
+			return new VariableString(((String) strings.get(0)).replace("%", "%%"));
+
 		if (strings.size() == 1 && strings.get(0) instanceof Expression &&
 				((Expression<?>) strings.get(0)).getReturnType() == String.class &&
 				((Expression<?>) strings.get(0)).isSingle() &&
@@ -273,6 +278,51 @@ public class VariableString implements Expression<String> {
 		return new VariableString(original, strings.toArray(), mode);
 	}
 
+	/**
+	 * Replaces the literals in the given parts of a string with their text, merging them with the surrounding text.
+	 * Only strings and integers are inlined, as they are converted to text the same way in every {@link StringMode}.
+	 * Text containing formatting is not inlined either, since formatting is never applied to the values of expressions.
+	 *
+	 * @param strings The parts of a string, see {@link #newInstance(String, StringMode)}.
+	 * @return Whether any literal was inlined.
+	 */
+	private static boolean inlineConstants(List<Object> strings) {
+		boolean inlined = false;
+		for (int i = 0; i < strings.size(); i++) {
+			Object part = strings.get(i);
+			if (!(part instanceof Literal) || !LiteralUtils.isConstant((Literal<?>) part))
+				continue;
+			Object[] values = ((Literal<?>) part).getArray();
+			boolean inlinable = true;
+			for (Object value : values) {
+				if (!(value instanceof String || value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+					inlinable = false;
+					break;
+				}
+			}
+			if (!inlinable)
+				continue;
+			String text = Classes.toString(values, true, StringMode.MESSAGE);
+			if (text.indexOf('<') != -1 || text.indexOf('&') != -1 || text.indexOf('§') != -1)
+				continue;
+			if (i > 0 && strings.get(i - 1) instanceof String) { // the text must not complete a colour code or tag of the text before it
+				String before = (String) strings.get(i - 1);
+				if (before.endsWith("&") || before.endsWith("§") || before.lastIndexOf('<') > before.lastIndexOf('>'))
+					continue;
+			}
+
+			// merge with the text before and after the literal
+			if (i > 0 && strings.get(i - 1) instanceof String) {
+				text = strings.remove(--i) + text;
+			}
+			if (i + 1 < strings.size() && strings.get(i + 1) instanceof String)
+				text = text + strings.remove(i + 1);
+			strings.set(i, text);
+			inlined = true;
+		}
+		return inlined;
+	}
+
 	/**
 	 * Attempts to properly quote a string (e.g. double the double quotations).
 	 * Please note that the string itself will not be surrounded with double quotations.
@@ -25,6 +25,7 @@ import org.eclipse.jdt.annotation.Nullable;
 
 import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.timings.SkriptProfiler;
 import ch.njol.util.coll.CollectionUtils;
 
 /**
@@ -126,7 +127,14 @@ public abstract class Function<T> {
 		}
 		
 		// Execute function contents
-		T[] r = execute(e, ps);
+		T[] r;
+		if (SkriptProfiler.isEnabled()) {
+			long start = System.nanoTime();
+			r = execute(e, ps);
+			SkriptProfiler.recordFunction(sign.local ? sign.script + ": " + getName() : getName(), System.nanoTime() - start);
+		} else {
+			r = execute(e, ps);
+		}
 		// Assert that return value type makes sense
 		assert sign.getReturnType() == null ? r == null : r == null
 			|| (r.length <= 1 || !sign.isSingle()) && !CollectionUtils.contains(r, null)
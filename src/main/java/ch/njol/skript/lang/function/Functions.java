@@ -78,6 +78,11 @@ public abstract class Functions {
 
 	static boolean callFunctionEvents = false;
 
+	/**
+	 * Counts the changes to the registered signatures.
+	 */
+	private static int signatureChanges = 0;
+
 	/**
 	 * Registers a function written in Java.
 	 *
@@ -91,6 +96,7 @@ public abstract class Functions {
 		javaNamespace.addSignature(function.getSignature());
 		javaNamespace.addFunction(function);
 		globalFunctions.put(function.getName(), javaNamespace);
+		signatureChanges++;
 
 		return function;
 	}
@@ -196,6 +202,7 @@ public abstract class Functions {
 		namespace.addSignature(signature);
 		if (!signature.local)
 			globalFunctions.put(signature.name, namespace);
+		signatureChanges++;
 
 		Skript.debug("Registered function signature: " + signature.name);
 
@@ -378,6 +385,7 @@ public abstract class Functions {
 
 		// Remove references to this namespace from global functions
 		globalFunctions.values().removeIf(loopedNamespaced -> loopedNamespaced == namespace);
+		signatureChanges++;
 
 		// Queue references to signatures we have for revalidation
 		// Can't validate here, because other scripts might be loaded soon
@@ -403,6 +411,7 @@ public abstract class Functions {
 				if (namespace.getSignatures().isEmpty())
 					namespaceIterator.remove();
 
+				signatureChanges++;
 				break;
 			}
 		}
@@ -413,6 +422,24 @@ public abstract class Functions {
 		}
 	}
 
+	/**
+	 * @return All registered signatures, including those of Java functions and local functions.
+	 */
+	public static List<Signature<?>> getSignatures() {
+		List<Signature<?>> signatures = new ArrayList<>();
+		for (Namespace namespace : namespaces.values())
+			signatures.addAll(namespace.getSignatures());
+		return signatures;
+	}
+
+	/**
+	 * @return A number that changes whenever a signature is registered or unregistered,
+	 * so that information derived from the {@link #getSignatures() signatures} can be updated.
+	 */
+	public static int getSignatureChanges() {
+		return signatureChanges;
+	}
+
 	public static void validateFunctions() {
 		for (FunctionReference<?> c : toValidate)
 			c.validateFunction(false);
@@ -427,6 +454,7 @@ public abstract class Functions {
 		// Keep Java functions, remove everything else
 		globalFunctions.values().removeIf(namespace -> namespace != javaNamespace);
 		namespaces.clear();
+		signatureChanges++;
 
 		assert toValidate.isEmpty() : toValidate;
 		toValidate.clear();
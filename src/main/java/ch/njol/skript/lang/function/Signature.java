@@ -96,6 +96,13 @@ public class Signature<T> {
 		this(script, name, parameters, local, returnType, single, null);
 	}
 	
+	/**
+	 * @return The name of the script the function is declared in.
+	 */
+	public String getScript() {
+		return script;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -0,0 +1,448 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang.parser;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.SkriptAddon;
+import ch.njol.skript.SkriptConfig;
+import ch.njol.skript.aliases.Aliases;
+import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.config.Config;
+import ch.njol.skript.config.Node;
+import ch.njol.skript.lang.ParseContext;
+import ch.njol.skript.lang.SyntaxElementInfo;
+import ch.njol.skript.lang.TriggerSection;
+import ch.njol.skript.lang.function.Functions;
+import ch.njol.skript.lang.function.Signature;
+import ch.njol.skript.util.ExceptionUtils;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+import org.jetbrains.annotations.ApiStatus;
+import org.skriptlang.skript.lang.script.Script;
+import org.skriptlang.skript.lang.script.ScriptData;
+import org.skriptlang.skript.lang.structure.Structure;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache remembering which syntax element and pattern successfully parsed
+ * each statement and expression of a script.
+ * When a script is loaded again without being changed, the remembered candidate is tried first,
+ * instead of trying every registered syntax element in order.
+ * <p>
+ * Only the outcome of parsing is cached: syntax elements are still initialized normally,
+ * so the loaded script is the same as without the cache.
+ * A cache file is discarded when the script's contents, the Skript version, the loaded addons,
+ * the registered syntax, the loaded aliases or the config change.
+ * The hints are also discarded when the function signatures change,
+ * and they depend on the events, structure and sections the parser is in.
+ * <p>
+ * This cache is only used if {@link SkriptConfig#enableScriptCaching} is enabled.
+ */
+@ApiStatus.Internal
+public final class ScriptParseCache implements ScriptData {
+
+	private static final int MAGIC = 0x534B5043; // SKPC
+
+	private static final short FORMAT_VERSION = 2;
+
+	/**
+	 * The folder cache files are stored in, relative to Skript's data folder.
+	 */
+	private static final String CACHE_FOLDER = "cache" + File.separator + "scripts";
+
+	/**
+	 * The fingerprint of all registered syntax,
+	 * computed once syntax registration has been closed.
+	 */
+	@Nullable
+	private static volatile String syntaxFingerprint;
+
+	/**
+	 * The fingerprint of all registered function signatures,
+	 * computed when {@link Functions#getSignatureChanges()} was {@link #signatureChanges}.
+	 */
+	@Nullable
+	private static String signaturesFingerprint;
+	private static int signatureChanges;
+
+	/**
+	 * Loads the cache of the provided script from disk,
+	 * and makes it available to the parser through the script's data.
+	 * Does nothing if script caching is disabled.
+	 * @param script The script to load the cache of.
+	 */
+	public static void load(Script script) {
+		if (!SkriptConfig.enableScriptCaching.value())
+			return;
+		Config config = script.getConfig();
+		File file = config.getFile();
+		if (file == null)
+			return;
+
+		String header;
+		try {
+			header = hash(Files.readAllBytes(file.toPath())) + ":" + getEnvironmentFingerprint();
+		} catch (IOException e) {
+			Skript.debug("Could not read " + file + " for the script cache: " + ExceptionUtils.toString(e));
+			return;
+		}
+
+		File cacheFile = new File(new File(Skript.getInstance().getDataFolder(), CACHE_FOLDER),
+			UUID.nameUUIDFromBytes(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8)) + ".cache");
+		ScriptParseCache cache = new ScriptParseCache(cacheFile, header);
+		if (cacheFile.exists()) {
+			try {
+				cache.read();
+			} catch (IOException e) {
+				Skript.debug("Discarding unreadable script cache of " + config.getFileName() + ": " + ExceptionUtils.toString(e));
+				cache.hints.clear();
+				cache.changed = true;
+			}
+		}
+		script.addData(cache);
+	}
+
+	/**
+	 * @return The cache of the script that is currently being parsed,
+	 *  or null if there is none or if parsing is not happening at a known line of a script.
+	 */
+	@Nullable
+	public static ScriptParseCache getActive() {
+		ParserInstance parser = ParserInstance.get();
+		if (!parser.isActive() || parser.getNode() == null)
+			return null;
+		return parser.getCurrentScript().getData(ScriptParseCache.class);
+	}
+
+	private final File cacheFile;
+
+	/**
+	 * Identifies the script contents and the environment this cache is valid for.
+	 */
+	private final String header;
+
+	private final Map<String, Hint> hints = new ConcurrentHashMap<>();
+
+	/**
+	 * The fingerprint of the function signatures the {@link #hints} are valid for,
+	 * as calling a function that has been added or changed may parse differently.
+	 */
+	private volatile String signatures = "";
+
+	/**
+	 * Whether the hints differ from those stored in the {@link #cacheFile}.
+	 */
+	private volatile boolean changed = true;
+
+	private ScriptParseCache(File cacheFile, String header) {
+		this.cacheFile = cacheFile;
+		this.header = header;
+	}
+
+	/**
+	 * Creates the key for a parse attempt at the current position of the parser.
+	 * Discards all hints if the function signatures changed since they were created.
+	 * @param expr The text being parsed.
+	 * @param flags The flags of the parser.
+	 * @param context The context of the parser.
+	 * @param candidates All syntax elements that may be parsed, in the order they are tried.
+	 * @return The key for this parse attempt.
+	 */
+	public String createKey(String expr, int flags, ParseContext context, List<? extends SyntaxElementInfo<?>> candidates) {
+		String signatures = getSignaturesFingerprint();
+		if (!signatures.equals(this.signatures)) {
+			hints.clear();
+			this.signatures = signatures;
+			changed = true;
+		}
+
+		ParserInstance parser = ParserInstance.get();
+		Node node = parser.getNode();
+
+		// Syntax elements may only be valid in some events, structures or sections
+		int contextHash = 1;
+		Class<? extends Event>[] events = parser.getCurrentEvents();
+		if (events != null) {
+			for (Class<? extends Event> event : events)
+				contextHash = 31 * contextHash + event.getName().hashCode();
+		}
+		Structure structure = parser.getCurrentStructure();
+		contextHash = 31 * contextHash + (structure != null ? structure.getClass().getName().hashCode() : 0);
+		for (TriggerSection section : parser.getCurrentSections())
+			contextHash = 31 * contextHash + section.getClass().getName().hashCode();
+
+		// The patterns of all syntax elements are part of the header,
+		// so their classes are enough to tell the different kinds of syntax elements apart
+		int candidatesHash = 1;
+		for (SyntaxElementInfo<?> candidate : candidates)
+			candidatesHash = 31 * candidatesHash + candidate.getElementClass().getName().hashCode();
+
+		return (node != null ? node.getLine() : -1) + ":" + flags + ":" + context.ordinal() + ":"
+			+ parser.getHasDelayBefore().ordinal() + ":" + Integer.toHexString(contextHash) + ":"
+			+ Integer.toHexString(candidatesHash) + ":" + expr;
+	}
+
+	/**
+	 * @param key The key of the parse attempt.
+	 * @param candidates The syntax elements that may be parsed, in the order they are tried.
+	 * @return The candidate that successfully parsed the same parse attempt last time,
+	 *  or null if none is known.
+	 */
+	@Nullable
+	public Hint getHint(String key, List<? extends SyntaxElementInfo<?>> candidates) {
+		Hint hint = hints.get(key);
+		if (hint == null || hint.candidate < 0 || hint.candidate >= candidates.size())
+			return null;
+		SyntaxElementInfo<?> info = candidates.get(hint.candidate);
+		if (!info.getElementClass().getName().equals(hint.elementClass) || hint.pattern < 0 || hint.pattern >= info.patterns.length)
+			return null;
+		return hint;
+	}
+
+	/**
+	 * Remembers the candidate that successfully parsed a parse attempt.
+	 * @param key The key of the parse attempt.
+	 * @param candidates The syntax elements that could be parsed, in the order they were tried.
+	 * @param candidate The index of the successful syntax element in the candidates.
+	 * @param pattern The index of the successful pattern.
+	 */
+	public void putHint(String key, List<? extends SyntaxElementInfo<?>> candidates, int candidate, int pattern) {
+		Hint hint = new Hint(candidate, pattern, candidates.get(candidate).getElementClass().getName());
+		if (!hint.equals(hints.put(key, hint)))
+			changed = true;
+	}
+
+	/**
+	 * Writes this cache to disk, if it has been changed since it was read.
+	 */
+	public void save() {
+		if (!changed)
+			return;
+		File folder = cacheFile.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			Skript.debug("Could not create the script cache folder " + folder);
+			return;
+		}
+
+		File tempFile = new File(folder, cacheFile.getName() + ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+				out.writeInt(MAGIC);
+				out.writeShort(FORMAT_VERSION);
+				writeString(out, header);
+				writeString(out, signatures);
+				List<Map.Entry<String, Hint>> entries = new ArrayList<>(hints.entrySet());
+				out.writeInt(entries.size());
+				for (Map.Entry<String, Hint> entry : entries) {
+					Hint hint = entry.getValue();
+					writeString(out, entry.getKey());
+					writeString(out, hint.elementClass);
+					out.writeInt(hint.candidate);
+					out.writeInt(hint.pattern);
+				}
+			}
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			changed = false;
+		} catch (IOException e) {
+			Skript.debug("Could not save the script cache to " + cacheFile + ": " + ExceptionUtils.toString(e));
+		}
+	}
+
+	/**
+	 * Reads the hints from the {@link #cacheFile}, unless they are not valid for this cache's {@link #header}.
+	 */
+	private void read() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+			if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION || !header.equals(readString(in)))
+				return; // outdated, will be overwritten
+			signatures = readString(in);
+			int size = in.readInt();
+			for (int i = 0; i < size; i++) {
+				String key = readString(in);
+				String elementClass = readString(in);
+				hints.put(key, new Hint(in.readInt(), in.readInt(), elementClass));
+			}
+			changed = false;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			throw new IOException("Invalid string length " + length);
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return A fingerprint of everything besides the script itself that can change how a script is parsed.
+	 */
+	private static String getEnvironmentFingerprint() throws IOException {
+		StringBuilder builder = new StringBuilder();
+		builder.append(Skript.getVersion()).append('\n');
+
+		List<SkriptAddon> addons = new ArrayList<>(Skript.getAddons());
+		addons.sort(Comparator.comparing(SkriptAddon::getName));
+		for (SkriptAddon addon : addons)
+			builder.append(addon.getName()).append(' ').append(addon.version).append('\n');
+
+		builder.append(getSyntaxFingerprint()).append('\n');
+		builder.append(Aliases.getAliasCount()).append('\n');
+
+		Config config = SkriptConfig.getConfig();
+		File configFile = config != null ? config.getFile() : null;
+		if (configFile != null)
+			builder.append(hash(Files.readAllBytes(configFile.toPath())));
+
+		return hash(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String getSyntaxFingerprint() {
+		String fingerprint = syntaxFingerprint;
+		if (fingerprint != null)
+			return fingerprint;
+
+		StringBuilder builder = new StringBuilder();
+		appendSyntax(builder, Skript.getStatements().iterator());
+		appendSyntax(builder, Skript.getExpressions());
+		appendSyntax(builder, Skript.getEvents().iterator());
+		appendSyntax(builder, Skript.getStructures().iterator());
+		fingerprint = hash(builder.toString().getBytes(StandardCharsets.UTF_8));
+
+		// registrations might still change while they are accepted
+		if (!Skript.isAcceptRegistrations())
+			syntaxFingerprint = fingerprint;
+		return fingerprint;
+	}
+
+	/**
+	 * @return A fingerprint of all registered function signatures.
+	 */
+	private static synchronized String getSignaturesFingerprint() {
+		String fingerprint = signaturesFingerprint;
+		if (fingerprint != null && signatureChanges == Functions.getSignatureChanges())
+			return fingerprint;
+
+		List<String> signatures = new ArrayList<>();
+		for (Signature<?> signature : Functions.getSignatures()) {
+			ClassInfo<?> returnType = signature.getReturnType();
+			signatures.add(signature.getScript() + ":" + signature.isLocal() + ":" + signature.getName()
+				+ Arrays.toString(signature.getParameters())
+				+ (returnType != null ? ":" + returnType.getCodeName() + ":" + signature.isSingle() : ""));
+		}
+		signatures.sort(null);
+		fingerprint = hash(String.join("\n", signatures).getBytes(StandardCharsets.UTF_8));
+
+		signaturesFingerprint = fingerprint;
+		signatureChanges = Functions.getSignatureChanges();
+		return fingerprint;
+	}
+
+	private static void appendSyntax(StringBuilder builder, Iterator<? extends SyntaxElementInfo<?>> infos) {
+		while (infos.hasNext()) {
+			SyntaxElementInfo<?> info = infos.next();
+			builder.append(info.getElementClass().getName());
+			for (String pattern : info.patterns)
+				builder.append('\0').append(pattern);
+			builder.append('\n');
+		}
+	}
+
+	private static String hash(byte[] bytes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] hash = digest.digest(bytes);
+		StringBuilder builder = new StringBuilder(hash.length * 2);
+		for (byte b : hash)
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return builder.toString();
+	}
+
+	/**
+	 * The syntax element and pattern that successfully parsed a parse attempt.
+	 */
+	public static final class Hint {
+
+		/**
+		 * The index of the syntax element in the parse attempt's candidates.
+		 */
+		public final int candidate;
+
+		/**
+		 * The index of the pattern of the syntax element.
+		 */
+		public final int pattern;
+
+		/**
+		 * The class name of the syntax element, used to verify the candidates didn't change.
+		 */
+		private final String elementClass;
+
+		private Hint(int candidate, int pattern, String elementClass) {
+			this.candidate = candidate;
+			this.pattern = pattern;
+			this.elementClass = elementClass;
+		}
+
+		@Override
+		public boolean equals(@Nullable Object object) {
+			if (!(object instanceof Hint))
+				return false;
+			Hint other = (Hint) object;
+			return candidate == other.candidate && pattern == other.pattern && elementClass.equals(other.elementClass);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * candidate + pattern) + elementClass.hashCode();
+		}
+
+	}
+
+}
@@ -0,0 +1,82 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang.util;
+
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.Literal;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.lang.reflect.Array;
+
+/**
+ * A literal holding the values of a {@link Expression#isPure() pure} expression, computed once after parsing.
+ * It keeps the expression it was folded from, which is used for {@link #toString(Event, boolean)} and {@link #getSource()}.
+ */
+public class FoldedLiteral<T> extends SimpleLiteral<T> {
+
+	/**
+	 * Folds the given expression into a literal if it is pure.
+	 *
+	 * @param expression The expression to fold.
+	 * @return The folded literal, or the given expression if it isn't pure or returned no values.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Expression<? extends T> fold(Expression<? extends T> expression) {
+		if (expression instanceof Literal || !expression.isPure())
+			return expression;
+		Class<T> type = (Class<T>) expression.getReturnType();
+		T[] data;
+		try {
+			T[] values = expression.getArray(null);
+			if (values == null || values.length == 0)
+				return expression;
+			data = (T[]) Array.newInstance(type, values.length);
+			System.arraycopy(values, 0, data, 0, values.length);
+		} catch (RuntimeException e) { // the expression isn't as pure as it claims, or it fails for these values anyway
+			return expression;
+		}
+		return new FoldedLiteral<>(data, type, expression.getAnd(), expression);
+	}
+
+	private final Expression<? extends T> original;
+
+	public FoldedLiteral(T[] data, Class<T> type, boolean and, Expression<? extends T> original) {
+		super(data, type, and);
+		this.original = original;
+	}
+
+	/**
+	 * @return The expression this literal was folded from.
+	 */
+	public Expression<? extends T> getOriginal() {
+		return original;
+	}
+
+	@Override
+	public String toString(@Nullable Event event, boolean debug) {
+		return original.toString(event, debug);
+	}
+
+	@Override
+	public Expression<?> getSource() {
+		return original.getSource();
+	}
+
+}
@@ -49,28 +49,30 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 
 	private int time = 0;
 
+	/**
+	 * Empty arrays of every return type. They can be shared as an empty array can't be modified.
+	 */
+	private static final ClassValue<Object[]> EMPTY_ARRAYS = new ClassValue<Object[]>() {
+		@Override
+		protected Object[] computeValue(Class<?> type) {
+			return (Object[]) Array.newInstance(type, 0);
+		}
+	};
+
 	protected SimpleExpression() {}
 
 	@Override
 	@Nullable
 	public final T getSingle(Event event) {
-		T[] values = getArray(event);
-		if (values.length == 0)
-			return null;
-		if (values.length > 1)
-			throw new SkriptAPIException("Call to getSingle() on a non-single expression");
-		return values[0];
+		return getSingleValue(event);
 	}
 
 	@Override
 	@SuppressWarnings("unchecked")
 	public T[] getAll(Event event) {
 		T[] values = get(event);
-		if (values == null) {
-			T[] emptyArray = (T[]) Array.newInstance(getReturnType(), 0);
-			assert emptyArray != null;
-			return emptyArray;
-		}
+		if (values == null)
+			return emptyArray(getReturnType());
 		if (values.length == 0)
 			return values;
 		int numNonNull = 0;
@@ -79,6 +81,8 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 				numNonNull++;
 		if (numNonNull == values.length)
 			return Arrays.copyOf(values, values.length);
+		if (numNonNull == 0)
+			return emptyArray(getReturnType());
 		T[] valueArray = (T[]) Array.newInstance(getReturnType(), numNonNull);
 		assert valueArray != null;
 		int i = 0;
@@ -92,9 +96,8 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 	@SuppressWarnings("unchecked")
 	public final T[] getArray(Event event) {
 		T[] values = get(event);
-		if (values == null) {
-			return (T[]) Array.newInstance(getReturnType(), 0);
-		}
+		if (values == null)
+			return emptyArray(getReturnType());
 		if (values.length == 0)
 			return values;
 
@@ -102,22 +105,15 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 		for (T value : values)
 			if (value != null)
 				numNonNull++;
+		if (numNonNull == 0)
+			return emptyArray(getReturnType());
 
 		if (!getAnd()) {
-			if (values.length == 1 && values[0] != null)
+			if (values.length == 1)
 				return Arrays.copyOf(values, 1);
-			int rand = Utils.random(0, numNonNull);
 			T[] valueArray = (T[]) Array.newInstance(getReturnType(), 1);
-			for (T value : values) {
-				if (value != null) {
-					if (rand == 0) {
-						valueArray[0] = value;
-						return valueArray;
-					}
-					rand--;
-				}
-			}
-			assert false;
+			valueArray[0] = getRandom(values, numNonNull);
+			return valueArray;
 		}
 
 		if (numNonNull == values.length)
@@ -130,6 +126,77 @@ public abstract class SimpleExpression<T> implements Expression<T> {
 		return valueArray;
 	}
 
+	/**
+	 * This is the internal method to get an expression's single value, used by {@link #getSingle(Event)}.
+	 * <p>
+	 * The default implementation uses {@link #get(Event)}, but doesn't copy the values into a new array like {@link #getArray(Event)}.
+	 * Expressions that can compute a single value without creating an array at all should override this method
+	 * if {@link #isSingle()} and fall back to the default implementation otherwise.
+	 * An implementation must behave like the default one, i.e. pick a random value if {@link #getAnd()} is false
+	 * and throw a {@link SkriptAPIException} if there are several values otherwise.
+	 *
+	 * @param event The event with which this expression is evaluated.
+	 * @return The single value of this expression for the event, or null if it has no value.
+	 */
+	@Nullable
+	protected T getSingleValue(Event event) {
+		T[] values = get(event);
+		if (values == null)
+			return null;
+		T single = null;
+		int numNonNull = 0;
+		for (T value : values) {
+			if (value != null && numNonNull++ == 0)
+				single = value;
+		}
+		if (numNonNull <= 1)
+			return single;
+		if (!getAnd())
+			return getRandom(values, numNonNull);
+		throw new SkriptAPIException("Call to getSingle() on a non-single expression");
+	}
+
+	private static <T> T getRandom(T[] values, int numNonNull) {
+		int rand = Utils.random(0, numNonNull);
+		for (T value : values) {
+			if (value != null) {
+				if (rand == 0)
+					return value;
+				rand--;
+			}
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * @param type The component type of the array.
+	 * @return A shared empty array of the given type.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T[] emptyArray(Class<? extends T> type) {
+		return (T[]) EMPTY_ARRAYS.get(type);
+	}
+
+	/**
+	 * Checks whether a subclass overrides a method of one of its superclasses,
+	 * e.g. to find out whether a faster path that bypasses that method can be used.
+	 *
+	 * @param type The subclass.
+	 * @param declaringClass The superclass declaring the method.
+	 * @param name The method's name.
+	 * @param parameterTypes The method's parameter types, erased.
+	 * @return Whether a class between the subclass (inclusive) and the superclass (exclusive) declares the method.
+	 */
+	protected static boolean overrides(Class<?> type, Class<?> declaringClass, String name, Class<?>... parameterTypes) {
+		for (Class<?> current = type; current != null && current != declaringClass; current = current.getSuperclass()) {
+			try {
+				current.getDeclaredMethod(name, parameterTypes);
+				return true;
+			} catch (NoSuchMethodException ignored) {}
+		}
+		return false;
+	}
+
 	/**
 	 * This is the internal method to get an expression's values.<br>
 	 * To get the expression's value from the outside use {@link #getSingle(Event)} or {@link #getArray(Event)}.
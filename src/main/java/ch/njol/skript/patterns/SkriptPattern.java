@@ -42,11 +42,22 @@ public class SkriptPattern {
 
 	@Nullable
 	public MatchResult match(String expr, int flags, ParseContext parseContext) {
+		return match(expr, flags, parseContext, true);
+	}
+
+	/**
+	 * @param checkKeywords whether to first check that the expression contains all {@link #getRequiredKeywords() required keywords}.
+	 * Callers that have already checked them, e.g. against a cached lowercase expression, can skip this.
+	 */
+	@Nullable
+	public MatchResult match(String expr, int flags, ParseContext parseContext, boolean checkKeywords) {
 		// Matching shortcut
-		String lowerExpr = expr.toLowerCase(Locale.ENGLISH);
-		for (String keyword : keywords)
-			if (!lowerExpr.contains(keyword))
-				return null;
+		if (checkKeywords) {
+			String lowerExpr = expr.toLowerCase(Locale.ENGLISH);
+			for (String keyword : keywords)
+				if (!lowerExpr.contains(keyword))
+					return null;
+		}
 
 		expr = expr.trim();
 
@@ -68,6 +79,14 @@ public class SkriptPattern {
 		return first.toFullString();
 	}
 
+	/**
+	 * @return the literal parts every string matching this pattern must contain
+	 * (compared case-insensitively). The returned array must not be modified.
+	 */
+	public String[] getRequiredKeywords() {
+		return keywords;
+	}
+
 	public static String[] getKeywords(PatternElement first) {
 		List<String> keywords = new ArrayList<>();
 		PatternElement next = first;
@@ -34,7 +34,9 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import ch.njol.skript.command.Commands;
@@ -82,7 +84,8 @@ public abstract class Classes {
 	private static ClassInfo<?>[] classInfos = null;
 	private final static List<ClassInfo<?>> tempClassInfos = new ArrayList<>();
 	private final static HashMap<Class<?>, ClassInfo<?>> exactClassInfos = new HashMap<>();
-	private final static HashMap<Class<?>, ClassInfo<?>> superClassInfos = new HashMap<>();
+	// also used when serializing variables on other threads
+	private final static Map<Class<?>, ClassInfo<?>> superClassInfos = new ConcurrentHashMap<>();
 	private final static HashMap<String, ClassInfo<?>> classInfosByCodeName = new HashMap<>();
 	
 	/**
@@ -512,7 +515,7 @@ public abstract class Classes {
 				log.printLog();
 				return t;
 			}
-			for (final ConverterInfo<?, ?> conv : Converters.getConverterInfos()) {
+			for (final ConverterInfo<?, ?> conv : Converters.getConverterInfos(c)) {
 				if ((context == ParseContext.COMMAND || context == ParseContext.PARSE) && (conv.getFlags() & Commands.CONVERTER_NO_COMMAND_ARGUMENTS) != 0)
 					continue;
 				if (c.isAssignableFrom(conv.getTo())) {
@@ -552,7 +555,7 @@ public abstract class Classes {
 			if (to.isAssignableFrom(ci.getC()) && ci.getParser() != null)
 				return (Parser<? extends T>) ci.getParser();
 		}
-		for (final ConverterInfo<?, ?> conv : Converters.getConverterInfos()) {
+		for (final ConverterInfo<?, ?> conv : Converters.getConverterInfos(to)) {
 			if (to.isAssignableFrom(conv.getTo())) {
 				for (int i = classInfos.length - 1; i >= 0; i--) {
 					final ClassInfo<?> ci = classInfos[i];
@@ -726,16 +729,15 @@ public abstract class Classes {
 	}
 	
 	/**
-	 * Must be called on the appropriate thread for the given value (i.e. the main thread currently)
+	 * Must be called on the main thread, unless the given value is a snapshot taken with {@link ClassInfo#getSnapshot()},
+	 * which may be serialized on any thread.
 	 */
 	public static SerializedVariable.@Nullable Value serialize(@Nullable Object o) {
 		if (o == null)
 			return null;
 		
-		// temporary
-		assert Bukkit.isPrimaryThread();
-		
 		ClassInfo<?> ci = getSuperClassInfo(o.getClass());
+		assert ci.getSnapshot() != null || Bukkit.isPrimaryThread() : ci.getCodeName();
 		if (ci.getSerializeAs() != null) {
 			ci = getExactClassInfo(ci.getSerializeAs());
 			if (ci == null) {
@@ -753,8 +755,6 @@ public abstract class Classes {
 		if (s == null) // value cannot be saved
 			return null;
 		
-		assert s.mustSyncDeserialization() ? Bukkit.isPrimaryThread() : true;
-		
 		try {
 			final ByteArrayOutputStream bout = new ByteArrayOutputStream();
 			final YggdrasilOutputStream yout = Variables.yggdrasil.newOutputStream(bout);
@@ -768,8 +768,11 @@ public abstract class Classes {
 			final byte[] r2 = new byte[r.length - start.length];
 			System.arraycopy(r, start.length, r2, 0, r2.length);
 			
-			Object d;
-			assert equals(o, d = deserialize(ci, new ByteArrayInputStream(r2))) : o + " (" + o.getClass() + ") != " + d + " (" + (d == null ? null : d.getClass()) + "): " + Arrays.toString(r);
+			// Some values can only be deserialized on the main thread
+			if (!s.mustSyncDeserialization() || Bukkit.isPrimaryThread()) {
+				Object d;
+				assert equals(o, d = deserialize(ci, new ByteArrayInputStream(r2))) : o + " (" + o.getClass() + ") != " + d + " (" + (d == null ? null : d.getClass()) + "): " + Arrays.toString(r);
+			}
 			
 			return new SerializedVariable.Value(ci.getCodeName(), r2);
 		} catch (final IOException e) { // shouldn't happen
@@ -34,6 +34,11 @@ public abstract class Converters {
 	
 	private Converters() {}
 	
+	/**
+	 * @return All registered converters.
+	 * Unlike before, this doesn't include chained converters, as they are only resolved on demand,
+	 * see {@link org.skriptlang.skript.lang.converter.Converters#getConverterInfos(Class)}.
+	 */
 	@SuppressWarnings("unchecked")
 	public static <F, T> List<ConverterInfo<?, ?>> getConverters() {
 		return org.skriptlang.skript.lang.converter.Converters.getConverterInfos().stream()
@@ -21,6 +21,8 @@ package ch.njol.skript.registrations;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.Nullable;
@@ -30,6 +32,9 @@ import ch.njol.skript.Skript;
 import org.skriptlang.skript.lang.converter.Converter;
 import org.skriptlang.skript.lang.converter.Converters;
 import ch.njol.skript.expressions.base.EventValueExpression;
+import ch.njol.skript.log.LogEntry;
+import ch.njol.skript.log.RetainingLogHandler;
+import ch.njol.skript.log.SkriptLogger;
 import ch.njol.skript.util.Getter;
 import ch.njol.util.Kleenean;
 
@@ -102,6 +107,55 @@ public class EventValues {
 	private final static List<EventValueInfo<?, ?>> futureEventValues = new ArrayList<>();
 	private final static List<EventValueInfo<?, ?>> pastEventValues = new ArrayList<>();
 
+	/**
+	 * The getters resolved by {@link #getEventValueGetter(Class, Class, int)}, by event class, then by time and type.
+	 * Misses are cached as well. The whole cache is replaced whenever an event value is registered.
+	 */
+	private static volatile ClassValue<ResolvedGetters> resolvedGetters = newResolvedGetters();
+
+	private static ClassValue<ResolvedGetters> newResolvedGetters() {
+		return new ClassValue<ResolvedGetters>() {
+			@Override
+			protected ResolvedGetters computeValue(Class<?> event) {
+				return new ResolvedGetters();
+			}
+		};
+	}
+
+	/**
+	 * The getters resolved for a single event class, by time and type.
+	 */
+	private static final class ResolvedGetters {
+
+		private final List<Map<Class<?>, ResolvedGetter>> byTime = Arrays.asList(
+			new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>()
+		);
+
+		Map<Class<?>, ResolvedGetter> get(int time) {
+			if (time < TIME_PAST || time > TIME_FUTURE)
+				throw new IllegalArgumentException("time must be -1, 0, or 1");
+			return byTime.get(time - TIME_PAST);
+		}
+
+	}
+
+	/**
+	 * The result of resolving a getter, including the errors printed while doing so,
+	 * which are printed again whenever the result is reused.
+	 */
+	private static final class ResolvedGetter {
+
+		@Nullable
+		private final Getter<?, ?> getter;
+		private final String[] errors;
+
+		ResolvedGetter(@Nullable Getter<?, ?> getter, String[] errors) {
+			this.getter = getter;
+			this.errors = errors;
+		}
+
+	}
+
 	/**
 	 * The past time of an event value. Represented by "past" or "former".
 	 */
@@ -167,6 +221,7 @@ public class EventValues {
 	@SafeVarargs
 	public static <T, E extends Event> void registerEventValue(Class<E> event, Class<T> type, Getter<T, E> getter, int time, @Nullable String excludeErrorMessage, @Nullable Class<? extends E>... excludes) {
 		Skript.checkAcceptRegistrations();
+		resolvedGetters = newResolvedGetters();
 		List<EventValueInfo<?, ?>> eventValues = getEventValuesList(time);
 		for (int i = 0; i < eventValues.size(); i++) {
 			EventValueInfo<?, ?> info = eventValues.get(i);
@@ -186,8 +241,7 @@ public class EventValues {
 	/**
 	 * Gets a specific value from an event. Returns null if the event doesn't have such a value (conversions are done to try and get the desired value).
 	 * <p>
-	 * It is recommended to use {@link EventValues#getEventValueGetter(Class, Class, int)} or {@link EventValueExpression#EventValueExpression(Class)} instead of invoking this
-	 * method repeatedly.
+	 * The getter used is resolved once per event class, type and time, see {@link #getEventValueGetter(Class, Class, int)}.
 	 * 
 	 * @param e event
 	 * @param c return type of getter
@@ -251,6 +305,7 @@ public class EventValues {
 	 * Returns a getter to get a value from in an event.
 	 * <p>
 	 * Can print an error if the event value is blocked for the given event.
+	 * The result, including any error, is cached until another event value is registered.
 	 * 
 	 * @param event the event class the getter will be getting from.
 	 * @param type type of getter.
@@ -260,8 +315,27 @@ public class EventValues {
 	 * @see EventValueExpression#EventValueExpression(Class)
 	 */
 	@Nullable
+	@SuppressWarnings("unchecked")
 	public static <T, E extends Event> Getter<? extends T, ? super E> getEventValueGetter(Class<E> event, Class<T> type, int time) {
-		return getEventValueGetter(event, type, time, true);
+		Map<Class<?>, ResolvedGetter> cache = resolvedGetters.get(event).get(time);
+		ResolvedGetter resolved = cache.get(type);
+		if (resolved == null) {
+			RetainingLogHandler log = SkriptLogger.startRetainingLog();
+			try {
+				Getter<? extends T, ? super E> getter = getEventValueGetter(event, type, time, true);
+				String[] errors = log.getErrors().stream()
+					.map(LogEntry::getMessage)
+					.toArray(String[]::new);
+				cache.putIfAbsent(type, new ResolvedGetter(getter, errors));
+				log.printLog();
+				return getter;
+			} finally {
+				log.stop();
+			}
+		}
+		for (String error : resolved.errors)
+			Skript.error(error);
+		return (Getter<? extends T, ? super E>) resolved.getter;
 	}
 
 	@Nullable
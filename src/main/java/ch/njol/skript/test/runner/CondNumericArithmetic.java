@@ -0,0 +1,64 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.test.runner;
+
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.doc.Description;
+import ch.njol.skript.doc.Name;
+import ch.njol.skript.doc.NoDoc;
+import ch.njol.skript.expressions.arithmetic.ExprArithmetic;
+import ch.njol.skript.lang.Condition;
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.util.Kleenean;
+
+@Name("Numeric Arithmetic")
+@Description("Checks whether an arithmetic expression is evaluated with primitives, i.e. whether all of its operands are known to be numbers.")
+@NoDoc
+public class CondNumericArithmetic extends Condition {
+
+	static {
+		if (TestMode.ENABLED)
+			Skript.registerCondition(CondNumericArithmetic.class, "%object% (is|are) [:not] evaluated with primitives");
+	}
+
+	private Expression<?> expression;
+
+	@Override
+	public boolean init(Expression<?>[] exprs, int matchedPattern, Kleenean isDelayed, ParseResult parseResult) {
+		expression = exprs[0];
+		setNegated(parseResult.hasTag("not"));
+		return true;
+	}
+
+	@Override
+	public boolean check(Event event) {
+		boolean numeric = expression instanceof ExprArithmetic && ((ExprArithmetic<?, ?, ?>) expression).isNumeric();
+		return numeric != isNegated();
+	}
+
+	@Override
+	public String toString(@Nullable Event event, boolean debug) {
+		return expression.toString(event, debug) + " is " + (isNegated() ? "not " : "") + "evaluated with primitives";
+	}
+
+}
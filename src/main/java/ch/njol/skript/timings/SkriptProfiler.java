@@ -0,0 +1,272 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.timings;
+
+import ch.njol.skript.lang.Trigger;
+import ch.njol.skript.lang.TriggerItem;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.script.Script;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Skript's own execution profiler. Unlike {@link SkriptTimings}, it does not depend on Paper's timings.
+ * <p>
+ * While the profiler is running, event dispatching, triggers, single trigger items (lines), functions
+ * and variable changes are timed or counted. All counters are {@link LongAdder}s, so that recording from
+ * several threads doesn't contend on a single value. When the profiler is not running,
+ * the only overhead on the hot paths is a single volatile read in {@link #isEnabled()}.
+ */
+public final class SkriptProfiler {
+
+	/**
+	 * The maximum amount of entries listed in each section of a report.
+	 */
+	private static final int REPORT_LIMIT = 50;
+
+	private static final SimpleDateFormat FILE_NAME_FORMAT = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
+
+	private static volatile boolean enabled;
+	private static volatile long startTime;
+	private static volatile long stopTime;
+
+	private static final Map<Class<? extends Event>, Stats> events = new ConcurrentHashMap<>();
+	private static final Map<Trigger, Stats> triggers = new ConcurrentHashMap<>();
+	private static final Map<TriggerItem, Stats> items = new ConcurrentHashMap<>();
+	private static final Map<String, Stats> functions = new ConcurrentHashMap<>();
+	private static final Map<String, LongAdder> variableChanges = new ConcurrentHashMap<>();
+
+	private SkriptProfiler() {}
+
+	/**
+	 * @return Whether the profiler is currently running. Callers should check this before taking any measurements.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Clears all previously collected data and starts the profiler.
+	 * @return false if the profiler was already running.
+	 */
+	public static synchronized boolean start() {
+		if (enabled)
+			return false;
+		events.clear();
+		triggers.clear();
+		items.clear();
+		functions.clear();
+		variableChanges.clear();
+		startTime = System.currentTimeMillis();
+		stopTime = 0;
+		enabled = true;
+		return true;
+	}
+
+	/**
+	 * Stops the profiler. The collected data is kept until the profiler is started again.
+	 * @return false if the profiler wasn't running.
+	 */
+	public static synchronized boolean stop() {
+		if (!enabled)
+			return false;
+		enabled = false;
+		stopTime = System.currentTimeMillis();
+		return true;
+	}
+
+	/**
+	 * @return Whether any data has been collected since the profiler was last started.
+	 */
+	public static boolean hasData() {
+		return startTime != 0;
+	}
+
+	public static void recordEvent(Class<? extends Event> event, long nanos) {
+		events.computeIfAbsent(event, k -> new Stats()).record(nanos);
+	}
+
+	public static void recordTrigger(Trigger trigger, long nanos) {
+		triggers.computeIfAbsent(trigger, k -> new Stats()).record(nanos);
+	}
+
+	public static void recordItem(TriggerItem item, long nanos) {
+		items.computeIfAbsent(item, k -> new Stats()).record(nanos);
+	}
+
+	public static void recordFunction(String function, long nanos) {
+		functions.computeIfAbsent(function, k -> new Stats()).record(nanos);
+	}
+
+	/**
+	 * @param variable The name of the changed variable as written in the script, e.g. <code>{money::%player%}</code>
+	 */
+	public static void recordVariableChange(String variable) {
+		variableChanges.computeIfAbsent(variable, k -> new LongAdder()).increment();
+	}
+
+	/**
+	 * Writes a report of the collected data to a new file in the given folder.
+	 * Each section is ranked by total time spent, or by count for variable changes.
+	 * @return The file the report was written to.
+	 */
+	public static File writeReport(File folder) throws IOException {
+		Files.createDirectories(folder.toPath());
+		String fileName;
+		synchronized (FILE_NAME_FORMAT) {
+			fileName = "profile-" + FILE_NAME_FORMAT.format(new Date()) + ".txt";
+		}
+		File file = new File(folder, fileName);
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			long end = enabled || stopTime == 0 ? System.currentTimeMillis() : stopTime;
+			out.println("Skript profiler report");
+			out.println("Started: " + new Date(startTime));
+			out.println("Duration: " + (end - startTime) + "ms" + (enabled ? " (still running)" : ""));
+			out.println();
+			out.println("Times are in milliseconds. Percentiles are upper bounds of power-of-two histogram buckets.");
+			out.println("Trigger, line and function times include the time spent in any nested calls.");
+
+			writeSection(out, "Triggers", triggers, SkriptProfiler::describe);
+			writeSection(out, "Lines", items, SkriptProfiler::describe);
+			writeSection(out, "Functions", functions, Function.identity());
+			writeSection(out, "Events", events, Class::getName);
+
+			out.println();
+			out.println("== Variable changes ==");
+			List<Map.Entry<String, LongAdder>> changes = new ArrayList<>(variableChanges.entrySet());
+			changes.sort(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum()).reversed());
+			int listed = 0;
+			for (Map.Entry<String, LongAdder> entry : changes) {
+				if (listed++ == REPORT_LIMIT)
+					break;
+				out.println(String.format("%12d  %s", entry.getValue().sum(), entry.getKey()));
+			}
+		}
+		return file;
+	}
+
+	private static <K> void writeSection(PrintWriter out, String title, Map<K, Stats> stats, Function<K, String> describer) {
+		out.println();
+		out.println("== " + title + " ==");
+		out.println(String.format("%12s %12s %10s %10s %10s %10s  %s", "total", "count", "mean", "p50", "p99", "max", "name"));
+
+		List<Map.Entry<K, Stats>> entries = new ArrayList<>(stats.entrySet());
+		entries.sort(Comparator.comparingLong((Map.Entry<K, Stats> entry) -> entry.getValue().total.sum()).reversed());
+		int listed = 0;
+		for (Map.Entry<K, Stats> entry : entries) {
+			if (listed++ == REPORT_LIMIT)
+				break;
+			Stats value = entry.getValue();
+			long count = value.count.sum();
+			long total = value.total.sum();
+			out.println(String.format("%12.3f %12d %10.4f %10.4f %10.4f %10.4f  %s",
+				millis(total), count, count == 0 ? 0 : millis(total) / count,
+				millis(value.percentile(0.5)), millis(value.percentile(0.99)), millis(value.max.get()),
+				describer.apply(entry.getKey())));
+		}
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	private static String describe(Trigger trigger) {
+		return location(trigger.getScript(), trigger.getLineNumber()) + " " + trigger.getDebugLabel();
+	}
+
+	private static String describe(TriggerItem item) {
+		Trigger trigger = item.getTrigger();
+		Script script = trigger == null ? null : trigger.getScript();
+		String description;
+		try {
+			description = item.toString(null, false);
+		} catch (RuntimeException e) { // toString without an event isn't always supported
+			description = item.getClass().getSimpleName();
+		}
+		return location(script, item.getLineNumber()) + " " + description;
+	}
+
+	private static String location(@Nullable Script script, int line) {
+		String name = script == null ? "<unknown>" : script.getConfig().getFileName();
+		return line == -1 ? name : name + ":" + line;
+	}
+
+	/**
+	 * Timing statistics of a single profiled element.
+	 * Durations are additionally sorted into power-of-two buckets to approximate percentiles.
+	 */
+	private static final class Stats {
+
+		/**
+		 * Bucket i holds durations in [2<sup>i-1</sup>, 2<sup>i</sup>) nanoseconds, the last bucket holds everything above.
+		 */
+		private static final int BUCKETS = 40;
+
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+		Stats() {
+			for (int i = 0; i < BUCKETS; i++)
+				buckets[i] = new LongAdder();
+		}
+
+		void record(long nanos) {
+			if (nanos < 0) // nanoTime isn't guaranteed to be monotonic on every platform
+				nanos = 0;
+			count.increment();
+			total.add(nanos);
+			max.accumulate(nanos);
+			buckets[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+		}
+
+		long percentile(double percentile) {
+			long count = this.count.sum();
+			if (count == 0)
+				return 0;
+			long threshold = (long) Math.ceil(count * percentile);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS - 1; i++) {
+				seen += buckets[i].sum();
+				if (seen >= threshold)
+					return Math.min(1L << i, max.get());
+			}
+			return max.get();
+		}
+
+	}
+
+}
@@ -24,6 +24,7 @@ import ch.njol.skript.lang.Expression;
 import ch.njol.skript.lang.ExpressionList;
 import ch.njol.skript.lang.Literal;
 import ch.njol.skript.lang.UnparsedLiteral;
+import ch.njol.skript.lang.VariableString;
 import ch.njol.skript.registrations.Classes;
 
 /**
@@ -94,4 +95,30 @@ public class LiteralUtils {
 		return true;
 	}
 
+	/**
+	 * Checks if the passed expressions always return the same values,
+	 * i.e. they are parsed literals, strings without any expressions, or lists of those.
+	 * Lists that return one of their elements at random are not constant.
+	 *
+	 * @param expressions The expressions to check
+	 * @return Whether all passed expressions are constant
+	 * @see Expression#isPure()
+	 */
+	public static boolean isConstant(Expression<?>... expressions) {
+		for (Expression<?> expression : expressions) {
+			if (expression instanceof UnparsedLiteral || !expression.getAnd()) {
+				return false;
+			} else if (expression instanceof ExpressionList) {
+				if (!isConstant(((ExpressionList<?>) expression).getExpressions()))
+					return false;
+			} else if (expression instanceof VariableString) {
+				if (!((VariableString) expression).isSimple())
+					return false;
+			} else if (!(expression instanceof Literal)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
@@ -0,0 +1,552 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.config.SectionNode;
+import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.util.FileUtils;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * A variable storage that stores its checkpoint in a binary file, which is much faster to load than a CSV file.
+ * Changes made after the checkpoint are appended to a change log in the CSV format, see {@link FlatFileStorage}.
+ * <p>
+ * The checkpoint consists of a header, blocks of variables and a trailer:
+ * <ul>
+ *     <li>The header is the {@link #MAGIC} followed by the {@link #FORMAT_VERSION}.</li>
+ *     <li>Each variable in a block is a record of the length of the prefix its name shares with the previous name
+ *     in the block, the length and UTF-8 bytes of the rest of its name, the index of its type in the type table,
+ *     and the length and bytes of its serialized value. All numbers in records are unsigned variable length integers.</li>
+ *     <li>The trailer contains the type table and the position, length and amount of variables of each block.
+ *     The file ends with the position of the trailer and the {@link #MAGIC}.</li>
+ * </ul>
+ * Blocks don't depend on each other, so they can be read separately with positional reads,
+ * and decoded in parallel if enabled.
+ * <p>
+ * A CSV file configured as the file of this storage is loaded normally,
+ * and converted to a binary checkpoint by the next save.
+ */
+public class BinaryStorage extends FlatFileStorage {
+
+	/**
+	 * The bytes at the start and the end of a binary checkpoint.
+	 */
+	private static final byte[] MAGIC = {'S', 'K', 'V', 'B'};
+
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * The length of the end of the file, which contains the position of the trailer and the magic bytes.
+	 */
+	private static final int FOOTER_LENGTH = Long.BYTES + MAGIC.length;
+
+	/**
+	 * The maximum amount of variables in a block.
+	 */
+	private static final int BLOCK_VARIABLES = 4096;
+
+	/**
+	 * The size (in bytes) after which a block is ended, even if it doesn't contain {@link #BLOCK_VARIABLES} yet.
+	 */
+	private static final int BLOCK_SIZE = 1 << 20;
+
+	/**
+	 * Whether blocks are decoded by multiple threads when loading.
+	 */
+	private boolean parallelLoading = false;
+
+	/**
+	 * Create a new binary storage of the given name.
+	 *
+	 * @param name the name.
+	 */
+	BinaryStorage(String name) {
+		super(name);
+	}
+
+	@Override
+	protected boolean load_i(SectionNode sectionNode) {
+		// Parallel loading is optional, as it only helps with large files
+		if (sectionNode.getValue("parallel loading") != null) {
+			Boolean parallelLoading = getValue(sectionNode, "parallel loading", Boolean.class);
+			if (parallelLoading == null)
+				return false;
+			this.parallelLoading = parallelLoading;
+		}
+
+		return super.load_i(sectionNode);
+	}
+
+	@Override
+	void readCheckpoint(File file, LoadErrors errors, BiConsumer<String, Object> consumer) throws IOException {
+		if (!isBinary(file)) {
+			// An empty file of a new database, or a CSV file of a database that used to be a CSV database
+			super.readCheckpoint(file, errors, consumer);
+			if (file.length() > 0) {
+				File backupFile = FileUtils.backup(file);
+				Skript.info("Created a backup of " + file.getName() + " as " + backupFile.getName());
+				Skript.info(file.getName() + " will be converted to the binary format on the next save");
+				requireCompaction();
+			}
+			return;
+		}
+
+		ExecutorService executor = null;
+		if (parallelLoading) {
+			// The main thread deserializes the variables, which takes longer than decoding them
+			int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, "Skript variable loader for database '" + databaseName + "'");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		try {
+			// Values have to be deserialized on the main thread
+			read(file, executor, (name, type, value) -> {
+				Object deserializedValue = Classes.deserialize(type, value);
+				if (deserializedValue == null) {
+					errors.add(name);
+					return;
+				}
+				consumer.accept(name, deserializedValue);
+			});
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	@Override
+	void writeCheckpoint(File file, VariablesMap[] snapshot) throws IOException {
+		try (Writer writer = new Writer(file)) {
+			forEachVariable(snapshot, (name, value) -> {
+				try {
+					writer.write(name, value.type, value.data);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Checks whether the given file is a binary checkpoint.
+	 *
+	 * @param file the file.
+	 * @return whether the file starts with the {@link #MAGIC}.
+	 * @throws IOException if the file couldn't be read.
+	 */
+	static boolean isBinary(File file) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read = 0;
+			while (read < magic.length) {
+				int count = in.read(magic, read, magic.length - read);
+				if (count < 0)
+					return false;
+				read += count;
+			}
+		}
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/**
+	 * A consumer of the variables read from a binary checkpoint.
+	 */
+	@FunctionalInterface
+	interface VariableConsumer {
+
+		/**
+		 * @param name the name of the variable.
+		 * @param type the type of the variable's value.
+		 * @param value the serialized value.
+		 */
+		void accept(String name, String type, byte[] value);
+
+	}
+
+	/**
+	 * Reads the variables of the given binary checkpoint.
+	 *
+	 * @param file the checkpoint.
+	 * @param executor the executor that decodes blocks in parallel,
+	 * or {@code null} to decode them on the current thread.
+	 * @param consumer the consumer of the variables,
+	 * which is called on the current thread in the order the variables were written in.
+	 * @throws IOException if the file couldn't be read or isn't a valid checkpoint.
+	 */
+	static void read(File file, @Nullable ExecutorService executor, VariableConsumer consumer) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < MAGIC.length + Integer.BYTES + FOOTER_LENGTH)
+				throw new IOException(file.getName() + " is not a binary variables file");
+
+			// Each block is read separately, so that files larger than 2 GB can be read
+			ByteBuffer footer = read(channel, size - FOOTER_LENGTH, FOOTER_LENGTH, file);
+			long trailerPosition = footer.getLong();
+			checkMagic(footer, file);
+			if (trailerPosition < MAGIC.length + Integer.BYTES || trailerPosition > size - FOOTER_LENGTH)
+				throw new IOException(file.getName() + " is corrupted");
+
+			ByteBuffer header = read(channel, 0, MAGIC.length + Integer.BYTES, file);
+			checkMagic(header, file);
+			int version = header.getInt();
+			if (version != FORMAT_VERSION)
+				throw new IOException(file.getName() + " has an unsupported format version: " + version);
+
+			long trailerLength = size - FOOTER_LENGTH - trailerPosition;
+			if (trailerLength > Integer.MAX_VALUE)
+				throw new IOException(file.getName() + " is corrupted");
+			ByteBuffer trailer = read(channel, trailerPosition, (int) trailerLength, file);
+			String[] types;
+			List<Block> blocks = new ArrayList<>();
+			try {
+				types = new String[readVarInt(trailer)];
+				for (int i = 0; i < types.length; i++)
+					types[i] = readString(trailer, readVarInt(trailer));
+
+				int blockCount = readVarInt(trailer);
+				for (int i = 0; i < blockCount; i++) {
+					long position = trailer.getLong();
+					int length = trailer.getInt();
+					int variables = trailer.getInt();
+					if (position < 0 || length < 0 || variables < 0 || position + length > trailerPosition)
+						throw new IOException(file.getName() + " is corrupted");
+					blocks.add(new Block(position, length, variables, types));
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException(file.getName() + " is corrupted", e);
+			}
+
+			if (executor == null) {
+				for (Block block : blocks)
+					block.decode(channel, file).forEach(consumer);
+				return;
+			}
+
+			// Only decode a few blocks ahead of the consumer, to limit the memory used by decoded blocks
+			int window = 2 * Runtime.getRuntime().availableProcessors();
+			Deque<Future<DecodedBlock>> decoding = new ArrayDeque<>();
+			int next = 0;
+			try {
+				while (next < blocks.size() || !decoding.isEmpty()) {
+					while (next < blocks.size() && decoding.size() < window) {
+						Block block = blocks.get(next++);
+						decoding.add(executor.submit(() -> block.decode(channel, file)));
+					}
+
+					try {
+						decoding.remove().get().forEach(consumer);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while loading " + file.getName(), e);
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof IOException)
+							throw (IOException) e.getCause();
+						throw new IOException("Could not load " + file.getName(), e.getCause());
+					}
+				}
+			} finally {
+				// Don't interrupt blocks that are being read, as that would close the channel
+				for (Future<DecodedBlock> block : decoding)
+					block.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Reads a part of the given checkpoint into a heap buffer.
+	 * The checkpoint isn't memory mapped, as a mapped file remains in use until its buffers are garbage collected,
+	 * which would prevent the next save from replacing it on some systems, e.g. Windows.
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length, File file) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new IOException(file.getName() + " is corrupted");
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void checkMagic(ByteBuffer buffer, File file) throws IOException {
+		byte[] magic = new byte[MAGIC.length];
+		buffer.get(magic);
+		if (!Arrays.equals(magic, MAGIC))
+			throw new IOException(file.getName() + " is not a binary variables file");
+	}
+
+	/**
+	 * A block of a checkpoint that hasn't been decoded yet.
+	 */
+	private static final class Block {
+
+		private final long position;
+		private final int length;
+		private final int variables;
+		private final String[] types;
+
+		Block(long position, int length, int variables, String[] types) {
+			this.position = position;
+			this.length = length;
+			this.variables = variables;
+			this.types = types;
+		}
+
+		DecodedBlock decode(FileChannel channel, File file) throws IOException {
+			ByteBuffer buffer = read(channel, position, length, file);
+			String[] names = new String[variables];
+			String[] types = new String[variables];
+			byte[][] values = new byte[variables][];
+
+			byte[] name = new byte[64];
+			try {
+				for (int i = 0; i < variables; i++) {
+					int prefixLength = readVarInt(buffer);
+					int suffixLength = readVarInt(buffer);
+					if (prefixLength + suffixLength > name.length)
+						name = Arrays.copyOf(name, Math.max(2 * name.length, prefixLength + suffixLength));
+					buffer.get(name, prefixLength, suffixLength);
+					names[i] = new String(name, 0, prefixLength + suffixLength, StandardCharsets.UTF_8);
+
+					types[i] = this.types[readVarInt(buffer)];
+
+					values[i] = new byte[readVarInt(buffer)];
+					buffer.get(values[i]);
+				}
+			} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+				throw new IOException(file.getName() + " is corrupted", e);
+			}
+
+			return new DecodedBlock(names, types, values);
+		}
+
+	}
+
+	/**
+	 * The variables of a block.
+	 */
+	private static final class DecodedBlock {
+
+		private final String[] names;
+		private final String[] types;
+		private final byte[][] values;
+
+		DecodedBlock(String[] names, String[] types, byte[][] values) {
+			this.names = names;
+			this.types = types;
+			this.values = values;
+		}
+
+		void forEach(VariableConsumer consumer) {
+			for (int i = 0; i < names.length; i++)
+				consumer.accept(names[i], types[i], values[i]);
+		}
+
+	}
+
+	/**
+	 * Reads an unsigned variable length integer, as written by {@link Writer#writeVarInt(int)}.
+	 */
+	private static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (value < 0)
+					throw new IllegalArgumentException("Variable length integer out of range");
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Variable length integer too long");
+	}
+
+	private static String readString(ByteBuffer buffer, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes variables to a binary checkpoint.
+	 */
+	static final class Writer implements Closeable {
+
+		private final DataOutputStream out;
+
+		/**
+		 * The amount of bytes written so far.
+		 * {@link DataOutputStream#size()} can't be used, as it overflows for files larger than 2 GB.
+		 */
+		private long position;
+
+		private final Map<String, Integer> types = new LinkedHashMap<>();
+
+		/**
+		 * The position, length and amount of variables of each finished block.
+		 */
+		private final List<long[]> blocks = new ArrayList<>();
+
+		private long blockPosition;
+		private int blockVariables;
+
+		/**
+		 * The UTF-8 bytes of the previous name in the current block.
+		 */
+		private byte[] previousName = new byte[0];
+
+		/**
+		 * Creates a new checkpoint at the given file, replacing it if it exists.
+		 *
+		 * @param file the file.
+		 * @throws IOException if the file couldn't be created.
+		 */
+		Writer(File file) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+			out.write(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			position = blockPosition = MAGIC.length + Integer.BYTES;
+		}
+
+		/**
+		 * Writes a variable, whose name should follow the previous one in sorted order
+		 * for names to share their prefixes.
+		 *
+		 * @param name the name of the variable.
+		 * @param type the type of the variable's value.
+		 * @param value the serialized value.
+		 * @throws IOException if the variable couldn't be written.
+		 */
+		void write(String name, String type, byte[] value) throws IOException {
+			if (blockVariables == BLOCK_VARIABLES || position - blockPosition >= BLOCK_SIZE)
+				endBlock();
+
+			byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			int prefixLength = 0;
+			int maxPrefixLength = Math.min(nameBytes.length, previousName.length);
+			while (prefixLength < maxPrefixLength && nameBytes[prefixLength] == previousName[prefixLength])
+				prefixLength++;
+
+			writeVarInt(prefixLength);
+			writeVarInt(nameBytes.length - prefixLength);
+			out.write(nameBytes, prefixLength, nameBytes.length - prefixLength);
+			position += nameBytes.length - prefixLength;
+
+			Integer typeIndex = types.get(type);
+			if (typeIndex == null) {
+				typeIndex = types.size();
+				types.put(type, typeIndex);
+			}
+			writeVarInt(typeIndex);
+
+			writeVarInt(value.length);
+			out.write(value);
+			position += value.length;
+
+			previousName = nameBytes;
+			blockVariables++;
+		}
+
+		private void endBlock() {
+			if (blockVariables == 0)
+				return;
+			blocks.add(new long[] {blockPosition, position - blockPosition, blockVariables});
+			blockPosition = position;
+			blockVariables = 0;
+			previousName = new byte[0];
+		}
+
+		private void writeVarInt(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+				position++;
+			}
+			out.writeByte(value);
+			position++;
+		}
+
+		/**
+		 * Writes the trailer and closes the file.
+		 *
+		 * @throws IOException if the trailer couldn't be written.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				endBlock();
+				long trailerPosition = position;
+
+				writeVarInt(types.size());
+				for (String type : types.keySet()) {
+					byte[] bytes = type.getBytes(StandardCharsets.UTF_8);
+					writeVarInt(bytes.length);
+					out.write(bytes);
+				}
+
+				writeVarInt(blocks.size());
+				for (long[] block : blocks) {
+					out.writeLong(block[0]);
+					out.writeInt((int) block[1]);
+					out.writeInt((int) block[2]);
+				}
+
+				out.writeLong(trailerPosition);
+				out.write(MAGIC);
+			} finally {
+				out.close();
+			}
+		}
+
+	}
+
+}
@@ -26,6 +26,7 @@ import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.util.ExceptionUtils;
 import ch.njol.skript.util.FileUtils;
 import ch.njol.skript.util.Task;
+import ch.njol.skript.util.Timespan;
 import ch.njol.skript.util.Utils;
 import ch.njol.skript.util.Version;
 import ch.njol.util.NotifyingReference;
@@ -42,15 +43,24 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * A variable storage that stores its content in a
  * comma-separated value file (CSV file).
+ * <p>
+ * The {@link #file} is a checkpoint of the variables at some point in time.
+ * Changes made after that are appended to the segments of a change log next to it
+ * (see {@link #getSegmentFile(int)}), which use the same format and override the checkpoint when loading.
+ * Once the change log has grown large enough compared to the checkpoint (see {@link #compactionRatio}),
+ * it is merged into a new checkpoint in the background, see {@link #saveVariables(boolean)}.
  */
 /*
  * TODO use a database (SQLite) instead and only load a limited amount of variables into RAM - e.g. 2 GB (configurable).
@@ -71,17 +81,28 @@ public class FlatFileStorage extends VariablesStorage {
 	private static final long SAVE_TASK_DELAY = 5 * 60 * 20;
 
 	/**
-	 * The period for the save task, how long (in ticks) between each save.
+	 * The period for the save task, how long (in ticks) between each check whether the change log should be compacted.
 	 */
 	private static final long SAVE_TASK_PERIOD = 5 * 60 * 20;
 
+	/**
+	 * The {@link #compactionRatio} used if the config doesn't specify one.
+	 */
+	private static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+	/**
+	 * The size (in bytes) the change log needs to have before it is compacted,
+	 * so that small checkpoints aren't rewritten every few changes.
+	 */
+	private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+
 	/**
 	 * A reference to the {@link PrintWriter} that is used to write
-	 * to the {@link #file}.
+	 * to the current {@link #segment} of the change log.
 	 * <p>
 	 * A Lock on this object must be acquired after connectionLock
 	 * if that lock is used
-	 * (and thus also after {@link Variables#getReadLock()}).
+	 * (and thus also after the locks of {@link Variables.Stripe}s).
 	 */
 	private final NotifyingReference<PrintWriter> changesWriter = new NotifyingReference<>();
 
@@ -91,24 +112,42 @@ public class FlatFileStorage extends VariablesStorage {
 	private volatile boolean loaded = false;
 
 	/**
-	 * The amount of {@link #changes} needed
-	 * for a new {@link #saveVariables(boolean) save}.
+	 * The size of the change log relative to the size of the checkpoint
+	 * at which the change log is merged into a new checkpoint.
+	 * <p>
+	 * Lower values use less disk space, but cause the checkpoint to be rewritten more often.
 	 */
-	private static final int REQUIRED_CHANGES_FOR_RESAVE = 1000;
+	double compactionRatio = DEFAULT_COMPACTION_RATIO;
 
 	/**
-	 * The amount of variable changes written since the last full save.
-	 *
-	 * @see #REQUIRED_CHANGES_FOR_RESAVE
+	 * The number of the oldest segment of the change log that hasn't been merged into the checkpoint yet.
 	 */
-	private final AtomicInteger changes = new AtomicInteger(0);
+	private volatile int firstSegment = 0;
+
+	/**
+	 * The number of the segment of the change log changes are currently appended to.
+	 * Only changed while holding the connectionLock.
+	 */
+	private volatile int segment = 0;
+
+	/**
+	 * Whether the checkpoint has to be rewritten regardless of the size of the change log,
+	 * e.g. because it was written by an old version of Skript.
+	 */
+	private volatile boolean compactionRequired = false;
+
+	/**
+	 * The lock held while merging the change log into a new checkpoint.
+	 * <p>
+	 * Must be acquired before the locks of {@link Variables.Stripe}s.
+	 */
+	private final Object compactionLock = new Object();
 
 	/**
 	 * The save task.
 	 *
-	 * @see #changes
 	 * @see #saveVariables(boolean)
-	 * @see #REQUIRED_CHANGES_FOR_RESAVE
+	 * @see #compactionRatio
 	 * @see #SAVE_TASK_DELAY
 	 * @see #SAVE_TASK_PERIOD
 	 */
@@ -119,7 +158,7 @@ public class FlatFileStorage extends VariablesStorage {
 	 * Whether there was an error while loading variables.
 	 * <p>
 	 * Set back to {@code false} when a backup has been made
-	 * of the variable file that caused the error.
+	 * of the variable files that caused the error.
 	 */
 	private boolean loadError = false;
 
@@ -133,12 +172,11 @@ public class FlatFileStorage extends VariablesStorage {
 	}
 
 	/**
-	 * Loads the variables in the CSV file.
+	 * Loads the variables in the CSV file and its change log.
 	 * <p>
 	 * Doesn't lock the connection, as required by
 	 * {@link Variables#variableLoaded(String, Object, VariablesStorage)}.
 	 */
-	@SuppressWarnings("deprecation")
 	@Override
 	protected boolean load_i(SectionNode sectionNode) {
 		SkriptLogger.setNode(null);
@@ -148,14 +186,153 @@ public class FlatFileStorage extends VariablesStorage {
 			return false;
 		}
 
+		// The compaction ratio is optional, as older configs don't contain it
+		if (sectionNode.getValue("compaction ratio") != null) {
+			Number ratio = getValue(sectionNode, "compaction ratio", Number.class);
+			if (ratio == null)
+				return false;
+			if (ratio.doubleValue() <= 0) {
+				Skript.error("The entry for 'compaction ratio' in the database '" + databaseName + "' must be a positive number");
+				return false;
+			}
+			compactionRatio = ratio.doubleValue();
+		}
+
 		// Keep track of loading errors
 		IOException ioException = null;
+		LoadErrors errors = new LoadErrors();
+
+		try {
+			readVariables(errors, (name, value) -> Variables.variableLoaded(name, value, this));
+		} catch (IOException e) {
+			loadError = true;
+			ioException = e;
+		}
+
+		if (ioException != null || errors.unsuccessfulVariableCount > 0 || errors.update2_1) {
+			// Something's wrong (or just an old version)
+			if (errors.unsuccessfulVariableCount > 0) {
+				Skript.error(errors.unsuccessfulVariableCount + " variable" + (errors.unsuccessfulVariableCount == 1 ? "" : "s") +
+						" could not be loaded!");
+				Skript.error("Affected variables: " + errors.invalid.toString());
+			}
+
+			if (ioException != null) {
+				Skript.error("An I/O error occurred while loading the variables: " + ExceptionUtils.toString(ioException));
+				Skript.error("This means that some to all variables could not be loaded!");
+			}
+
+			if (errors.update2_1) {
+				// Variables are only loaded after all storages, so the file can't be rewritten yet
+				Skript.info("[2.1] " + file.getName() + " will be updated to the new format on the next save");
+			}
+
+			try {
+				backup();
+				loadError = false;
+			} catch (IOException ex) {
+				Skript.error("Could not backup " + file.getName() + ": " + ex.getMessage());
+			}
+
+			compactionRequired = true;
+		}
+
+		connect();
+
+		// Start the save task
+		saveTask = new Task(Skript.getInstance(), SAVE_TASK_DELAY, SAVE_TASK_PERIOD, true) {
+			@Override
+			public void run() {
+				if (isCompactionRequired())
+					saveVariables(false);
+			}
+		};
+
+		return ioException == null;
+	}
+
+	/**
+	 * Reads the variables in the checkpoint and the change log, and continues the change log in a new segment.
+	 * The last change of a variable in the change log overrides its value in the checkpoint.
+	 *
+	 * @param errors the errors of the current load.
+	 * @param consumer the consumer of the variables' names and current values.
+	 * Deleted variables are passed with a {@code null} value.
+	 * @throws IOException if any of the files could not be read.
+	 */
+	void readVariables(LoadErrors errors, BiConsumer<String, Object> consumer) throws IOException {
+		assert file != null;
+		int[] segments = findSegments();
+		if (segments.length > 0) {
+			firstSegment = segments[0];
+			// Start a new segment, the last one may end with a partially written line
+			segment = segments[segments.length - 1] + 1;
+		}
+
+		// Read the change log first, so that the checkpoint's outdated values don't have to be loaded
+		Map<String, Object> changes = new LinkedHashMap<>();
+		for (int number : segments)
+			read(getSegmentFile(number), errors, changes::put);
+
+		readCheckpoint(file, errors, (name, value) -> {
+			if (!changes.containsKey(name))
+				consumer.accept(name, value);
+		});
+
+		// Deleted variables are mapped to null, and thus not loaded at all
+		for (Entry<String, Object> change : changes.entrySet())
+			consumer.accept(change.getKey(), change.getValue());
+	}
+
+	/**
+	 * Keeps track of the variables that couldn't be loaded.
+	 */
+	static final class LoadErrors {
+
+		final StringBuilder invalid = new StringBuilder();
 		int unsuccessfulVariableCount = 0;
-		StringBuilder invalid = new StringBuilder();
 
-		// The Skript version this CSV was created with
-		Version csvSkriptVersion;
+		/**
+		 * Whether any of the files was written by a Skript version older than 2.1.
+		 */
+		boolean update2_1 = false;
+
+		void add(String name) {
+			if (invalid.length() != 0)
+				invalid.append(", ");
+			invalid.append(name);
+			unsuccessfulVariableCount++;
+		}
+
+	}
+
+	/**
+	 * Reads the variables in the given checkpoint,
+	 * passing each variable's name and value to the given consumer in the order they appear in the file.
+	 * A {@code null} value means that the variable was deleted.
+	 *
+	 * @param file the checkpoint.
+	 * @param errors the errors of the current load.
+	 * @param consumer the consumer of the variables.
+	 * @throws IOException if the file could not be read.
+	 * @see #writeCheckpoint(File, VariablesMap[])
+	 */
+	void readCheckpoint(File file, LoadErrors errors, BiConsumer<String, Object> consumer) throws IOException {
+		read(file, errors, consumer);
+	}
 
+	/**
+	 * Reads the variables in the given CSV file,
+	 * passing each variable's name and value to the given consumer in the order they appear in the file.
+	 * A {@code null} value means that the variable was deleted.
+	 *
+	 * @param file the checkpoint or a segment of the change log.
+	 * @param errors the errors of the current load.
+	 * @param consumer the consumer of the variables.
+	 * @throws IOException if the file could not be read.
+	 */
+	@SuppressWarnings("deprecation")
+	private void read(File file, LoadErrors errors, BiConsumer<String, Object> consumer) throws IOException {
 		// Some variables used to allow legacy CSV files to be loaded
 		Version v2_0_beta3 = new Version(2, 0, "beta 3");
 		boolean update2_0_beta3 = false;
@@ -177,9 +354,11 @@ public class FlatFileStorage extends VariablesStorage {
 						// Update the version accordingly
 
 						try {
-							csvSkriptVersion = new Version(line.substring("# version:".length()).trim());
+							// The Skript version this CSV was created with
+							Version csvSkriptVersion = new Version(line.substring("# version:".length()).trim());
 							update2_0_beta3 = csvSkriptVersion.isSmallerThan(v2_0_beta3);
 							update2_1 = csvSkriptVersion.isSmallerThan(v2_1);
+							errors.update2_1 |= update2_1;
 						} catch (IllegalArgumentException ignored) {
 						}
 					}
@@ -191,17 +370,13 @@ public class FlatFileStorage extends VariablesStorage {
 				if (split == null || split.length != 3) {
 					// Invalid CSV line
 
-					Skript.error("invalid amount of commas in line " + lineNum + " ('" + line + "')");
-					if (invalid.length() != 0)
-						invalid.append(", ");
-
-					invalid.append(split == null ? "<unknown>" : split[0]);
-					unsuccessfulVariableCount++;
+					Skript.error("invalid amount of commas in line " + lineNum + " of " + file.getName() + " ('" + line + "')");
+					errors.add(split == null ? "<unknown>" : split[0]);
 					continue;
 				}
 
 				if (split[1].equals("null")) {
-					Variables.variableLoaded(split[0], null, this);
+					consumer.accept(split[0], null);
 				} else {
 					Object deserializedValue;
 					if (update2_1) {
@@ -213,11 +388,7 @@ public class FlatFileStorage extends VariablesStorage {
 
 					if (deserializedValue == null) {
 						// Couldn't deserialize variable
-						if (invalid.length() != 0)
-							invalid.append(", ");
-
-						invalid.append(split[0]);
-						unsuccessfulVariableCount++;
+						errors.add(split[0]);
 						continue;
 					}
 
@@ -226,64 +397,84 @@ public class FlatFileStorage extends VariablesStorage {
 						deserializedValue = Utils.replaceChatStyles((String) deserializedValue);
 					}
 
-					Variables.variableLoaded(split[0], deserializedValue, this);
+					consumer.accept(split[0], deserializedValue);
 				}
 			}
-		} catch (IOException e) {
-			loadError = true;
-			ioException = e;
 		}
+	}
 
-		if (ioException != null || unsuccessfulVariableCount > 0 || update2_1) {
-			// Something's wrong (or just an old version)
-			if (unsuccessfulVariableCount > 0) {
-				Skript.error(unsuccessfulVariableCount + " variable" + (unsuccessfulVariableCount == 1 ? "" : "s") +
-						" could not be loaded!");
-				Skript.error("Affected variables: " + invalid.toString());
-			}
-
-			if (ioException != null) {
-				Skript.error("An I/O error occurred while loading the variables: " + ExceptionUtils.toString(ioException));
-				Skript.error("This means that some to all variables could not be loaded!");
-			}
-
-			try {
-				if (update2_1) {
-					Skript.info("[2.1] updating " + file.getName() + " to the new format...");
-				}
+	/**
+	 * Gets the file of the given segment of the change log.
+	 *
+	 * @param segment the number of the segment.
+	 * @return the file, which may not exist.
+	 */
+	private File getSegmentFile(int segment) {
+		assert file != null;
+		return new File(file.getParentFile(), file.getName() + "." + segment + ".log");
+	}
 
-				// Back up CSV file
-				File backupFile = FileUtils.backup(file);
-				Skript.info("Created a backup of " + file.getName() + " as " + backupFile.getName());
+	/**
+	 * Finds the segments of the change log that exist.
+	 *
+	 * @return the numbers of the segments, in ascending order.
+	 */
+	private int[] findSegments() {
+		assert file != null;
+		Pattern segmentPattern = Pattern.compile(Pattern.quote(file.getName()) + "\\.(\\d{1,9})\\.log");
+		File[] files = file.getParentFile().listFiles();
+		if (files == null)
+			return new int[0];
+
+		return Arrays.stream(files)
+			.map(segmentFile -> segmentPattern.matcher(segmentFile.getName()))
+			.filter(Matcher::matches)
+			.mapToInt(matcher -> Integer.parseInt(matcher.group(1)))
+			.sorted()
+			.toArray();
+	}
 
-				loadError = false;
-			} catch (IOException ex) {
-				Skript.error("Could not backup " + file.getName() + ": " + ex.getMessage());
-			}
-		}
+	/**
+	 * Makes the next check for a compaction succeed regardless of the size of the change log.
+	 */
+	final void requireCompaction() {
+		compactionRequired = true;
+	}
 
-		if (update2_1) {
-			// Save variables in new format
-			saveVariables(false);
-			Skript.info(file.getName() + " successfully updated.");
-		}
+	/**
+	 * Checks whether the change log should be merged into a new checkpoint,
+	 * i.e. whether it has grown large enough compared to the checkpoint.
+	 *
+	 * @return whether the change log should be compacted.
+	 * @see #compactionRatio
+	 */
+	boolean isCompactionRequired() {
+		assert file != null;
+		if (compactionRequired)
+			return true;
 
-		connect();
+		long logSize = 0;
+		for (int i = firstSegment; i <= segment; i++)
+			logSize += getSegmentFile(i).length();
 
-		// Start the save task
-		saveTask = new Task(Skript.getInstance(), SAVE_TASK_DELAY, SAVE_TASK_PERIOD, true) {
-			@Override
-			public void run() {
-				// Due to concurrency, the amount of changes may change between the get and set call
-				//  but that's not a big issue
-				if (changes.get() >= REQUIRED_CHANGES_FOR_RESAVE) {
-					saveVariables(false);
-					changes.set(0);
-				}
-			}
-		};
+		return logSize >= MIN_COMPACTION_SIZE && logSize >= compactionRatio * file.length();
+	}
 
-		return ioException == null;
+	/**
+	 * Creates a backup of the checkpoint and all segments of the change log.
+	 *
+	 * @throws IOException if any of the files couldn't be backed up.
+	 */
+	private void backup() throws IOException {
+		assert file != null;
+		File backupFile = FileUtils.backup(file);
+		Skript.info("Created a backup of " + file.getName() + " as " + backupFile.getName());
+
+		for (int i = firstSegment; i <= segment; i++) {
+			File segmentFile = getSegmentFile(i);
+			if (segmentFile.exists())
+				FileUtils.backup(segmentFile);
+		}
 	}
 
 	@Override
@@ -301,17 +492,52 @@ public class FlatFileStorage extends VariablesStorage {
 		return new File(fileName);
 	}
 
+	/**
+	 * Starts the backup task, which first merges the change log into the checkpoint,
+	 * as the checkpoint alone doesn't contain the recent changes.
+	 *
+	 * @param backupInterval the backup interval.
+	 */
+	@Override
+	public void startBackupTask(Timespan backupInterval) {
+		// File is null or backup interval is invalid
+		if (file == null || backupInterval.getTicks() == 0)
+			return;
+
+		backupTask = new Task(Skript.getInstance(), backupInterval.getTicks(), backupInterval.getTicks(), true) {
+			@Override
+			public void run() {
+				synchronized (compactionLock) {
+					saveVariables(false);
+					try {
+						FileUtils.backup(file);
+					} catch (IOException e) {
+						Skript.error("Automatic variables backup failed: " + e.getLocalizedMessage());
+					}
+				}
+			}
+		};
+	}
+
 	@Override
 	protected final void disconnect() {
 		synchronized (connectionLock) {
 			clearChangesQueue();
-			synchronized (changesWriter) {
-				PrintWriter printWriter = changesWriter.get();
+			closeWriter();
+		}
+	}
 
-				if (printWriter != null) {
-					printWriter.close();
-					changesWriter.set(null);
-				}
+	/**
+	 * Closes the {@link #changesWriter}, if it is open.
+	 * Must be called while holding the connectionLock.
+	 */
+	private void closeWriter() {
+		synchronized (changesWriter) {
+			PrintWriter printWriter = changesWriter.get();
+
+			if (printWriter != null) {
+				printWriter.close();
+				changesWriter.set(null);
 			}
 		}
 	}
@@ -325,12 +551,21 @@ public class FlatFileStorage extends VariablesStorage {
 				if (changesWriter.get() != null)
 					return true;
 
-				// Open the file stream, and create the PrintWriter with it
-				try (FileOutputStream fos = new FileOutputStream(file, true)) {
-					changesWriter.set(new PrintWriter(new OutputStreamWriter(fos, FILE_CHARSET)));
+				// Open the current segment of the change log, and create the PrintWriter with it
+				File segmentFile = getSegmentFile(segment);
+				boolean newSegment = segmentFile.length() == 0;
+				try {
+					PrintWriter printWriter = new PrintWriter(new OutputStreamWriter(new FileOutputStream(segmentFile, true), FILE_CHARSET));
+					if (newSegment) {
+						printWriter.println("# === Skript's variable change log ===");
+						printWriter.println("# version: " + Skript.getVersion());
+						printWriter.flush();
+					}
+					changesWriter.set(printWriter);
+					changesWriter.notifyAll();
 					loaded = true;
 					return true;
-				} catch (IOException e) { // close() might throw ANY IOException
+				} catch (IOException e) {
 					//noinspection ThrowableNotThrown
 					Skript.exception(e);
 					return false;
@@ -341,139 +576,198 @@ public class FlatFileStorage extends VariablesStorage {
 
 	@Override
 	public void close() {
-		clearChangesQueue();
+		// Write all queued changes to the change log, they aren't part of any checkpoint
 		super.close();
-		saveVariables(true); // also closes the writer
+
+		// Cancel save and backup tasks, not needed with final save anyway
+		if (saveTask != null)
+			saveTask.cancel();
+		if (backupTask != null)
+			backupTask.cancel();
+
+		synchronized (compactionLock) {
+			if (isCompactionRequired()) {
+				saveVariables(true); // also closes the writer
+			} else {
+				disconnect();
+			}
+		}
 	}
 
 	@Override
 	protected boolean save(String name, @Nullable String type, @Nullable byte[] value) {
-		synchronized (connectionLock) {
-			synchronized (changesWriter) {
-				if (!loaded && type == null) {
-					// deleting variables is not really required for this kind of storage,
-					//  as it will be completely rewritten every once in a while,
-					//  and at least once when the server stops.
-					return true;
+		while (true) {
+			synchronized (connectionLock) {
+				synchronized (changesWriter) {
+					if (!loaded && type == null) {
+						// deleting variables is not really required before the storage is connected,
+						//  as the variable won't be part of the next checkpoint anyway.
+						return true;
+					}
+
+					PrintWriter printWriter = changesWriter.get();
+					if (printWriter != null) {
+						writeCSV(printWriter, name, type, value == null ? "" : encode(value));
+						printWriter.flush();
+						return true;
+					}
 				}
+			}
 
-				// Get the PrintWriter, waiting for it to be available if needed
-				PrintWriter printWriter;
-				while ((printWriter = changesWriter.get()) == null) {
+			// Wait for the PrintWriter to be available, without holding the connectionLock so that it can be reconnected.
+			// It may never become available again, e.g. if reconnecting failed, so give up once this storage is closed
+			if (closed)
+				return false;
+			synchronized (changesWriter) {
+				if (changesWriter.get() == null) {
 					try {
-						changesWriter.wait();
-					} catch (InterruptedException e) {
-						// Re-interrupt thread
-						Thread.currentThread().interrupt();
+						changesWriter.wait(100);
+					} catch (InterruptedException ignored) {
+						// The write thread is interrupted when closing, which is checked above
 					}
 				}
-
-				writeCSV(printWriter, name, type, value == null ? "" : encode(value));
-				printWriter.flush();
-
-				changes.incrementAndGet();
 			}
 		}
-		return true;
 	}
 
 	/**
-	 * Completely rewrites the CSV file.
+	 * Merges the change log into a new checkpoint.
 	 * <p>
-	 * The {@code finalSave} argument is used to determine if
-	 * the {@link #saveTask save} and {@link #backupTask backup} tasks
-	 * should be cancelled, and if the storage should reconnect after saving.
+	 * The change log is continued in a new segment at the time of a snapshot of the variables,
+	 * then the snapshot is written to a new checkpoint while variables can be changed again,
+	 * after which the old segments are deleted.
+	 * If saving is interrupted at any point, loading the old segments over the checkpoint
+	 * still results in the same variables.
 	 *
-	 * @param finalSave whether this is the last save in this session or not.
+	 * @param finalSave whether this is the last save in this session,
+	 * in which case no more changes are written to the change log afterwards.
 	 */
 	public final void saveVariables(boolean finalSave) {
-		if (finalSave) {
-			// Cancel save and backup tasks, not needed with final save anyway
-			if (saveTask != null)
-				saveTask.cancel();
-			if (backupTask != null)
-				backupTask.cancel();
-		}
+		saveVariables(finalSave, Variables::getVariablesSnapshot);
+	}
 
-		try {
-			// Acquire read lock
-			Variables.getReadLock().lock();
+	/**
+	 * Merges the change log into a new checkpoint, see {@link #saveVariables(boolean)}.
+	 *
+	 * @param finalSave whether this is the last save in this session.
+	 * @param snapshotSupplier takes the snapshot of the variables that is written to the checkpoint,
+	 * called while changes to the variables are blocked.
+	 */
+	final void saveVariables(boolean finalSave, Supplier<VariablesMap[]> snapshotSupplier) {
+		if (file == null) {
+			// This storage requires a file, so file should be nonnull
+			assert false : this;
+			return;
+		}
 
-			synchronized (connectionLock) {
+		synchronized (compactionLock) {
+			if (loadError) {
+				// There was an error while loading the CSV files, create a backup of them
 				try {
-					if (file == null) {
-						// This storage requires a file, so file should be nonnull
-						assert false : this;
-						return;
-					}
-
-					disconnect();
+					backup();
+					loadError = false;
+				} catch (IOException e) {
+					Skript.error("Could not backup the old " + file.getName() + ": " + ExceptionUtils.toString(e));
+					Skript.error("The change log of " + file.getName() + " is not compacted (no variables are lost)");
+					if (finalSave)
+						disconnect();
+					return;
+				}
+			}
 
-					if (loadError) {
-						// There was an error while loading the CSV file, create a backup of it
-						try {
-							File backup = FileUtils.backup(file);
-							Skript.info("Created a backup of the old " + file.getName() + " as " + backup.getName());
-							loadError = false;
-						} catch (IOException e) {
-							Skript.error("Could not backup the old " + file.getName() + ": " + ExceptionUtils.toString(e));
-							Skript.error("No variables are saved!");
-							return;
-						}
-					}
+			VariablesMap[] snapshot;
+			int lastSegment;
+			// Block changes until the change log has moved on to a new segment,
+			//  as the old segments are replaced by the snapshot
+			Variables.lockAllStripes();
+			try {
+				snapshot = snapshotSupplier.get();
 
-					// Write the variables to a temporary file, giving less problems if saving fails
-					//  (if saving fails during writing to the actual file,
-					//  the data in the actual file may be partially lost)
-					File tempFile = new File(file.getParentFile(), file.getName() + ".temp");
-
-					try (PrintWriter pw = new PrintWriter(tempFile, "UTF-8")) {
-						pw.println("# === Skript's variable storage ===");
-						pw.println("# Please do not modify this file manually!");
-						pw.println("#");
-						pw.println("# version: " + Skript.getVersion());
-						pw.println();
-						save(pw, "", Variables.getVariables());
-						pw.println();
-						pw.flush();
-						pw.close();
-						FileUtils.move(tempFile, file, true);
-					} catch (IOException e) {
-						Skript.error("Unable to make a final save of the database '" + databaseName +
-								"' (no variables are lost): " + ExceptionUtils.toString(e));
-						// FIXME happens at random - check locks/threads
-					}
-				} finally {
-					// Reconnect if needed
-					if (!finalSave) {
+				synchronized (connectionLock) {
+					// Queued changes are kept, they are written to the new segment
+					closeWriter();
+					lastSegment = segment++;
+					if (!finalSave)
 						connect();
-					}
 				}
+			} finally {
+				Variables.unlockAllStripes();
 			}
-		} finally {
-			Variables.getReadLock().unlock();
-			boolean gotWriteLock = Variables.variablesLock.writeLock().tryLock();
-			if (gotWriteLock) { // Only process queue now if it doesn't require us to wait
-				try {
-					Variables.processChangeQueue();
-				} finally {
-					Variables.variablesLock.writeLock().unlock();
+			// Only process queues now if it doesn't require us to wait
+			Variables.tryProcessChangeQueues();
+
+			// Write the variables to a temporary file, giving less problems if saving fails
+			//  (if saving fails during writing to the actual file,
+			//  the data in the actual file may be partially lost)
+			File tempFile = new File(file.getParentFile(), file.getName() + ".temp");
+
+			try {
+				writeCheckpoint(tempFile, snapshot);
+				FileUtils.move(tempFile, file, true);
+			} catch (IOException e) {
+				Skript.error("Unable to save the database '" + databaseName +
+						"' (no variables are lost): " + ExceptionUtils.toString(e));
+				return;
+			}
+			compactionRequired = false;
+
+			// Delete the oldest segments first, so that the remaining ones are always the most recent changes
+			while (firstSegment <= lastSegment) {
+				File segmentFile = getSegmentFile(firstSegment);
+				if (segmentFile.exists() && !segmentFile.delete()) {
+					Skript.warning("Could not delete " + segmentFile.getName() + ", it will be merged again on the next save");
+					break;
 				}
+				firstSegment++;
 			}
 		}
 	}
 
 	/**
-	 * Saves the variables.
+	 * Writes the given snapshot of the variables to a checkpoint.
+	 *
+	 * @param file the file to write the checkpoint to.
+	 * @param snapshot the snapshot of the variables.
+	 * @throws IOException if the checkpoint couldn't be written.
+	 * @see #readCheckpoint(File, LoadErrors, BiConsumer)
+	 */
+	void writeCheckpoint(File file, VariablesMap[] snapshot) throws IOException {
+		try (PrintWriter pw = new PrintWriter(file, "UTF-8")) {
+			pw.println("# === Skript's variable storage ===");
+			pw.println("# Please do not modify this file manually!");
+			pw.println("#");
+			pw.println("# version: " + Skript.getVersion());
+			pw.println();
+			forEachVariable(snapshot, (name, value) -> writeCSV(pw, name, value.type, encode(value.data)));
+			pw.println();
+			// PrintWriter doesn't throw exceptions by itself
+			if (pw.checkError())
+				throw new IOException("Error writing to " + file.getName());
+		}
+	}
+
+	/**
+	 * Serializes the variables of the given snapshot that are stored in this storage,
+	 * passing each one to the given consumer in the order of their names.
+	 *
+	 * @param snapshot the snapshot of the variables.
+	 * @param consumer the consumer of the variables' names and serialized values.
+	 */
+	final void forEachVariable(VariablesMap[] snapshot, BiConsumer<String, SerializedVariable.Value> consumer) {
+		for (VariablesMap variables : snapshot)
+			forEachVariable("", variables.treeMap, consumer);
+	}
+
+	/**
+	 * Serializes the variables of the given map that are stored in this storage.
 	 * <p>
 	 * This method uses the sorted variables map to save the variables in order.
 	 *
-	 * @param pw the print writer to write the CSV lines too.
 	 * @param parent The parent's name with {@link Variable#SEPARATOR} at the end.
 	 * @param map the variables map.
+	 * @param consumer the consumer of the variables' names and serialized values.
 	 */
-	@SuppressWarnings("unchecked")
-	private void save(PrintWriter pw, String parent, TreeMap<String, Object> map) {
+	private void forEachVariable(String parent, VariablesMap.ListTreeMap map, BiConsumer<String, SerializedVariable.Value> consumer) {
 		// Iterate over all children
 		for (Entry<String, Object> childEntry : map.entrySet()) {
 			Object childNode = childEntry.getValue();
@@ -482,37 +776,47 @@ public class FlatFileStorage extends VariablesStorage {
 			if (childNode == null)
 				continue; // Leaf node
 
-			if (childNode instanceof TreeMap) {
-				// TreeMap found, recurse
-				save(pw, parent + childKey + Variable.SEPARATOR, (TreeMap<String, Object>) childNode);
+			if (childNode instanceof VariablesMap.ListTreeMap) {
+				// List found, recurse
+				forEachVariable(parent + childKey + Variable.SEPARATOR, (VariablesMap.ListTreeMap) childNode, consumer);
 			} else {
 				// Remove variable separator if needed
 				String name = childKey == null ? parent.substring(0, parent.length() - Variable.SEPARATOR.length()) : parent + childKey;
 
+				SerializedVariable.Value serializedValue = null;
 				try {
-					// Loop over storages to make sure this variable is ours to store
-					for (VariablesStorage storage : Variables.STORAGES) {
-						if (storage.accept(name)) {
-							if (storage == this) {
-								// Serialize the value
-								SerializedVariable.Value serializedValue = Classes.serialize(childNode);
-
-								// Write the CSV line
-								if (serializedValue != null)
-									writeCSV(pw, name, serializedValue.type, encode(serializedValue.data));
-							}
-
-							break;
-						}
+					// Make sure this variable is ours to store
+					if (isStorageOf(name)) {
+						// Serialize the value
+						serializedValue = Classes.serialize(childNode);
 					}
 				} catch (Exception ex) {
 					//noinspection ThrowableNotThrown
 					Skript.exception(ex, "Error saving variable named " + name);
 				}
+
+				// Errors while writing concern the whole checkpoint, so they aren't caught above
+				if (serializedValue != null)
+					consumer.accept(name, serializedValue);
 			}
 		}
 	}
 
+	/**
+	 * Checks whether the variable of the given name is stored in this storage,
+	 * i.e. whether this is the first of the {@link Variables#STORAGES} that {@link #accept(String) accepts} it.
+	 *
+	 * @param name the name of the variable.
+	 * @return whether the variable is stored in this storage.
+	 */
+	boolean isStorageOf(String name) {
+		for (VariablesStorage storage : Variables.STORAGES) {
+			if (storage.accept(name))
+				return storage == this;
+		}
+		return false;
+	}
+
 	/**
 	 * Encode the given byte array to a hexadecimal string.
 	 *
@@ -0,0 +1,319 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.bukkit.Bukkit;
+import org.eclipse.jdt.annotation.Nullable;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.util.Task;
+
+/**
+ * Keeps only the recently used part of the variables of a {@link SQLStorage} in memory.
+ * <p>
+ * The variables are divided into groups: the group of a variable is the shortest part of its name,
+ * ending at a {@link Variable#SEPARATOR}, that matches the lazy pattern of the storage.
+ * E.g. with the pattern {@code playerdata::[^:]+}, {@code playerdata::<uuid>::kills}
+ * belongs to the group {@code playerdata::<uuid>}, which includes {@code playerdata::<uuid>} itself
+ * and all variables of the list {@code playerdata::<uuid>::*}.
+ * <p>
+ * Variables of a group are not loaded when the server starts, but are fetched from the database
+ * the first time one of them is used, see {@link #load(String, boolean)} and {@link #prefetch(String)}.
+ * At most {@link #cacheSize} groups are kept in memory, the least recently used ones are evicted first.
+ * <p>
+ * Changes are written to the database as they happen, so a group is <i>dirty</i> as long as it has changes
+ * that haven't been committed yet. Dirty groups and groups that are being fetched are pinned,
+ * i.e. they aren't evicted until all of their changes are saved and all fetches are done, see {@link #pins}.
+ * Thus the database always contains the current variables of a group that isn't in memory.
+ */
+final class LazyVariables {
+
+	/**
+	 * The storage whose variables are loaded lazily.
+	 */
+	private final SQLStorage storage;
+
+	/**
+	 * The pattern a group name must match.
+	 */
+	private final Pattern pattern;
+
+	/**
+	 * The maximum amount of groups in memory, unless more are pinned.
+	 */
+	private final int cacheSize;
+
+	/**
+	 * The groups in memory, in access order, i.e. the least recently used group first.
+	 * Must be synchronised on this object.
+	 */
+	private final LinkedHashMap<String, Boolean> residentGroups = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The amount of unsaved changes and running fetches of each pinned group.
+	 * Must be synchronised on this object.
+	 */
+	private final Map<String, Integer> pins = new HashMap<>();
+
+	LazyVariables(SQLStorage storage, Pattern pattern, int cacheSize) {
+		this.storage = storage;
+		this.pattern = pattern;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Gets the group of the given variable.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @return the group, or {@code null} if the variable isn't loaded lazily.
+	 */
+	@Nullable
+	String getGroup(String name) {
+		int end = 0;
+		while (true) {
+			end = name.indexOf(Variable.SEPARATOR, end);
+			if (end < 0) {
+				// A list of groups, e.g. 'playerdata::*', isn't a group itself
+				if (name.endsWith(Variable.SEPARATOR + "*"))
+					return null;
+				return pattern.matcher(name).matches() ? name : null;
+			}
+			if (pattern.matcher(name).region(0, end).matches())
+				return name.substring(0, end);
+			end += Variable.SEPARATOR.length();
+		}
+	}
+
+	/**
+	 * Checks whether a group may start with the given part of a variable name before the first {@link Variable#SEPARATOR},
+	 * so that {@link #getGroup(String)} can be skipped for variables that aren't loaded lazily.
+	 *
+	 * @param prefix the part of a variable name before the first separator, or the whole name if it has none.
+	 * @return whether some variables starting with the prefix may be loaded lazily.
+	 */
+	boolean mayHaveGroup(String prefix) {
+		Matcher matcher = pattern.matcher(prefix);
+		// If matching failed before reaching the end of the prefix, appending to it can't result in a match
+		return matcher.matches() || matcher.hitEnd();
+	}
+
+	/**
+	 * Checks whether the given variable is in memory, i.e. whether it isn't loaded lazily or its group is resident.
+	 * Doesn't count as a use of the group.
+	 *
+	 * @param name the variable name.
+	 * @return whether the variable is in memory.
+	 */
+	boolean isResident(String name) {
+		String group = getGroup(name);
+		return group == null || isGroupResident(group);
+	}
+
+	private synchronized boolean isGroupResident(String group) {
+		return residentGroups.containsKey(group);
+	}
+
+	/**
+	 * Gets the value of the given variable, fetching its group from the database first if it isn't in memory.
+	 * <p>
+	 * The group isn't pinned while reading, instead it is checked to still be resident under the lock of its stripe,
+	 * which is also held when it is evicted, and fetched again if it has been evicted since it was loaded.
+	 * If the group cannot be fetched, e.g. because the database is unavailable, the variable is treated as not set.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @return the value, as returned by {@link VariablesMap#getVariable(String)},
+	 * or {@code null} if the group of the variable couldn't be fetched.
+	 */
+	@Nullable
+	Object getVariable(String name) {
+		String group = getGroup(name);
+		Variables.Stripe stripe = Variables.getStripe(name);
+		while (true) {
+			if (group != null && !loadGroup(group, false))
+				return null;
+			stripe.lock.readLock().lock();
+			try {
+				if (group == null || isGroupResident(group))
+					return stripe.variables.getVariable(name);
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Makes sure that the group of the given variable is in memory, fetching it from the database if required.
+	 * This blocks until the group is fetched.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @param changed whether the variable is about to be changed. The group is then pinned until
+	 *                   {@link #saved(String)} is called for the change.
+	 */
+	void load(String name, boolean changed) {
+		String group = getGroup(name);
+		if (group != null)
+			loadGroup(group, changed);
+	}
+
+	/**
+	 * @return whether the group is resident or has been installed, false if it couldn't be fetched.
+	 */
+	private boolean loadGroup(String group, boolean changed) {
+		synchronized (this) {
+			if (changed)
+				pin(group);
+			if (residentGroups.get(group) != null)
+				return true;
+			// Don't evict the group while fetching it, as it may be changed and evicted before the fetch finishes
+			pin(group);
+		}
+		try {
+			List<SerializedVariable> variables = storage.fetchGroup(group);
+			if (variables == null) {
+				Skript.error("Cannot load the variables of the group '" + group + "' from the database '" + storage.databaseName + "'");
+				return false;
+			}
+			// Null if the server is stopping
+			return Task.callSync(() -> install(group, variables)) != null;
+		} finally {
+			synchronized (this) {
+				unpin(group);
+			}
+		}
+	}
+
+	/**
+	 * Fetches the group of the given variable in the background if it isn't in memory yet.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 */
+	void prefetch(String name) {
+		String group = getGroup(name);
+		if (group == null)
+			return;
+		synchronized (this) {
+			if (residentGroups.get(group) != null)
+				return;
+		}
+		Bukkit.getScheduler().runTaskAsynchronously(Skript.getInstance(), () -> load(name, false));
+	}
+
+	/**
+	 * Called once the given change has been saved to the database, after it was loaded with {@link #load(String, boolean)}.
+	 *
+	 * @param name the name of the changed variable.
+	 */
+	void saved(String name) {
+		String group = getGroup(name);
+		if (group == null)
+			return;
+		synchronized (this) {
+			unpin(group);
+		}
+	}
+
+	private void pin(String group) {
+		pins.merge(group, 1, Integer::sum);
+	}
+
+	private void unpin(String group) {
+		pins.computeIfPresent(group, (key, count) -> count == 1 ? null : count - 1);
+	}
+
+	/**
+	 * Puts the fetched variables of the given group into memory, unless the group has been loaded in the meantime.
+	 * <p>
+	 * Must be called on Bukkit's main thread, as it deserializes the variables.
+	 *
+	 * @return {@link Boolean#TRUE}, so that {@link Task#callSync(java.util.concurrent.Callable)} returning {@code null} means it wasn't run.
+	 */
+	private Boolean install(String group, List<SerializedVariable> variables) {
+		Map<String, Object> values = new HashMap<>();
+		for (SerializedVariable variable : variables) {
+			SerializedVariable.Value value = variable.value;
+			assert value != null;
+			Object deserialized = storage.deserialize(variable.name, value.type, value.data);
+			if (deserialized != null)
+				values.put(variable.name, deserialized);
+		}
+
+		// Variables of a group always belong to the same stripe
+		Variables.Stripe stripe = Variables.getStripe(group);
+		stripe.lock.writeLock().lock();
+		try {
+			synchronized (this) {
+				if (residentGroups.put(group, Boolean.TRUE) != null)
+					return Boolean.TRUE;
+			}
+			for (Map.Entry<String, Object> value : values.entrySet())
+				stripe.variables.setVariable(value.getKey(), value.getValue());
+		} finally {
+			stripe.lock.writeLock().unlock();
+		}
+
+		evict();
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Removes the least recently used groups that aren't pinned from memory
+	 * until at most {@link #cacheSize} groups are resident.
+	 */
+	private void evict() {
+		while (true) {
+			String group = null;
+			synchronized (this) {
+				if (residentGroups.size() <= cacheSize)
+					return;
+				for (String residentGroup : residentGroups.keySet()) {
+					if (!pins.containsKey(residentGroup)) {
+						group = residentGroup;
+						break;
+					}
+				}
+			}
+			if (group == null) // all groups are pinned
+				return;
+
+			Variables.Stripe stripe = Variables.getStripe(group);
+			stripe.lock.writeLock().lock();
+			try {
+				synchronized (this) {
+					// The group may have been changed or evicted in the meantime
+					if (pins.containsKey(group) || residentGroups.remove(group) == null)
+						continue;
+				}
+				// Only removed from memory, the variables remain in the database
+				stripe.variables.setVariable(group, null);
+				stripe.variables.setVariable(group + Variable.SEPARATOR + "*", null);
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.lang.parser.ParserInstance;
+import org.eclipse.jdt.annotation.Nullable;
+import org.jetbrains.annotations.ApiStatus;
+import org.skriptlang.skript.lang.structure.Structure;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns slot indices to the local variables of a {@link Structure} whose names are constant.
+ * <p>
+ * Local variables with a slot are stored in an array in their event's {@link VariablesMap}
+ * instead of its hash map and tree, so that accessing them from a {@link Variable}
+ * doesn't require any name hashing or list tree updates.
+ * Accessing them by name is still possible, the layout is consulted in that case.
+ */
+@ApiStatus.Internal
+public final class LocalVariableLayout {
+
+	/**
+	 * Registers the data keeping the layouts of each parser instance.
+	 * Called once when {@link Variables} is initialised during startup,
+	 * as registering data isn't thread-safe once scripts may be parsed in parallel.
+	 */
+	static void registerData() {
+		ParserInstance.registerData(LayoutData.class, LayoutData::new);
+	}
+
+	/**
+	 * Gets the layout of the structure currently being parsed.
+	 *
+	 * @param parser the parser instance.
+	 * @return the layout, or {@code null} if no structure is being parsed.
+	 */
+	@Nullable
+	public static LocalVariableLayout get(ParserInstance parser) {
+		if (!parser.isActive())
+			return null;
+		Structure structure = parser.getCurrentStructure();
+		if (structure == null)
+			return null;
+		return parser.getData(LayoutData.class).layouts.computeIfAbsent(structure, s -> new LocalVariableLayout());
+	}
+
+	/**
+	 * Checks whether the local variable with the given name can be given a slot.
+	 * List variables and variables whose name contains the list separator are not supported.
+	 *
+	 * @param name the variable's name, without the local variable token.
+	 */
+	public static boolean canHaveSlot(String name) {
+		return !name.contains(Variable.SEPARATOR);
+	}
+
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+	LocalVariableLayout() {}
+
+	/**
+	 * Gets the slot of the given variable name, assigning a new one if needed.
+	 *
+	 * @param name the variable's name, without the local variable token.
+	 * @return the slot index.
+	 * @see #canHaveSlot(String)
+	 */
+	public synchronized int getOrCreateSlot(String name) {
+		assert canHaveSlot(name) : name;
+		return slots.computeIfAbsent(normalize(name), n -> slots.size());
+	}
+
+	/**
+	 * Normalizes a variable name the way {@link Variables} does before looking it up.
+	 *
+	 * @param name the variable's name.
+	 * @return the name, lower-cased if variables are case-insensitive.
+	 */
+	public static String normalize(String name) {
+		return Variables.caseInsensitiveVariables ? name.toLowerCase(Locale.ENGLISH) : name;
+	}
+
+	/**
+	 * @param name the variable's name, already lower-cased if variables are case-insensitive.
+	 * @return the slot of the given variable, or {@code null} if it doesn't have one.
+	 */
+	@Nullable
+	Integer getSlot(String name) {
+		return slots.get(name);
+	}
+
+	/**
+	 * @return the amount of slots in this layout.
+	 */
+	int size() {
+		return slots.size();
+	}
+
+	/**
+	 * Keeps the layouts of the structures parsed by a parser instance.
+	 * Structures may be loaded in several phases, so the layout is kept for as long as the structure exists.
+	 */
+	private static final class LayoutData extends ParserInstance.Data {
+
+		private final Map<Structure, LocalVariableLayout> layouts = new WeakHashMap<>();
+
+		LayoutData(ParserInstance parserInstance) {
+			super(parserInstance);
+		}
+
+	}
+
+}
@@ -22,9 +22,16 @@ import java.io.File;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
@@ -34,6 +41,7 @@ import ch.njol.skript.Skript;
 import ch.njol.skript.classes.ClassInfo;
 import ch.njol.skript.classes.Serializer;
 import ch.njol.skript.config.SectionNode;
+import ch.njol.skript.lang.Variable;
 import ch.njol.skript.log.SkriptLogger;
 import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.util.Task;
@@ -76,6 +84,35 @@ public abstract class SQLStorage extends VariablesStorage {
 	 */
 	private final static long TRANSACTION_DELAY = 500;
 
+	/**
+	 * The {@link #batchSize} used if the config doesn't specify one.
+	 */
+	private final static int DEFAULT_BATCH_SIZE = 500;
+
+	/**
+	 * The {@link #batchLatency} in milliseconds used if the config doesn't specify one.
+	 * Changes were committed at the same rate before they were saved in batches.
+	 */
+	private final static long DEFAULT_BATCH_LATENCY = TRANSACTION_DELAY;
+
+	/**
+	 * The amount of variables written by a single statement of {@link #multiRowWriteQuery}.
+	 * Each row has 4 parameters, and SQLite allows at most 999 parameters in older versions.
+	 */
+	final static int ROWS_PER_STATEMENT = 100;
+
+	/**
+	 * The maximum amount of groups of lazily loaded variables in memory if the config doesn't specify it.
+	 */
+	private final static int DEFAULT_LAZY_CACHE_SIZE = 10000;
+
+	/**
+	 * The variables of this storage that are only loaded when they are used,
+	 * or {@code null} if all variables are loaded when the server starts.
+	 */
+	@Nullable
+	LazyVariables lazyVariables;
+
 	/**
 	 * Creates a SQLStorage with a create table query.
 	 * 
@@ -136,6 +173,48 @@ public abstract class SQLStorage extends VariablesStorage {
 			monitor = monitor_changes;
 			this.monitor_interval = monitor_interval.getMilliSeconds();
 
+			// Batching is optional, as older configs don't contain it
+			batchSize = DEFAULT_BATCH_SIZE;
+			if (n.getValue("batch size") != null) {
+				final Integer batchSize = getValue(n, "batch size", Integer.class);
+				if (batchSize == null)
+					return false;
+				if (batchSize < 1) {
+					Skript.error("The entry for 'batch size' in the database '" + databaseName + "' must be at least 1");
+					return false;
+				}
+				this.batchSize = batchSize;
+			}
+			batchLatency = DEFAULT_BATCH_LATENCY;
+			if (n.getValue("batch latency") != null) {
+				final Timespan batchLatency = getValue(n, "batch latency", Timespan.class);
+				if (batchLatency == null)
+					return false;
+				this.batchLatency = batchLatency.getMilliSeconds();
+			}
+
+			// Lazy loading is optional and disabled by default
+			final String lazyPattern = n.getValue("lazy pattern");
+			if (lazyPattern != null) {
+				int lazyCacheSize = DEFAULT_LAZY_CACHE_SIZE;
+				if (n.getValue("lazy cache size") != null) {
+					final Integer cacheSize = getValue(n, "lazy cache size", Integer.class);
+					if (cacheSize == null)
+						return false;
+					if (cacheSize < 1) {
+						Skript.error("The entry for 'lazy cache size' in the database '" + databaseName + "' must be at least 1");
+						return false;
+					}
+					lazyCacheSize = cacheSize;
+				}
+				try {
+					lazyVariables = new LazyVariables(this, Pattern.compile(lazyPattern), lazyCacheSize);
+				} catch (final PatternSyntaxException e) {
+					Skript.error("Invalid lazy pattern '" + lazyPattern + "': " + e.getLocalizedMessage());
+					return false;
+				}
+			}
+
 			final Database db;
 			try {
 				Database database = initialize(n);
@@ -201,9 +280,16 @@ public abstract class SQLStorage extends VariablesStorage {
 				if (hasOldTable) {
 					if (!hadNewTable) {
 						Skript.info("[2.1] Updating the database '" + databaseName + "' to the new format...");
+						final VariablesMap[] snapshot;
+						Variables.lockAllStripes();
 						try {
-							Variables.getReadLock().lock();
-							for (final Entry<String, Object> v : Variables.getVariablesHashMap().entrySet()) {
+							snapshot = Variables.getVariablesSnapshot();
+						} finally {
+							Variables.unlockAllStripes();
+						}
+						int transferred = 0;
+						for (final VariablesMap variables : snapshot) {
+							for (final Entry<String, Object> v : variables.byName().entrySet()) {
 								if (accept(v.getKey())) {// only one database was possible, so only checking this database is correct
 									@SuppressWarnings("null")
 									final SerializedVariable var = Variables.serialize(v.getKey(), v.getValue());
@@ -211,10 +297,9 @@ public abstract class SQLStorage extends VariablesStorage {
 									save(var.name, d == null ? null : d.type, d == null ? null : d.data);
 								}
 							}
-							Skript.info("Updated and transferred " + Variables.getVariablesHashMap().size() + " variables to the new table.");
-						} finally {
-							Variables.getReadLock().unlock();
+							transferred += variables.size();
 						}
+						Skript.info("Updated and transferred " + transferred + " variables to the new table.");
 					}
 					db.query("DELETE FROM " + OLD_TABLE_NAME + " WHERE value IS NULL");
 					db.query("DELETE FROM old USING " + OLD_TABLE_NAME + " AS old, " + getTableName() + " AS new WHERE old.name = new.name");
@@ -381,7 +466,13 @@ public abstract class SQLStorage extends VariablesStorage {
 					if (writeQuery != null)
 						writeQuery.close();
 				} catch (final SQLException e) {}
-				writeQuery = db.prepare("REPLACE INTO " + getTableName() + " (name, type, value, update_guid) VALUES (?, ?, ?, ?)");
+				writeQuery = db.prepare(getWriteQuery(getTableName(), 1));
+
+				try {
+					if (multiRowWriteQuery != null)
+						multiRowWriteQuery.close();
+				} catch (final SQLException e) {}
+				multiRowWriteQuery = db.prepare(getWriteQuery(getTableName(), ROWS_PER_STATEMENT));
 
 				try {
 					if (deleteQuery != null)
@@ -399,6 +490,15 @@ public abstract class SQLStorage extends VariablesStorage {
 						monitorCleanUpQuery.close();
 				} catch (final SQLException e) {}
 				monitorCleanUpQuery = db.prepare("DELETE FROM " + getTableName() + " WHERE value IS NULL AND rowid < ?");
+
+				if (lazyVariables != null) {
+					try {
+						if (groupQuery != null)
+							groupQuery.close();
+					} catch (final SQLException e) {}
+					// The variables of a list are the names between 'group::' and 'group:;', as ';' follows ':'
+					groupQuery = db.prepare("SELECT " + SELECT_ORDER + " FROM " + getTableName() + " WHERE name = ? OR (name >= ? AND name < ?)");
+				}
 			} catch (final SQLException e) {
 				Skript.exception(e, "Could not prepare queries for the database '" + databaseName + "': " + e.getLocalizedMessage());
 				return false;
@@ -425,6 +525,13 @@ public abstract class SQLStorage extends VariablesStorage {
 	 */
 	@Nullable
 	private PreparedStatement writeQuery;
+	/**
+	 * Params: name, type, value, GUID for each of {@value #ROWS_PER_STATEMENT} variables
+	 * <p>
+	 * Writes multiple variables to the database
+	 */
+	@Nullable
+	private PreparedStatement multiRowWriteQuery;
 	/**
 	 * Params: name
 	 * <p>
@@ -446,15 +553,46 @@ public abstract class SQLStorage extends VariablesStorage {
 	 */
 	@Nullable
 	PreparedStatement monitorCleanUpQuery;
+	/**
+	 * Params: group, group + {@value Variable#SEPARATOR}, group + ":;"
+	 * <p>
+	 * Selects the variables of a group of {@link #lazyVariables}. values in order: {@value #SELECT_ORDER}
+	 */
+	@Nullable
+	private PreparedStatement groupQuery;
+
+	/**
+	 * Creates a query that writes the given amount of variables.
+	 * <p>
+	 * Params: name, type, value, GUID for each variable
+	 *
+	 * @param tableName the name of the variables table.
+	 * @param rows the amount of variables.
+	 * @return the query.
+	 */
+	static String getWriteQuery(final String tableName, final int rows) {
+		// REPLACE gives each written row a new rowid, which the monitor relies on to find changed variables
+		final StringBuilder query = new StringBuilder("REPLACE INTO " + tableName + " (name, type, value, update_guid) VALUES ");
+		for (int i = 0; i < rows; i++)
+			query.append(i == 0 ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+		return query.toString();
+	}
+
+	/**
+	 * Prints an error if the given variable is too large to be saved properly.
+	 */
+	private static void checkSize(final String name, final @Nullable byte[] value) {
+		// REMIND get the actual maximum size from the database
+		if (name.length() > MAX_VARIABLE_NAME_LENGTH)
+			Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
+		if (value != null && value.length > MAX_VALUE_SIZE)
+			Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+	}
 
 	@Override
 	protected boolean save(final String name, final @Nullable String type, final @Nullable byte[] value) {
 		synchronized (db) {
-			// REMIND get the actual maximum size from the database
-			if (name.length() > MAX_VARIABLE_NAME_LENGTH)
-				Skript.error("The name of the variable {" + name + "} is too long to be saved in a database (length: " + name.length() + ", maximum allowed: " + MAX_VARIABLE_NAME_LENGTH + ")! It will be truncated and won't bet available under the same name again when loaded.");
-			if (value != null && value.length > MAX_VALUE_SIZE)
-				Skript.error("The variable {" + name + "} cannot be saved in the database as its value's size (" + value.length + ") exceeds the maximum allowed size of " + MAX_VALUE_SIZE + "! An attempt to save the variable will be made nonetheless.");
+			checkSize(name, value);
 			try {
 				if (type == null) {
 					assert value == null;
@@ -480,10 +618,107 @@ public abstract class SQLStorage extends VariablesStorage {
 		return true;
 	}
 
+	/**
+	 * Saves the given changes using batches of multi-row statements, and commits them.
+	 */
+	@Override
+	protected void saveBatch(final List<SerializedVariable> changes) {
+		// Only the last change of each variable matters, which also makes the order of the statements irrelevant
+		final Map<String, SerializedVariable> lastChanges = new LinkedHashMap<>();
+		for (final SerializedVariable change : changes) {
+			final SerializedVariable.Value value = change.value;
+			checkSize(change.name, value == null ? null : value.data);
+			lastChanges.put(change.name, change);
+		}
+
+		synchronized (db) {
+			final Database db = this.db.get();
+			final PreparedStatement multiRowWriteQuery = this.multiRowWriteQuery, writeQuery = this.writeQuery, deleteQuery = this.deleteQuery;
+			assert db != null && multiRowWriteQuery != null && writeQuery != null && deleteQuery != null;
+			try {
+				writeBatch(multiRowWriteQuery, writeQuery, deleteQuery, lastChanges.values(), guid);
+				db.getConnection().commit();
+			} catch (final SQLException e) {
+				sqlException(e);
+			}
+		}
+
+		// The changed groups may be evicted now, even if saving failed, as they would never be evicted otherwise
+		final LazyVariables lazyVariables = this.lazyVariables;
+		if (lazyVariables != null) {
+			for (final SerializedVariable change : changes)
+				lazyVariables.saved(change.name);
+		}
+	}
+
+	/**
+	 * Writes the given changes, each of which must be for a different variable.
+	 *
+	 * @param multiRowWriteQuery the statement that writes {@value #ROWS_PER_STATEMENT} variables,
+	 * see {@link #getWriteQuery(String, int)}.
+	 * @param writeQuery the statement that writes a single variable.
+	 * @param deleteQuery the statement that deletes a variable by its name.
+	 * @param changes the changes.
+	 * @param guid the GUID of this server.
+	 * @throws SQLException if the changes couldn't be written.
+	 */
+	static void writeBatch(final PreparedStatement multiRowWriteQuery, final PreparedStatement writeQuery, final PreparedStatement deleteQuery,
+						   final Collection<SerializedVariable> changes, final String guid) throws SQLException {
+		final List<SerializedVariable> writes = new ArrayList<>(changes.size());
+		boolean deletes = false;
+		for (final SerializedVariable change : changes) {
+			if (change.value == null) {
+				deleteQuery.setString(1, change.name);
+				deleteQuery.addBatch();
+				deletes = true;
+			} else {
+				writes.add(change);
+			}
+		}
+
+		// Write as many variables as possible with the multi-row statement, and the remaining ones separately
+		int written = 0;
+		while (writes.size() - written >= ROWS_PER_STATEMENT) {
+			int i = 1;
+			for (final SerializedVariable write : writes.subList(written, written + ROWS_PER_STATEMENT))
+				i = setWriteParameters(multiRowWriteQuery, i, write, guid);
+			multiRowWriteQuery.addBatch();
+			written += ROWS_PER_STATEMENT;
+		}
+		if (written > 0)
+			multiRowWriteQuery.executeBatch();
+
+		for (final SerializedVariable write : writes.subList(written, writes.size())) {
+			setWriteParameters(writeQuery, 1, write, guid);
+			writeQuery.addBatch();
+		}
+		if (written < writes.size())
+			writeQuery.executeBatch();
+
+		if (deletes)
+			deleteQuery.executeBatch();
+	}
+
+	/**
+	 * Sets the parameters of a write query for the given variable, starting at the given index.
+	 *
+	 * @return the index of the next parameter.
+	 */
+	private static int setWriteParameters(final PreparedStatement query, int i, final SerializedVariable write, final String guid) throws SQLException {
+		final SerializedVariable.Value value = write.value;
+		assert value != null;
+		query.setString(i++, write.name);
+		query.setString(i++, value.type);
+		query.setBytes(i++, value.data); // SQLite desn't support setBlob
+		query.setString(i++, guid);
+		return i;
+	}
+
 	@Override
 	public void close() {
+		// Wait for the write thread outside of the lock, as it needs the lock to save the remaining changes
+		super.close();
 		synchronized (db) {
-			super.close();
 			final Database db = this.db.get();
 			if (db != null) {
 				try {
@@ -583,24 +818,19 @@ public abstract class SQLStorage extends VariablesStorage {
 						final String type = r.getString(i++);
 						final byte[] value = r.getBytes(i++); // Blob not supported by SQLite
 						lastRowID = r.getLong(i++);
+						// Lazily loaded variables are fetched when their group is used
+						final LazyVariables lazyVariables = SQLStorage.this.lazyVariables;
+						if (lazyVariables != null && !lazyVariables.isResident(name))
+							continue;
 						if (value == null) {
 							Variables.variableLoaded(name, null, SQLStorage.this);
 						} else {
-							final ClassInfo<?> c = Classes.getClassInfoNoError(type);
-							@SuppressWarnings("unused")
-							Serializer<?> s;
-							if (c == null || (s = c.getSerializer()) == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
-								continue;
-							}
 //					if (s.mustSyncDeserialization()) {
 //						syncDeserializing.add(new VariableInfo(name, value, c));
 //					} else {
-							final Object d = Classes.deserialize(c, value);
-							if (d == null) {
-								Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
+							final Object d = deserialize(name, type, value);
+							if (d == null)
 								continue;
-							}
 							Variables.variableLoaded(name, d, SQLStorage.this);
 //					}
 						}
@@ -637,6 +867,63 @@ public abstract class SQLStorage extends VariablesStorage {
 //		}
 	}
 
+	/**
+	 * Deserializes a variable loaded from the database, printing an error if that isn't possible.
+	 * <p>
+	 * Must be called on Bukkit's main thread.
+	 *
+	 * @return the value of the variable, or {@code null} if it couldn't be deserialized.
+	 */
+	@Nullable
+	Object deserialize(final String name, final @Nullable String type, final byte[] value) {
+		final ClassInfo<?> c = Classes.getClassInfoNoError(type);
+		if (c == null || c.getSerializer() == null) {
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because the type '" + type + "' cannot be recognised or cannot be stored in variables");
+			return null;
+		}
+		final Object d = Classes.deserialize(c, value);
+		if (d == null)
+			Skript.error("Cannot load the variable {" + name + "} from the database '" + databaseName + "', because it cannot be loaded as " + c.getName().withIndefiniteArticle());
+		return d;
+	}
+
+	/**
+	 * Fetches the variables of a group of {@link #lazyVariables} from the database.
+	 * Deleted variables are not included.
+	 *
+	 * @param group the group.
+	 * @return the variables, or {@code null} if they couldn't be fetched.
+	 */
+	@Nullable
+	List<SerializedVariable> fetchGroup(final String group) {
+		synchronized (db) {
+			if (closed || db.get() == null)
+				return null;
+			final PreparedStatement groupQuery = this.groupQuery;
+			assert groupQuery != null;
+			try {
+				groupQuery.setString(1, group);
+				groupQuery.setString(2, group + Variable.SEPARATOR);
+				groupQuery.setString(3, group + ":;");
+				final List<SerializedVariable> variables = new ArrayList<>();
+				try (ResultSet r = groupQuery.executeQuery()) {
+					while (r.next()) {
+						final String name = r.getString(1);
+						final String type = r.getString(2);
+						final byte[] value = r.getBytes(3); // Blob not supported by SQLite
+						if (name == null || type == null || value == null)
+							continue;
+						variables.add(new SerializedVariable(name, new SerializedVariable.Value(type, value)));
+					}
+				}
+				return variables;
+			} catch (final SQLException e) {
+				sqlException(e);
+				return null;
+			}
+		}
+	}
+
 //	private final static class OldVariableInfo {
 //		final String name;
 //		final String value;
@@ -22,6 +22,7 @@ import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
 import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.classes.ClassInfo;
+import ch.njol.skript.classes.Cloner;
 import ch.njol.skript.classes.ConfigurationSerializer;
 import ch.njol.skript.config.Config;
 import ch.njol.skript.config.Node;
@@ -40,6 +41,7 @@ import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.comparator.Comparators;
 import org.skriptlang.skript.lang.converter.Converters;
 
 import com.google.common.collect.HashMultimap;
@@ -48,6 +50,7 @@ import com.google.common.collect.Multimap;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -56,12 +59,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Pattern;
@@ -89,6 +95,14 @@ public class Variables {
 	 */
 	public static boolean caseInsensitiveVariables = true;
 
+	/**
+	 * The names of the list variables that keep a reverse index of their values,
+	 * lower case and without braces, e.g. {@code online::*}.
+	 *
+	 * @see SkriptConfig#indexedListVariables
+	 */
+	public static Set<String> indexedListVariables = Collections.emptySet();
+
 	/**
 	 * The {@link ch.njol.yggdrasil.ClassResolver#getID(Class) ID} prefix
 	 * for {@link ConfigurationSerializable} classes.
@@ -100,8 +114,10 @@ public class Variables {
 	// Register some things with Yggdrasil
 	static {
 		registerStorage(FlatFileStorage.class, "csv", "file", "flatfile");
+		registerStorage(BinaryStorage.class, "binary");
 		registerStorage(SQLiteStorage.class, "sqlite");
 		registerStorage(MySQLStorage.class, "mysql");
+		LocalVariableLayout.registerData();
 		yggdrasil.registerSingleClass(Kleenean.class, "Kleenean");
 		// Register ConfigurationSerializable, Bukkit's serialization system
 		yggdrasil.registerClassResolver(new ConfigurationSerializer<ConfigurationSerializable>() {
@@ -168,8 +184,8 @@ public class Variables {
 	 * @return whether the loading was successful.
 	 */
 	public static boolean load() {
-		assert variables.treeMap.isEmpty();
-		assert variables.hashMap.isEmpty();
+		for (Stripe stripe : stripes)
+			assert stripe.variables.size() == 0;
 		assert STORAGES.isEmpty();
 
 		Config config = SkriptConfig.getConfig();
@@ -315,59 +331,133 @@ public class Variables {
 	/**
 	 * Splits the given variable name into its parts,
 	 * separated by {@link Variable#SEPARATOR}.
+	 * Empty parts are kept, e.g. {@code list::} is split into {@code list} and an empty index.
 	 *
 	 * @param name the variable name.
 	 * @return the parts.
 	 */
 	public static String[] splitVariableName(String name) {
-		return VARIABLE_NAME_SPLIT_PATTERN.split(name);
+		return VARIABLE_NAME_SPLIT_PATTERN.split(name, -1);
 	}
 
 	/**
-	 * A lock for reading and writing variables.
+	 * The amount of stripes the global variables are partitioned into, a power of two.
 	 */
-	static final ReadWriteLock variablesLock = new ReentrantReadWriteLock(true);
+	private static final int STRIPE_COUNT = 16;
 
 	/**
-	 * The {@link VariablesMap} storing global variables,
-	 * must be locked with {@link #variablesLock}.
+	 * A part of the global variables with its own lock, so that changes to unrelated variables don't contend.
+	 * Variables are assigned to a stripe by their top-level name, see {@link #getStripe(String)},
+	 * so a list variable and all of its indices are always in the same stripe.
 	 */
-	static final VariablesMap variables = new VariablesMap();
+	static final class Stripe {
+
+		/**
+		 * A lock for reading and writing the variables of this stripe.
+		 */
+		final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+		/**
+		 * The {@link VariablesMap} storing the variables of this stripe,
+		 * must be locked with {@link #lock}.
+		 */
+		final VariablesMap variables = new VariablesMap(true);
+
+		/**
+		 * Changes to variables of this stripe that have not yet been performed.
+		 */
+		final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Processes all entries in the change queue of this stripe.
+		 * <p>
+		 * Note that caller must acquire the write lock of this stripe before calling this,
+		 * then release it.
+		 */
+		void processChangeQueue() {
+			while (true) { // Run as long as we still have changes
+				VariableChange change = changeQueue.poll();
+				if (change == null)
+					break;
+
+				// Set and save variable
+				variables.setVariable(change.name, change.value);
+				saveVariableChange(change.name, change.value);
+
+				// Only remove the pending change if it hasn't been superseded by a newer one
+				pendingChanges.remove(change.name, change);
+			}
+		}
+
+	}
 
 	/**
-	 * A map storing all local variables,
-	 * indexed by their {@link Event}.
+	 * The stripes storing the global variables.
+	 * Operations involving multiple stripes must lock them in this order.
 	 */
-	private static final Map<Event, VariablesMap> localVariables = new ConcurrentHashMap<>();
+	private static final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	static {
+		for (int i = 0; i < STRIPE_COUNT; i++)
+			stripes[i] = new Stripe();
+	}
 
 	/**
-	 * Gets the {@link TreeMap} of all global variables.
-	 * <p>
-	 * Remember to lock with {@link #getReadLock()} and to not make any changes!
+	 * Gets the stripe of the given global variable, determined by the part of its name before the first
+	 * {@link Variable#SEPARATOR}, e.g. {@code playerdata} for {@code playerdata::<uuid>::kills}.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @return the stripe of the variable.
 	 */
-	static TreeMap<String, Object> getVariables() {
-		return variables.treeMap;
+	static Stripe getStripe(String name) {
+		int end = name.indexOf(Variable.SEPARATOR);
+		if (end < 0)
+			end = name.length();
+		int hash = 0;
+		for (int i = 0; i < end; i++)
+			hash = 31 * hash + name.charAt(i);
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1)];
 	}
 
 	/**
-	 * Gets the {@link Map} of all global variables.
-	 * <p>
-	 * This map cannot be modified.
-	 * Remember to lock with {@link #getReadLock()}!
+	 * Acquires the write locks of all stripes, in order.
+	 * Must be released with {@link #unlockAllStripes()}.
 	 */
-	static Map<String, Object> getVariablesHashMap() {
-		return Collections.unmodifiableMap(variables.hashMap);
+	static void lockAllStripes() {
+		for (Stripe stripe : stripes)
+			stripe.lock.writeLock().lock();
 	}
 
 	/**
-	 * Gets the lock for reading variables.
-	 *
-	 * @return the lock.
+	 * Releases the write locks of all stripes, in reverse order.
+	 */
+	static void unlockAllStripes() {
+		for (int i = STRIPE_COUNT - 1; i >= 0; i--)
+			stripes[i].lock.writeLock().unlock();
+	}
+
+	/**
+	 * A map storing all local variables,
+	 * indexed by their {@link Event}.
+	 */
+	private static final Map<Event, VariablesMap> localVariables = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a snapshot of all global variables.
+	 * The caller must hold the locks of all stripes, see {@link #lockAllStripes()},
+	 * so that the snapshot is consistent across stripes.
+	 * <p>
+	 * As {@link VariablesMap#copy()} takes constant time, the locks only need to be held very briefly.
+	 * The snapshot is not affected by later changes, and can be read without holding any lock,
+	 * but must not be modified.
 	 *
-	 * @see #variablesLock
+	 * @return a copy of the variables of each stripe.
 	 */
-	static Lock getReadLock() {
-		return variablesLock.readLock();
+	static VariablesMap[] getVariablesSnapshot() {
+		VariablesMap[] snapshot = new VariablesMap[STRIPE_COUNT];
+		for (int i = 0; i < STRIPE_COUNT; i++)
+			snapshot[i] = stripes[i].variables.copy();
+		return snapshot;
 	}
 
 	/**
@@ -451,29 +541,102 @@ public class Variables {
 			return map.getVariable(n);
 		} else {
 			// Prevent race conditions from returning variables with incorrect values
-			if (!changeQueue.isEmpty()) {
-				// Gets the last VariableChange made
-				VariableChange variableChange = changeQueue.stream()
-						.filter(change -> change.name.equals(n))
-						.reduce((first, second) -> second)
-								// Gets last value, as iteration is from head to tail,
-								//  and adding occurs at the tail (and we want the most recently added)
-						.orElse(null);
-
-				if (variableChange != null) {
-					return variableChange.value;
-				}
+			VariableChange variableChange = pendingChanges.get(n);
+			if (variableChange != null)
+				return variableChange.value;
+
+			if (hasLazyVariables) {
+				LazyVariables lazyVariables = getLazyVariables(n);
+				if (lazyVariables != null)
+					return lazyVariables.getVariable(n);
 			}
 
+			Stripe stripe = getStripe(n);
 			try {
-				variablesLock.readLock().lock();
-				return variables.getVariable(n);
+				stripe.lock.readLock().lock();
+				return stripe.variables.getVariable(n);
 			} finally {
-				variablesLock.readLock().unlock();
+				stripe.lock.readLock().unlock();
 			}
 		}
 	}
 
+	/**
+	 * Finds the lowest numerical index, starting from {@code start},
+	 * that is not used in the given list variable.
+	 * <p>
+	 * Lists obtained from {@link #getVariable(String, Event, boolean)} remember
+	 * which indices are known to be in use, making repeated calls amortized constant time.
+	 *
+	 * @param list the internal value of a list variable.
+	 * @param start the lowest index to consider.
+	 * @return the lowest free index that is at least {@code start}.
+	 */
+	public static int getNextFreeListIndex(Map<String, Object> list, int start) {
+		if (list instanceof VariablesMap.ListTreeMap)
+			return ((VariablesMap.ListTreeMap) list).nextFreeIndex(start);
+
+		int i = start;
+		while (list.containsKey(Integer.toString(i)))
+			i++;
+		return i;
+	}
+
+	/**
+	 * Finds the indices of the given list variable whose values are equal to the given value,
+	 * as determined by {@link Comparators#compare(Object, Object)} with the list value first.
+	 * Indices holding a nested list never match.
+	 * <p>
+	 * This only succeeds for lists that keep a reverse index of their values,
+	 * see {@link #indexedListVariables}, and only if that index can be used for the given value.
+	 * Otherwise, the caller has to compare the values of the list themselves.
+	 *
+	 * @param list the internal value of a list variable.
+	 * @param value the value to look up.
+	 * @return the matching indices in list order, or {@code null} if they can't be looked up.
+	 */
+	@Nullable
+	public static List<String> getListIndicesOf(Map<String, Object> list, Object value) {
+		if (list instanceof VariablesMap.ListTreeMap)
+			return ((VariablesMap.ListTreeMap) list).indicesOf(value);
+		return null;
+	}
+
+	/**
+	 * Checks whether the given list variable keeps a reverse index of its values which {@link #listContains(Map, Object)} can use,
+	 * i.e. whether it is named in {@link #indexedListVariables} and has no nested lists.
+	 *
+	 * @param list the internal value of a list variable.
+	 * @return whether values may be looked up in the list using its index.
+	 */
+	public static boolean isIndexedList(Map<String, Object> list) {
+		if (!(list instanceof VariablesMap.ListTreeMap))
+			return false;
+		VariablesMap.ListTreeMap listTreeMap = (VariablesMap.ListTreeMap) list;
+		// the values of a list include the values of its nested lists, which aren't indexed
+		return listTreeMap.hasValueIndex() && !listTreeMap.hasIndexedNestedLists();
+	}
+
+	/**
+	 * Checks whether any value of the given list variable, as returned by {@link Variable#getAll(Event)},
+	 * is equal to the given value, using the reverse index of the list.
+	 *
+	 * @param list the internal value of a list variable.
+	 * @param value the value to look up.
+	 * @return whether the list contains the value,
+	 * or {@link Kleenean#UNKNOWN} if this can't be determined using the index of the list.
+	 * @see #isIndexedList(Map)
+	 * @see #getListIndicesOf(Map, Object)
+	 */
+	public static Kleenean listContains(Map<String, Object> list, Object value) {
+		if (!isIndexedList(list))
+			return Kleenean.UNKNOWN;
+		List<String> indices = ((VariablesMap.ListTreeMap) list).indicesOf(value);
+		if (indices == null)
+			return Kleenean.UNKNOWN;
+		return Kleenean.get(!indices.isEmpty());
+	}
+
 	/**
 	 * Deletes a variable.
 	 *
@@ -506,14 +669,7 @@ public class Variables {
 		// Check if conversion is needed due to ClassInfo#getSerializeAs
 		if (value != null) {
 			assert !name.endsWith("::*");
-
-			ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
-			Class<?> sas = ci.getSerializeAs();
-
-			if (sas != null) {
-				value = Converters.convert(value, sas);
-				assert value != null : ci + ", " + sas;
-			}
+			value = convertToSerializable(value);
 		}
 
 		if (local) {
@@ -527,6 +683,63 @@ public class Variables {
 		}
 	}
 
+	/**
+	 * Converts the given value if its class is serialized as another class.
+	 *
+	 * @see ClassInfo#getSerializeAs()
+	 */
+	private static Object convertToSerializable(Object value) {
+		ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
+		Class<?> sas = ci.getSerializeAs();
+
+		if (sas != null) {
+			value = Converters.convert(value, sas);
+			assert value != null : ci + ", " + sas;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the internal value of the local variable in the given slot.
+	 * This is equivalent to {@link #getVariable(String, Event, boolean)}, but doesn't need to look up the name.
+	 *
+	 * @param layout the layout of the structure the variable was parsed in.
+	 * @param slot the slot of the variable in the layout.
+	 * @param name the variable's name as returned by {@link LocalVariableLayout#normalize(String)},
+	 *                used if the event's local variables use a different layout.
+	 * @param event the event the local variable resides in.
+	 * @return the value of the variable, or {@code null} if the variable is not set.
+	 * @see LocalVariableLayout
+	 */
+	@Nullable
+	public static Object getLocalVariable(LocalVariableLayout layout, int slot, String name, Event event) {
+		VariablesMap map = localVariables.get(event);
+		if (map == null)
+			return null;
+
+		return map.getVariable(layout, slot, name);
+	}
+
+	/**
+	 * Sets the local variable in the given slot.
+	 * This is equivalent to {@link #setVariable(String, Object, Event, boolean)}, but doesn't need to look up the name.
+	 *
+	 * @param layout the layout of the structure the variable was parsed in.
+	 * @param slot the slot of the variable in the layout.
+	 * @param name the variable's name as returned by {@link LocalVariableLayout#normalize(String)},
+	 *                used if the event's local variables use a different layout.
+	 * @param value the variable's value. Use {@code null} to delete the variable.
+	 * @param event the event the local variable resides in.
+	 * @see LocalVariableLayout
+	 */
+	public static void setLocalVariable(LocalVariableLayout layout, int slot, String name, @Nullable Object value, Event event) {
+		if (value != null)
+			value = convertToSerializable(value);
+
+		VariablesMap map = localVariables.computeIfAbsent(event, e -> new VariablesMap());
+		map.setVariable(layout, slot, name, value);
+	}
+
 	/**
 	 * Sets the given global variable name to the given value.
 	 *
@@ -534,28 +747,121 @@ public class Variables {
 	 * @param value the value, or {@code null} to delete the variable.
 	 */
 	static void setVariable(String name, @Nullable Object value) {
-		boolean gotLock = variablesLock.writeLock().tryLock();
+		if (hasLazyVariables)
+			loadLazyVariable(name, true);
+
+		Stripe stripe = getStripe(name);
+		boolean gotLock = stripe.lock.writeLock().tryLock();
 		if (gotLock) {
 			try {
 				// Set the variable
-				variables.setVariable(name, value);
+				stripe.variables.setVariable(name, value);
 				// ..., save the variable change
 				saveVariableChange(name, value);
 				// ..., and process all previously queued changes
-				processChangeQueue();
+				stripe.processChangeQueue();
 			} finally {
-				variablesLock.writeLock().unlock();
+				stripe.lock.writeLock().unlock();
 			}
 		} else {
 			// Couldn't acquire variable write lock, queue the change (blocking here is a bad idea)
-			queueVariableChange(name, value);
+			queueVariableChange(stripe, name, value);
+		}
+	}
+
+	/**
+	 * Whether any storage loads some of its variables lazily, see {@link LazyVariables}.
+	 */
+	private static volatile boolean hasLazyVariables = false;
+
+	/**
+	 * The maximum amount of entries in {@link #lazyPrefixes}.
+	 * Names without a separator may all be different, these aren't cached once it is full.
+	 */
+	private static final int MAX_LAZY_PREFIXES = 10_000;
+
+	/**
+	 * Whether variables may be loaded lazily, indexed by the part of their name before the first {@link Variable#SEPARATOR}.
+	 * Lets {@link #getLazyVariables(String)} skip matching names against the patterns of all storages for other variables.
+	 */
+	private static final Map<String, Boolean> lazyPrefixes = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the lazily loaded variables of the storage the given global variable belongs to.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @return the lazily loaded variables of the storage,
+	 * or {@code null} if the storage loads all of its variables when the server starts.
+	 */
+	@Nullable
+	private static LazyVariables getLazyVariables(String name) {
+		int end = name.indexOf(Variable.SEPARATOR);
+		String prefix = end < 0 ? name : name.substring(0, end);
+		Boolean mayBeLazy = lazyPrefixes.get(prefix);
+		if (mayBeLazy == null) {
+			mayBeLazy = false;
+			for (VariablesStorage variablesStorage : STORAGES) {
+				LazyVariables lazyVariables = variablesStorage instanceof SQLStorage ? ((SQLStorage) variablesStorage).lazyVariables : null;
+				if (lazyVariables != null && lazyVariables.mayHaveGroup(prefix)) {
+					mayBeLazy = true;
+					break;
+				}
+			}
+			if (lazyPrefixes.size() < MAX_LAZY_PREFIXES)
+				lazyPrefixes.put(prefix, mayBeLazy);
 		}
+		if (!mayBeLazy)
+			return null;
+
+		// Variables are saved to the first storage accepting them, see saveThread
+		for (VariablesStorage variablesStorage : STORAGES) {
+			if (variablesStorage.accept(name))
+				return variablesStorage instanceof SQLStorage ? ((SQLStorage) variablesStorage).lazyVariables : null;
+		}
+		return null;
+	}
+
+	/**
+	 * Makes sure that the given global variable is in memory if it's loaded lazily,
+	 * blocking until it has been fetched from its storage.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 * @param changed whether the variable is about to be changed.
+	 */
+	private static void loadLazyVariable(String name, boolean changed) {
+		LazyVariables lazyVariables = getLazyVariables(name);
+		if (lazyVariables != null)
+			lazyVariables.load(name, changed);
+	}
+
+	/**
+	 * Fetches the given global variable from its storage in the background if it's loaded lazily
+	 * and not in memory yet, so that it won't have to be fetched once it's used.
+	 * <p>
+	 * For a lazily loaded variable, this fetches all variables in the same group,
+	 * e.g. {@code playerdata::<uuid>::*} when using the lazy pattern {@code playerdata::[^:]+}.
+	 *
+	 * @param name the variable name, possibly a list variable.
+	 */
+	public static void prefetchVariable(String name) {
+		if (!hasLazyVariables)
+			return;
+		if (caseInsensitiveVariables)
+			name = name.toLowerCase(Locale.ENGLISH);
+
+		LazyVariables lazyVariables = getLazyVariables(name);
+		if (lazyVariables != null)
+			lazyVariables.prefetch(name);
 	}
 
 	/**
-	 * Changes to variables that have not yet been performed.
+	 * The most recent not yet performed change of each variable in the {@link Stripe#changeQueue change queues},
+	 * indexed by variable name. Used to look up pending values without iterating the queue.
+	 * <p>
+	 * An entry is only removed once the exact {@link VariableChange} it holds has been processed,
+	 * so newer changes queued in the meantime remain visible.
 	 */
-	static final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+	private static final Map<String, VariableChange> pendingChanges = new ConcurrentHashMap<>();
 
 	/**
 	 * A variable change name-value pair.
@@ -590,28 +896,29 @@ public class Variables {
 	 * Queues a variable change. Only to be called when direct write is not
 	 * possible, but thread cannot be allowed to block.
 	 *
+	 * @param stripe the stripe of the variable.
 	 * @param name the variable name.
 	 * @param value the new value.
 	 */
-	private static void queueVariableChange(String name, @Nullable Object value) {
-		changeQueue.add(new VariableChange(name, value));
+	private static void queueVariableChange(Stripe stripe, String name, @Nullable Object value) {
+		VariableChange change = new VariableChange(name, value);
+		// Must be visible in the pending changes before it can be processed from the queue
+		pendingChanges.put(name, change);
+		stripe.changeQueue.add(change);
 	}
 
 	/**
-	 * Processes all entries in variable change queue.
-	 * <p>
-	 * Note that caller must acquire write lock before calling this,
-	 * then release it.
-	 */
-	static void processChangeQueue() {
-		while (true) { // Run as long as we still have changes
-			VariableChange change = changeQueue.poll();
-			if (change == null)
-				break;
-
-			// Set and save variable
-			variables.setVariable(change.name, change.value);
-			saveVariableChange(change.name, change.value);
+	 * Processes the queued changes of all stripes whose write lock can be acquired without waiting.
+	 */
+	static void tryProcessChangeQueues() {
+		for (Stripe stripe : stripes) {
+			if (stripe.changeQueue.isEmpty() || !stripe.lock.writeLock().tryLock())
+				continue;
+			try {
+				stripe.processChangeQueue();
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
 		}
 	}
 
@@ -699,11 +1006,12 @@ public class Variables {
 			}
 		}
 
-		variablesLock.writeLock().lock();
+		Stripe stripe = getStripe(name);
+		stripe.lock.writeLock().lock();
 		try {
-			variables.setVariable(name, value);
+			stripe.variables.setVariable(name, value);
 		} finally {
-			variablesLock.writeLock().unlock();
+			stripe.lock.writeLock().unlock();
 		}
 
 		// Move the variable to the right storage
@@ -753,7 +1061,7 @@ public class Variables {
 			TEMP_VARIABLES.set(null);
 			assert tvs != null;
 
-			variablesLock.writeLock().lock();
+			lockAllStripes();
 			try {
 				// Calculate the amount of variables that don't have a storage
 				int unstoredVariables = 0;
@@ -762,14 +1070,17 @@ public class Variables {
 						unstoredVariables++;
 				}
 
-				for (VariablesStorage variablesStorage : STORAGES)
+				for (VariablesStorage variablesStorage : STORAGES) {
 					variablesStorage.allLoaded();
+					if (variablesStorage instanceof SQLStorage && ((SQLStorage) variablesStorage).lazyVariables != null)
+						hasLazyVariables = true;
+				}
 
 				Skript.debug("Variables set. Queue size = " + saveQueue.size());
 
 				return unstoredVariables;
 			} finally {
-				variablesLock.writeLock().unlock();
+				unlockAllStripes();
 			}
 		}
 	}
@@ -814,19 +1125,70 @@ public class Variables {
 
 	/**
 	 * Serializes and adds the variable change to the {@link #saveQueue}.
+	 * <p>
+	 * If the class of the value has a {@link ClassInfo#getSnapshot() snapshot},
+	 * only the snapshot is taken here, and it is serialized by the {@link #serializationExecutor}.
 	 *
 	 * @param name the variable name.
 	 * @param value the value of the variable.
 	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
 	private static void saveVariableChange(String name, @Nullable Object value) {
-		saveQueue.add(serialize(name, value));
+		Cloner snapshot = value == null ? null : Classes.getSuperClassInfo(value.getClass()).getSnapshot();
+		if (snapshot == null) {
+			SerializedVariable variable;
+			try {
+				variable = serialize(name, value);
+			} catch (RuntimeException e) {
+				discardVariableChange(name);
+				throw e;
+			}
+			saveQueue.add(CompletableFuture.completedFuture(variable));
+			return;
+		}
+
+		// The value may change after this method returns, so it has to be copied now
+		Object snapshotValue = snapshot.clone(value);
+		saveQueue.add(CompletableFuture.supplyAsync(() -> {
+			try {
+				return new SerializedVariable(name, Classes.serialize(snapshotValue));
+			} catch (Exception e) {
+				Skript.exception(e, "Error saving variable named " + name);
+				discardVariableChange(name);
+				return null;
+			}
+		}, serializationExecutor));
+	}
+
+	/**
+	 * Called instead of saving a variable change that could not be serialized.
+	 * No storage will see the change, so this releases the lazily loaded group of the variable,
+	 * which is otherwise released once the change has been saved, see {@link LazyVariables#saved(String)}.
+	 *
+	 * @param name the variable name.
+	 */
+	private static void discardVariableChange(String name) {
+		LazyVariables lazyVariables = getLazyVariables(name);
+		if (lazyVariables != null)
+			lazyVariables.saved(name);
 	}
 
 	/**
-	 * The queue of serialized variables that have not yet been written
-	 * to the storage.
+	 * The threads serializing the snapshots of changed variables, see {@link #saveVariableChange(String, Object)}.
 	 */
-	static final BlockingQueue<SerializedVariable> saveQueue = new LinkedBlockingQueue<>();
+	private static final ExecutorService serializationExecutor = Executors.newFixedThreadPool(
+		Math.max(1, Runtime.getRuntime().availableProcessors() / 2), runnable -> {
+			Thread thread = Skript.newThread(runnable, "Skript variable serialization thread");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+	/**
+	 * The queue of variables that have not yet been written to the storage,
+	 * in the order they were changed. Some of them may still be serialized,
+	 * the ones that couldn't be serialized complete with {@code null}.
+	 */
+	static final BlockingQueue<CompletableFuture<@Nullable SerializedVariable>> saveQueue = new LinkedBlockingQueue<>();
 
 	/**
 	 * Whether the {@link #saveThread} should be stopped.
@@ -839,8 +1201,10 @@ public class Variables {
 	private static final Thread saveThread = Skript.newThread(() -> {
 		while (!closed) {
 			try {
-				// Save one variable change
-				SerializedVariable variable = saveQueue.take();
+				// Save one variable change, waiting for it to be serialized to keep the changes in order
+				SerializedVariable variable = saveQueue.take().join();
+				if (variable == null)
+					continue; // the error has been printed when serializing the variable
 
 				for (VariablesStorage variablesStorage : STORAGES) {
 					if (variablesStorage.accept(variable.name)) {
@@ -856,28 +1220,68 @@ public class Variables {
 	/**
 	 * Closes the variable systems:
 	 * <ul>
-	 *     <li>Process all changes left in the {@link #changeQueue}.</li>
-	 *     <li>Stops the {@link #saveThread}.</li>
+	 *     <li>Process all changes left in the {@link Stripe#changeQueue change queues}.</li>
+	 *     <li>Stops the {@link #saveThread} and the {@link #serializationExecutor}.</li>
 	 * </ul>
 	 */
 	public static void close() {
-		try { // Ensure that all changes are to save soon
-			variablesLock.writeLock().lock();
-			processChangeQueue();
-		} finally {
-			variablesLock.writeLock().unlock();
+		for (Stripe stripe : stripes) {
+			try { // Ensure that all changes are to save soon
+				stripe.lock.writeLock().lock();
+				stripe.processChangeQueue();
+			} finally {
+				stripe.lock.writeLock().unlock();
+			}
 		}
 
-		// First, make sure all variables are saved
-		while (saveQueue.size() > 0) {
+		// First make sure all variables are saved, then we can safely interrupt and stop the thread
+		stopThread(saveThread, saveQueue, () -> closed = true, "the variable save thread");
+		serializationExecutor.shutdown();
+	}
+
+	/**
+	 * The maximum time in milliseconds to wait for a thread to save all variable changes when closing,
+	 * see {@link #stopThread(Thread, Collection, Runnable, String)}.
+	 */
+	static final long CLOSE_TIMEOUT = 30_000;
+
+	/**
+	 * Stops a thread that saves variable changes, once it has saved all of them.
+	 * Waits at most for {@link #CLOSE_TIMEOUT} milliseconds in total,
+	 * so that a thread that cannot save anymore doesn't prevent the server from shutting down.
+	 *
+	 * @param thread the thread, which stops once it is closed and interrupted.
+	 * @param queue the changes the thread has yet to take.
+	 * @param close closes the thread, called once the queue is empty or the time is up.
+	 * @param description what the thread saves to, for the warning if not all changes could be saved.
+	 * @return whether all changes were saved in time.
+	 */
+	static boolean stopThread(Thread thread, Collection<?> queue, Runnable close, String description) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT);
+
+		// First, wait for all changes to be taken from the queue
+		while (!queue.isEmpty() && System.nanoTime() - deadline < 0) {
 			try {
 				Thread.sleep(10);
 			} catch (InterruptedException ignored) {}
 		}
 
-		// Then we can safely interrupt and stop the thread
-		closed = true;
-		saveThread.interrupt();
+		// Then wait for the thread to save the changes it has taken from the queue,
+		//  interrupting it again in case the interrupt was swallowed while saving
+		close.run();
+		while (thread.isAlive() && System.nanoTime() - deadline < 0) {
+			thread.interrupt();
+			try {
+				thread.join(100);
+			} catch (InterruptedException ignored) {}
+		}
+
+		if (thread.isAlive() || !queue.isEmpty()) {
+			Skript.warning("Gave up waiting for " + description + " after " + CLOSE_TIMEOUT / 1000 + " seconds, " +
+				"the last " + queue.size() + " or more variable changes may have been lost.");
+			return false;
+		}
+		return true;
 	}
 
 	/**
@@ -886,12 +1290,16 @@ public class Variables {
 	 * @return the amount of variables.
 	 */
 	public static int numVariables() {
-		try {
-			variablesLock.readLock().lock();
-			return variables.hashMap.size();
-		} finally {
-			variablesLock.readLock().unlock();
+		int count = 0;
+		for (Stripe stripe : stripes) {
+			try {
+				stripe.lock.readLock().lock();
+				count += stripe.variables.size();
+			} finally {
+				stripe.lock.readLock().unlock();
+			}
 		}
+		return count;
 	}
 
 }
@@ -0,0 +1,453 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The map of variable names to values of a {@link VariablesMap}, which can be copied in constant time.
+ * <p>
+ * This is a hash array mapped trie: a tree of nodes, each using 5 bits of the hash of a name to pick a child.
+ * Nodes belong to the map that created them and are modified in place by it.
+ * {@link #copy()} makes both maps give up ownership of all existing nodes, which are then shared between them.
+ * A map that modifies a shared node copies it (and the path to it) first, so only modified paths are ever copied.
+ * <p>
+ * Null keys and values are not permitted. The views of this map can't be modified.
+ */
+final class VariablesHashMap extends AbstractMap<String, Object> {
+
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * The nodes created by this map, which it may modify.
+	 */
+	private Object owner = new Object();
+
+	private Node root = new BitmapNode(owner, 0, new Object[0]);
+	private int size;
+
+	/**
+	 * The value replaced or removed by the last modification, {@code null} if there was none.
+	 */
+	@Nullable
+	private Object previous;
+
+	/**
+	 * Creates a copy of this map in constant time.
+	 *
+	 * @return the copy.
+	 */
+	VariablesHashMap copy() {
+		VariablesHashMap copy = new VariablesHashMap();
+		copy.root = root;
+		copy.size = size;
+		// neither map may modify the now shared nodes anymore
+		owner = new Object();
+		return copy;
+	}
+
+	@Override
+	@Nullable
+	public Object get(Object key) {
+		if (!(key instanceof String))
+			return null;
+		return root.get((String) key, hash(key), 0);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	@Nullable
+	public Object put(String key, Object value) {
+		previous = null;
+		root = root.put(this, key, hash(key), 0, value);
+		Object previous = this.previous;
+		this.previous = null;
+		if (previous == null)
+			size++;
+		return previous;
+	}
+
+	@Override
+	@Nullable
+	public Object remove(Object key) {
+		if (!(key instanceof String))
+			return null;
+		previous = null;
+		Node root = this.root.remove(this, (String) key, hash(key), 0);
+		this.root = root != null ? root : new BitmapNode(owner, 0, new Object[0]);
+		Object previous = this.previous;
+		this.previous = null;
+		if (previous != null)
+			size--;
+		return previous;
+	}
+
+	@Override
+	public void clear() {
+		root = new BitmapNode(owner, 0, new Object[0]);
+		size = 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator(root);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	private static int hash(Object key) {
+		int hash = key.hashCode();
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+
+	/**
+	 * Creates a node holding the two given entries, whose names differ.
+	 */
+	private static Node createNode(Object owner, int shift, String key1, Object value1, int hash2, String key2, Object value2) {
+		int hash1 = hash(key1);
+		if (hash1 == hash2)
+			return new CollisionNode(owner, hash1, new Object[] {key1, value1, key2, value2});
+		int bit1 = bit(hash1, shift);
+		int bit2 = bit(hash2, shift);
+		if (bit1 == bit2)
+			return new BitmapNode(owner, bit1, new Object[] {null, createNode(owner, shift + BITS, key1, value1, hash2, key2, value2)});
+		Object[] array = Integer.compareUnsigned(bit1, bit2) < 0 ? new Object[] {key1, value1, key2, value2} : new Object[] {key2, value2, key1, value1};
+		return new BitmapNode(owner, bit1 | bit2, array);
+	}
+
+	/**
+	 * Copies the given array, leaving out the pair at the given index.
+	 */
+	private static Object[] removePair(Object[] array, int index) {
+		Object[] copy = new Object[array.length - 2];
+		System.arraycopy(array, 0, copy, 0, index);
+		System.arraycopy(array, index + 2, copy, index, array.length - index - 2);
+		return copy;
+	}
+
+	private static abstract class Node {
+
+		final Object owner;
+
+		Node(Object owner) {
+			this.owner = owner;
+		}
+
+		/**
+		 * @return the array of this node, holding pairs of names and values,
+		 * or pairs of {@code null} and child nodes.
+		 */
+		abstract Object[] array();
+
+		@Nullable
+		abstract Object get(String key, int hash, int shift);
+
+		/**
+		 * @return this node if it was modified in place, otherwise the node replacing it.
+		 */
+		abstract Node put(VariablesHashMap map, String key, int hash, int shift, Object value);
+
+		/**
+		 * @return this node if it was modified in place, otherwise the node replacing it,
+		 * or {@code null} if the node is now empty.
+		 */
+		@Nullable
+		abstract Node remove(VariablesHashMap map, String key, int hash, int shift);
+
+	}
+
+	/**
+	 * A node whose children are the pairs in its array whose bit in the bitmap is set.
+	 */
+	private static final class BitmapNode extends Node {
+
+		private int bitmap;
+		private Object[] array;
+
+		BitmapNode(Object owner, int bitmap, Object[] array) {
+			super(owner);
+			this.bitmap = bitmap;
+			this.array = array;
+		}
+
+		@Override
+		Object[] array() {
+			return array;
+		}
+
+		private int index(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		@Nullable
+		Object get(String key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return null;
+			int index = index(bit);
+			Object name = array[index];
+			Object value = array[index + 1];
+			if (name == null)
+				return ((Node) value).get(key, hash, shift + BITS);
+			return key.equals(name) ? value : null;
+		}
+
+		@Override
+		Node put(VariablesHashMap map, String key, int hash, int shift, Object value) {
+			int bit = bit(hash, shift);
+			int index = index(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] array = new Object[this.array.length + 2];
+				System.arraycopy(this.array, 0, array, 0, index);
+				array[index] = key;
+				array[index + 1] = value;
+				System.arraycopy(this.array, index, array, index + 2, this.array.length - index);
+				return with(map, bitmap | bit, array);
+			}
+
+			Object name = array[index];
+			Object current = array[index + 1];
+			Object replacement;
+			if (name == null) {
+				replacement = ((Node) current).put(map, key, hash, shift + BITS, value);
+			} else if (key.equals(name)) {
+				map.previous = current;
+				replacement = value;
+			} else {
+				replacement = createNode(map.owner, shift + BITS, (String) name, current, hash, key, value);
+				name = null;
+			}
+			if (replacement == current)
+				return this;
+			return with(map, index, name, replacement);
+		}
+
+		@Override
+		@Nullable
+		Node remove(VariablesHashMap map, String key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			int index = index(bit);
+			Object name = array[index];
+			Object current = array[index + 1];
+			if (name == null) {
+				Node child = ((Node) current).remove(map, key, hash, shift + BITS);
+				if (child == current)
+					return this;
+				if (child != null)
+					return with(map, index, null, child);
+			} else if (key.equals(name)) {
+				map.previous = current;
+			} else {
+				return this;
+			}
+			if (bitmap == bit)
+				return null;
+			return with(map, bitmap & ~bit, removePair(array, index));
+		}
+
+		private Node with(VariablesHashMap map, int bitmap, Object[] array) {
+			if (owner == map.owner) {
+				this.bitmap = bitmap;
+				this.array = array;
+				return this;
+			}
+			return new BitmapNode(map.owner, bitmap, array);
+		}
+
+		private Node with(VariablesHashMap map, int index, @Nullable Object name, Object value) {
+			if (owner == map.owner) {
+				array[index] = name;
+				array[index + 1] = value;
+				return this;
+			}
+			Object[] array = this.array.clone();
+			array[index] = name;
+			array[index + 1] = value;
+			return new BitmapNode(map.owner, bitmap, array);
+		}
+
+	}
+
+	/**
+	 * A node holding the entries whose names have the same hash.
+	 */
+	private static final class CollisionNode extends Node {
+
+		private final int hash;
+		private Object[] array;
+
+		CollisionNode(Object owner, int hash, Object[] array) {
+			super(owner);
+			this.hash = hash;
+			this.array = array;
+		}
+
+		@Override
+		Object[] array() {
+			return array;
+		}
+
+		private int indexOf(String key) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i]))
+					return i;
+			}
+			return -1;
+		}
+
+		@Override
+		@Nullable
+		Object get(String key, int hash, int shift) {
+			if (hash != this.hash)
+				return null;
+			int index = indexOf(key);
+			return index < 0 ? null : array[index + 1];
+		}
+
+		@Override
+		Node put(VariablesHashMap map, String key, int hash, int shift, Object value) {
+			if (hash != this.hash) {
+				// the new entry goes somewhere else, so this node needs a parent
+				return new BitmapNode(map.owner, bit(this.hash, shift), new Object[] {null, this})
+					.put(map, key, hash, shift, value);
+			}
+			int index = indexOf(key);
+			Object[] array;
+			if (index < 0) {
+				array = new Object[this.array.length + 2];
+				System.arraycopy(this.array, 0, array, 0, this.array.length);
+				array[this.array.length] = key;
+				array[this.array.length + 1] = value;
+			} else {
+				map.previous = this.array[index + 1];
+				if (map.previous == value)
+					return this;
+				array = this.array.clone();
+				array[index + 1] = value;
+			}
+			if (owner == map.owner) {
+				this.array = array;
+				return this;
+			}
+			return new CollisionNode(map.owner, hash, array);
+		}
+
+		@Override
+		@Nullable
+		Node remove(VariablesHashMap map, String key, int hash, int shift) {
+			int index = hash == this.hash ? indexOf(key) : -1;
+			if (index < 0)
+				return this;
+			map.previous = array[index + 1];
+			if (array.length == 2)
+				return null;
+			Object[] array = removePair(this.array, index);
+			if (owner == map.owner) {
+				this.array = array;
+				return this;
+			}
+			return new CollisionNode(map.owner, hash, array);
+		}
+
+	}
+
+	/**
+	 * Iterates over the entries of a tree of nodes, depth first.
+	 */
+	private static final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		/**
+		 * The arrays of the nodes on the path to the current entry, with the index of the next pair in each.
+		 * A path has at most one node per 5 bits of the hash, plus a collision node.
+		 */
+		private final Object[][] arrays = new Object[(Integer.SIZE + BITS - 1) / BITS + 2][];
+		private final int[] indices = new int[arrays.length];
+		private int depth;
+
+		@Nullable
+		private Entry<String, Object> next;
+
+		EntryIterator(Node root) {
+			arrays[0] = root.array();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && depth >= 0) {
+				Object[] array = arrays[depth];
+				int index = indices[depth];
+				if (index >= array.length) {
+					depth--;
+					continue;
+				}
+				indices[depth] = index + 2;
+				if (array[index] == null) {
+					depth++;
+					arrays[depth] = ((Node) array[index + 1]).array();
+					indices[depth] = 0;
+				} else {
+					next = new SimpleImmutableEntry<>((String) array[index], array[index + 1]);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry<String, Object> next = this.next;
+			this.next = null;
+			return next;
+		}
+
+	}
+
+}
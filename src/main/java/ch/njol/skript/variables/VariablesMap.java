@@ -18,15 +18,32 @@
  */
 package ch.njol.skript.variables;
 
+import ch.njol.skript.SkriptConfig;
 import ch.njol.skript.lang.Variable;
 import ch.njol.util.StringUtils;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.comparator.Comparators;
+import org.skriptlang.skript.lang.comparator.EqualityIndex;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * A map for storing variables in a sorted and efficient manner.
@@ -139,13 +156,752 @@ final class VariablesMap {
 	};
 
 	/**
-	 * The map that stores all non-list variables.
+	 * A node of the {@link #treeMap}, holding the indices of one list variable.
+	 * <p>
+	 * Instead of a tree of entries, the indices are kept in arrays sorted by {@link #VARIABLE_NAME_COMPARATOR},
+	 * which take far less memory per index. To keep insertions cheap in large lists, these arrays are split into
+	 * chunks of at most {@link #CHUNK_SIZE} consecutive indices. Large lists additionally keep a hash table
+	 * of the chunk of each index, as searching them is much slower than hashing.
+	 * The value of the list variable itself, i.e. of the {@code null} key, is kept separately.
+	 * <p>
+	 * Besides its entries, it keeps track of a hint for the lowest free numerical index,
+	 * so that adding values to the list doesn't need to probe every index from 1 onwards.
+	 * <p>
+	 * Null values are not permitted. The views of this map can't be modified.
+	 */
+	static final class ListTreeMap extends AbstractMap<String, Object> {
+
+		/**
+		 * The maximum amount of indices in a chunk.
+		 */
+		private static final int CHUNK_SIZE = 64;
+
+		/**
+		 * The amount of indices from which on a list has a hash table.
+		 */
+		private static final int MIN_TABLE_SIZE = 2 * CHUNK_SIZE;
+
+		private static final Chunk[] EMPTY_CHUNKS = new Chunk[0];
+		private static final String[] EMPTY_KEYS = new String[0];
+
+		/**
+		 * The value of the {@code null} key.
+		 */
+		@Nullable
+		private Object value;
+
+		/**
+		 * The chunks of indices, in order. Only the first {@link #chunkCount} are used, none of which are empty.
+		 */
+		private Chunk[] chunks = EMPTY_CHUNKS;
+		private int chunkCount;
+
+		/**
+		 * The first index of each chunk, so that finding a chunk doesn't need to access every chunk on the way.
+		 */
+		private String[] firstKeys = EMPTY_KEYS;
+
+		/**
+		 * The amount of indices in all chunks, thus excluding the {@code null} key.
+		 */
+		private int indexCount;
+
+		/**
+		 * The hash table of large lists, using linear probing. Each index is stored at some position
+		 * in {@link #tableKeys}, and the chunk containing it at the same position in {@link #tableChunks}.
+		 */
+		@Nullable
+		private String[] tableKeys;
+		@Nullable
+		private Chunk[] tableChunks;
+
+		/**
+		 * All numerical indices from 1 up to (excluding) this hint are known to be in use.
+		 */
+		private int nextIndexHint = 1;
+
+		/**
+		 * The reverse index of this list, only maintained for lists configured
+		 * in {@link Variables#indexedListVariables}.
+		 */
+		@Nullable
+		private ValueIndex valueIndex;
+
+		/**
+		 * Whether this list may be referenced by multiple variable maps, see {@link VariablesMap#copy()}.
+		 * A shared list must not be modified, modifications happen on a copy from {@link #unsharedCopy()} instead.
+		 */
+		private boolean shared;
+
+		/**
+		 * Creates a modifiable copy of this list.
+		 * The copy is shallow, so its nested lists are shared with this list.
+		 *
+		 * @return the copy.
+		 */
+		ListTreeMap unsharedCopy() {
+			ListTreeMap copy = new ListTreeMap();
+			copy.value = value;
+			copy.chunks = new Chunk[chunkCount];
+			for (int i = 0; i < chunkCount; i++)
+				copy.chunks[i] = chunks[i].copy();
+			copy.firstKeys = Arrays.copyOf(firstKeys, chunkCount);
+			copy.chunkCount = chunkCount;
+			copy.indexCount = indexCount;
+			if (tableKeys != null)
+				copy.buildTable(tableKeys.length);
+			copy.nextIndexHint = nextIndexHint;
+			if (valueIndex != null)
+				copy.valueIndex = valueIndex.copy();
+			markNestedListsShared(copy);
+			return copy;
+		}
+
+		/**
+		 * Finds the lowest numerical index, starting from {@code start},
+		 * that is not used in this list.
+		 *
+		 * @param start the lowest index to consider.
+		 * @return the lowest free index that is at least {@code start}.
+		 */
+		int nextFreeIndex(int start) {
+			if (start > nextIndexHint) {
+				int i = start;
+				while (containsKey(Integer.toString(i)))
+					i++;
+				return i;
+			}
+
+			while (containsKey(Integer.toString(nextIndexHint)))
+				nextIndexHint++;
+			return nextIndexHint;
+		}
+
+		/**
+		 * Starts maintaining a {@link ValueIndex} for this list, which must be empty.
+		 */
+		void enableValueIndex() {
+			assert isEmpty();
+			valueIndex = new ValueIndex(SkriptConfig.caseSensitive.value());
+		}
+
+		/**
+		 * Finds the indices whose values are equal to the given value,
+		 * as determined by {@link Comparators#compare(Object, Object)} with the list value first.
+		 * Indices holding a nested list never match.
+		 *
+		 * @param value the value to look up.
+		 * @return the matching indices in list order, or {@code null} if this list
+		 * has no value index or it can't be used for the given value.
+		 */
+		@Nullable
+		List<String> indicesOf(Object value) {
+			ValueIndex valueIndex = this.valueIndex;
+			if (valueIndex == null)
+				return null;
+			if (valueIndex.caseSensitive != SkriptConfig.caseSensitive.value()) {
+				// string keys depend on the case sensitivity, so they need to be rebuilt
+				valueIndex = new ValueIndex(SkriptConfig.caseSensitive.value());
+				for (int i = 0; i < chunkCount; i++) {
+					Chunk chunk = chunks[i];
+					for (int j = 0; j < chunk.size; j++)
+						valueIndex.add(chunk.keys[j], chunk.values[j]);
+				}
+				this.valueIndex = valueIndex;
+			}
+			return valueIndex.indicesOf(value);
+		}
+
+		/**
+		 * @return whether this list maintains a {@link ValueIndex}.
+		 */
+		boolean hasValueIndex() {
+			return valueIndex != null;
+		}
+
+		/**
+		 * @return whether this list has a value index and any of its indices holds a nested list.
+		 */
+		boolean hasIndexedNestedLists() {
+			ValueIndex valueIndex = this.valueIndex;
+			return valueIndex != null && valueIndex.classes.containsKey(ListTreeMap.class);
+		}
+
+		/**
+		 * @return the index of the only chunk that may contain the given key.
+		 */
+		private int chunkOf(String key) {
+			// the last chunk whose first key isn't greater than the given key
+			int low = 1;
+			int high = chunkCount - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				if (VARIABLE_NAME_COMPARATOR.compare(firstKeys[middle], key) <= 0)
+					low = middle + 1;
+				else
+					high = middle - 1;
+			}
+			return low - 1;
+		}
+
+		@Override
+		@Nullable
+		public Object get(Object key) {
+			if (key == null)
+				return value;
+			if (!(key instanceof String) || chunkCount == 0)
+				return null;
+			String[] tableKeys = this.tableKeys;
+			if (tableKeys != null) {
+				int slot = slotOf(tableKeys, (String) key);
+				Chunk chunk = tableChunks[slot];
+				return chunk == null ? null : chunk.values[chunk.identityIndexOf(tableKeys[slot])];
+			}
+			Chunk chunk = chunks[chunkOf((String) key)];
+			int index = chunk.indexOf((String) key);
+			return index < 0 ? null : chunk.values[index];
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		@Nullable
+		public Object put(String key, Object value) {
+			if (key == null) {
+				Object previous = this.value;
+				this.value = value;
+				return previous;
+			}
+
+			Object previous = null;
+			Chunk chunk = null;
+			int index = -1;
+			if (tableKeys != null) {
+				int slot = slotOf(tableKeys, key);
+				chunk = tableChunks[slot];
+				if (chunk != null)
+					index = chunk.identityIndexOf(tableKeys[slot]);
+			} else if (chunkCount != 0) {
+				chunk = chunks[chunkOf(key)];
+				index = chunk.indexOf(key);
+			}
+
+			if (index >= 0) {
+				previous = chunk.values[index];
+				chunk.values[index] = value;
+				key = chunk.keys[index]; // the index string that is already stored
+			} else {
+				insert(key, value);
+			}
+
+			if (valueIndex != null) {
+				if (previous != null)
+					valueIndex.remove(key, previous);
+				valueIndex.add(key, value);
+			}
+			return previous;
+		}
+
+		/**
+		 * Inserts a new index into the chunk it belongs to, splitting that chunk first if it is full.
+		 */
+		private void insert(String key, Object value) {
+			int chunkIndex = chunkCount == 0 ? 0 : chunkOf(key);
+			Chunk chunk = chunkCount == 0 ? insertChunk(0) : chunks[chunkIndex];
+			int index = chunk.size == 0 ? 0 : -chunk.indexOf(key) - 1;
+			if (chunk.size == CHUNK_SIZE) {
+				if (index == CHUNK_SIZE && chunkIndex == chunkCount - 1) {
+					// appending to the list, so the full chunk can stay that way
+					chunkIndex++;
+					chunk = insertChunk(chunkIndex);
+					index = 0;
+				} else {
+					Chunk upper = insertChunk(chunkIndex + 1);
+					chunk.moveUpperHalf(upper);
+					firstKeys[chunkIndex + 1] = upper.keys[0];
+					if (tableKeys != null) {
+						for (int i = 0; i < upper.size; i++)
+							tableChunks[slotOf(tableKeys, upper.keys[i])] = upper;
+					}
+					if (index > chunk.size) {
+						index -= chunk.size;
+						chunkIndex++;
+						chunk = upper;
+					}
+				}
+			}
+			chunk.insert(index, key, value);
+			if (index == 0)
+				firstKeys[chunkIndex] = key;
+			indexCount++;
+
+			if (tableKeys != null) {
+				if (indexCount * 4 > tableKeys.length * 3) {
+					buildTable(tableKeys.length * 2);
+				} else {
+					int slot = slotOf(tableKeys, key);
+					tableKeys[slot] = key;
+					tableChunks[slot] = chunk;
+				}
+			} else if (indexCount >= MIN_TABLE_SIZE) {
+				buildTable(4 * MIN_TABLE_SIZE);
+			}
+		}
+
+		/**
+		 * Inserts a new empty chunk at the given position.
+		 */
+		private Chunk insertChunk(int chunkIndex) {
+			if (chunkCount == chunks.length) {
+				chunks = Arrays.copyOf(chunks, Math.max(1, chunkCount * 2));
+				firstKeys = Arrays.copyOf(firstKeys, chunks.length);
+			}
+			System.arraycopy(chunks, chunkIndex, chunks, chunkIndex + 1, chunkCount - chunkIndex);
+			System.arraycopy(firstKeys, chunkIndex, firstKeys, chunkIndex + 1, chunkCount - chunkIndex);
+			chunkCount++;
+			return chunks[chunkIndex] = new Chunk();
+		}
+
+		@Override
+		@Nullable
+		public Object remove(Object key) {
+			if (key == null) {
+				Object previous = value;
+				value = null;
+				return previous;
+			}
+			if (!(key instanceof String) || chunkCount == 0)
+				return null;
+
+			int chunkIndex = chunkOf((String) key);
+			Chunk chunk = chunks[chunkIndex];
+			int index = chunk.indexOf((String) key);
+			if (index < 0)
+				return null;
+			String removedKey = chunk.keys[index];
+			Object removed = chunk.values[index];
+			chunk.remove(index);
+			indexCount--;
+			if (chunk.size == 0) {
+				chunkCount--;
+				System.arraycopy(chunks, chunkIndex + 1, chunks, chunkIndex, chunkCount - chunkIndex);
+				System.arraycopy(firstKeys, chunkIndex + 1, firstKeys, chunkIndex, chunkCount - chunkIndex);
+				chunks[chunkCount] = null;
+				firstKeys[chunkCount] = null;
+			} else if (index == 0) {
+				firstKeys[chunkIndex] = chunk.keys[0];
+			}
+
+			if (tableKeys != null) {
+				if (indexCount < MIN_TABLE_SIZE / 2) {
+					tableKeys = null;
+					tableChunks = null;
+				} else if (indexCount * 8 < tableKeys.length) {
+					buildTable(tableKeys.length / 2);
+				} else {
+					removeFromTable(slotOf(tableKeys, removedKey));
+				}
+			}
+
+			int numericalIndex = parseIndex(removedKey);
+			if (numericalIndex > 0 && numericalIndex < nextIndexHint)
+				nextIndexHint = numericalIndex;
+			if (valueIndex != null)
+				valueIndex.remove(removedKey, removed);
+			return removed;
+		}
+
+		@Override
+		public void clear() {
+			value = null;
+			chunks = EMPTY_CHUNKS;
+			firstKeys = EMPTY_KEYS;
+			chunkCount = 0;
+			indexCount = 0;
+			tableKeys = null;
+			tableChunks = null;
+			nextIndexHint = 1;
+			if (valueIndex != null)
+				valueIndex = new ValueIndex(SkriptConfig.caseSensitive.value());
+		}
+
+		/**
+		 * Creates the hash table of all indices in the chunks.
+		 *
+		 * @param capacity the size of the table, a power of two.
+		 */
+		private void buildTable(int capacity) {
+			String[] tableKeys = new String[capacity];
+			Chunk[] tableChunks = new Chunk[capacity];
+			for (int i = 0; i < chunkCount; i++) {
+				Chunk chunk = chunks[i];
+				for (int j = 0; j < chunk.size; j++) {
+					int slot = slotOf(tableKeys, chunk.keys[j]);
+					tableKeys[slot] = chunk.keys[j];
+					tableChunks[slot] = chunk;
+				}
+			}
+			this.tableKeys = tableKeys;
+			this.tableChunks = tableChunks;
+		}
+
+		/**
+		 * @return the position of the given key in the given hash table,
+		 * or the empty position it would be inserted at if it isn't in the table.
+		 */
+		private static int slotOf(String[] tableKeys, String key) {
+			int mask = tableKeys.length - 1;
+			int hash = key.hashCode();
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			String current;
+			while ((current = tableKeys[slot]) != null && !current.equals(key))
+				slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		/**
+		 * Removes the key at the given position from the hash table,
+		 * moving back the keys after it that would otherwise no longer be found.
+		 */
+		private void removeFromTable(int slot) {
+			String[] tableKeys = this.tableKeys;
+			Chunk[] tableChunks = this.tableChunks;
+			int mask = tableKeys.length - 1;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				String key = tableKeys[next];
+				if (key == null)
+					break;
+				int hash = key.hashCode();
+				int home = (hash ^ (hash >>> 16)) & mask;
+				// the key can fill the gap if its home position isn't between the gap and its current position
+				if (((next - home) & mask) >= ((next - slot) & mask)) {
+					tableKeys[slot] = key;
+					tableChunks[slot] = tableChunks[next];
+					slot = next;
+				}
+			}
+			tableKeys[slot] = null;
+			tableChunks[slot] = null;
+		}
+
+		@Override
+		public int size() {
+			return value == null ? indexCount : indexCount + 1;
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return value == null && indexCount == 0;
+		}
+
+		/**
+		 * The entries of this map, starting with the {@code null} key followed by the indices in order.
+		 */
+		@Override
+		public Set<Entry<String, Object>> entrySet() {
+			return new AbstractSet<Entry<String, Object>>() {
+				@Override
+				public Iterator<Entry<String, Object>> iterator() {
+					return new Iterator<Entry<String, Object>>() {
+						private boolean valueReturned = value == null;
+						private int chunkIndex;
+						private int index;
+
+						@Override
+						public boolean hasNext() {
+							return !valueReturned || chunkIndex < chunkCount;
+						}
+
+						@Override
+						public Entry<String, Object> next() {
+							if (!hasNext())
+								throw new NoSuchElementException();
+							if (!valueReturned) {
+								valueReturned = true;
+								return new SimpleImmutableEntry<>(null, value);
+							}
+							Chunk chunk = chunks[chunkIndex];
+							Entry<String, Object> entry = new SimpleImmutableEntry<>(chunk.keys[index], chunk.values[index]);
+							if (++index == chunk.size) {
+								chunkIndex++;
+								index = 0;
+							}
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return ListTreeMap.this.size();
+				}
+			};
+		}
+
+		/**
+		 * Parses the given list index, only if it is written the way
+		 * {@link #nextFreeIndex(int)} would generate it.
+		 *
+		 * @param index the list index.
+		 * @return the index, or {@code -1} if it isn't a plain positive number.
+		 */
+		private static int parseIndex(String index) {
+			int length = index.length();
+			if (length == 0 || length > 9 || index.charAt(0) == '0')
+				return -1;
+			int value = 0;
+			for (int i = 0; i < length; i++) {
+				char c = index.charAt(i);
+				if (c < '0' || c > '9')
+					return -1;
+				value = value * 10 + (c - '0');
+			}
+			return value;
+		}
+
+		/**
+		 * Consecutive indices of a list and their values, sorted by their index.
+		 */
+		private static final class Chunk {
+
+			private String[] keys = new String[2];
+			private Object[] values = new Object[2];
+			private int size;
+
+			Chunk copy() {
+				Chunk copy = new Chunk();
+				copy.keys = Arrays.copyOf(keys, size);
+				copy.values = Arrays.copyOf(values, size);
+				copy.size = size;
+				return copy;
+			}
+
+			/**
+			 * @return the position of the given key, or {@code -(insertion point) - 1} if it isn't in this chunk.
+			 */
+			int indexOf(String key) {
+				// appending is the most common insertion, so check the end first
+				int comparison = VARIABLE_NAME_COMPARATOR.compare(keys[size - 1], key);
+				if (comparison < 0)
+					return -size - 1;
+				if (comparison == 0)
+					return size - 1;
+				return Arrays.binarySearch(keys, 0, size - 1, key, VARIABLE_NAME_COMPARATOR);
+			}
+
+			/**
+			 * @return the position of the given key instance, which must be in this chunk.
+			 */
+			int identityIndexOf(String key) {
+				int index = 0;
+				while (keys[index] != key)
+					index++;
+				return index;
+			}
+
+			void insert(int index, String key, Object value) {
+				if (size == keys.length) {
+					int capacity = Math.min(CHUNK_SIZE, Math.max(2, size * 2));
+					keys = Arrays.copyOf(keys, capacity);
+					values = Arrays.copyOf(values, capacity);
+				}
+				System.arraycopy(keys, index, keys, index + 1, size - index);
+				System.arraycopy(values, index, values, index + 1, size - index);
+				keys[index] = key;
+				values[index] = value;
+				size++;
+			}
+
+			void remove(int index) {
+				size--;
+				System.arraycopy(keys, index + 1, keys, index, size - index);
+				System.arraycopy(values, index + 1, values, index, size - index);
+				keys[size] = null;
+				values[size] = null;
+			}
+
+			/**
+			 * Moves the upper half of this chunk into the given empty chunk.
+			 */
+			void moveUpperHalf(Chunk upper) {
+				int half = size / 2;
+				upper.keys = Arrays.copyOfRange(keys, half, CHUNK_SIZE);
+				upper.values = Arrays.copyOfRange(values, half, CHUNK_SIZE);
+				upper.size = size - half;
+				Arrays.fill(keys, half, size, null);
+				Arrays.fill(values, half, size, null);
+				size = half;
+			}
+
+		}
+
+	}
+
+	/**
+	 * A reverse index of a list variable, mapping the {@link EqualityIndex#getKey(Object, boolean) key}
+	 * of each value to the indices holding it.
+	 * <p>
+	 * Values without a key are not indexed, but the classes of all values are counted,
+	 * so that lookups can tell whether any unindexed value could be equal to the looked up value.
+	 */
+	static final class ValueIndex {
+
+		/**
+		 * Whether the string keys of this index are case-sensitive.
+		 */
+		final boolean caseSensitive;
+
+		/**
+		 * Maps keys to either a single index, or a {@link TreeSet} of indices if there are multiple.
+		 */
+		private final Map<Object, Object> indices = new HashMap<>();
+
+		/**
+		 * The amount of values of each class.
+		 */
+		final Map<Class<?>, Integer> classes = new HashMap<>();
+
+		ValueIndex(boolean caseSensitive) {
+			this.caseSensitive = caseSensitive;
+		}
+
+		@SuppressWarnings("unchecked")
+		ValueIndex copy() {
+			ValueIndex copy = new ValueIndex(caseSensitive);
+			copy.classes.putAll(classes);
+			for (Entry<Object, Object> entry : indices.entrySet()) {
+				Object value = entry.getValue();
+				copy.indices.put(entry.getKey(), value instanceof TreeSet ? new TreeSet<>((TreeSet<String>) value) : value);
+			}
+			return copy;
+		}
+
+		@SuppressWarnings("unchecked")
+		void add(String index, Object value) {
+			classes.merge(value.getClass(), 1, Integer::sum);
+			Object key = EqualityIndex.getKey(value, caseSensitive);
+			if (key == null)
+				return;
+			Object current = indices.get(key);
+			if (current == null) {
+				indices.put(key, index);
+			} else if (current instanceof String) {
+				TreeSet<String> set = new TreeSet<>(VARIABLE_NAME_COMPARATOR);
+				set.add((String) current);
+				set.add(index);
+				indices.put(key, set);
+			} else {
+				((TreeSet<String>) current).add(index);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void remove(String index, Object value) {
+			classes.computeIfPresent(value.getClass(), (type, count) -> count == 1 ? null : count - 1);
+			Object key = EqualityIndex.getKey(value, caseSensitive);
+			if (key == null)
+				return;
+			Object current = indices.get(key);
+			if (current instanceof String) {
+				if (current.equals(index))
+					indices.remove(key);
+			} else if (current != null) {
+				TreeSet<String> set = (TreeSet<String>) current;
+				set.remove(index);
+				if (set.size() == 1)
+					indices.put(key, set.first());
+			}
+		}
+
+		@Nullable
+		@SuppressWarnings("unchecked")
+		List<String> indicesOf(Object value) {
+			Object key = EqualityIndex.getKey(value, caseSensitive);
+			if (key == null)
+				return null;
+			for (Class<?> type : classes.keySet()) {
+				if (EqualityIndex.isKeyComparison(type, value.getClass()))
+					continue;
+				// values of this class aren't indexed by a matching key, so they can only be skipped if they can never be equal
+				if (Comparators.getComparatorInfo(type, value.getClass()) != null)
+					return null;
+			}
+			Object current = indices.get(key);
+			if (current == null)
+				return Collections.emptyList();
+			if (current instanceof String)
+				return Collections.singletonList((String) current);
+			return new ArrayList<>((TreeSet<String>) current);
+		}
+
+	}
+
+	/**
+	 * Interns the names of list indices in compact maps.
+	 */
+	private static final Interner<String> INDEX_NAMES = Interners.newWeakInterner();
+
+	/**
+	 * The maximum length of interned index names. Longer names, e.g. UUIDs,
+	 * are mostly unique, so interning them would only add overhead.
 	 */
-	final HashMap<String, Object> hashMap = new HashMap<>();
+	private static final int MAX_INTERNED_LENGTH = 16;
+
+	/**
+	 * Whether this map only stores variables in the {@link #treeMap} if their name contains {@link Variable#SEPARATOR},
+	 * i.e. whether it doesn't store the full name of each list index. This saves a lot of memory for many list variables,
+	 * at the cost of slower access to them. Index names in compact maps are also interned.
+	 */
+	private final boolean compact;
+
+	/**
+	 * The map that stores all non-list variables,
+	 * except for the indices of list variables if this map is {@link #compact}.
+	 */
+	VariablesHashMap hashMap = new VariablesHashMap();
 	/**
 	 * The tree of variables, branched by the list structure of the variables.
 	 */
-	final TreeMap<String, Object> treeMap = new TreeMap<>();
+	ListTreeMap treeMap = new ListTreeMap();
+
+	/**
+	 * Whether the root of the {@link #treeMap} may also be used by a copy of this map,
+	 * thus needing to be copied before modifying it. Nested lists keep track of this themselves.
+	 */
+	private boolean treeMapShared;
+
+	/**
+	 * The layout of {@link #slots}, only set for local variables.
+	 * Variables with a slot in this layout are stored in {@link #slots} only,
+	 * neither in the {@link #hashMap} nor in the {@link #treeMap}.
+	 */
+	@Nullable
+	private LocalVariableLayout layout;
+	/**
+	 * The values of the variables with a slot in {@link #layout}, indexed by slot.
+	 */
+	private Object[] slots = EMPTY_SLOTS;
+
+	private static final Object[] EMPTY_SLOTS = new Object[0];
+
+	/**
+	 * Creates a map storing every variable both by its full name and in its list.
+	 */
+	VariablesMap() {
+		this(false);
+	}
+
+	/**
+	 * @param compact whether the map should be {@link #compact}.
+	 */
+	VariablesMap(boolean compact) {
+		this.compact = compact;
+	}
 
 	/**
 	 * Returns the internal value of the requested variable.
@@ -161,6 +917,14 @@ final class VariablesMap {
 	@Nullable
 	Object getVariable(String name) {
 		if (!name.endsWith("*")) {
+			if (layout != null) {
+				Integer slot = layout.getSlot(name);
+				if (slot != null)
+					return getSlot(slot);
+			}
+			// Indices of lists in compact maps are only stored in the tree
+			if (compact && name.contains(Variable.SEPARATOR))
+				return getListIndex(name);
 			// Not a list variable, quick access from the hash map
 			return hashMap.get(name);
 		} else {
@@ -196,6 +960,30 @@ final class VariablesMap {
 		}
 	}
 
+	/**
+	 * Looks up a non-list variable in the {@link #treeMap}.
+	 *
+	 * @param name the name of the variable, containing {@link Variable#SEPARATOR}.
+	 * @return the value of the variable, or {@code null} if it is not set.
+	 */
+	@Nullable
+	private Object getListIndex(String name) {
+		ListTreeMap parent = treeMap;
+		int start = 0;
+		while (true) {
+			int end = name.indexOf(Variable.SEPARATOR, start);
+			Object childNode = parent.get(end < 0 ? name.substring(start) : name.substring(start, end));
+			if (end < 0) {
+				// The value of a list variable is stored as the null key of its list
+				return childNode instanceof ListTreeMap ? ((ListTreeMap) childNode).get(null) : childNode;
+			}
+			if (!(childNode instanceof ListTreeMap))
+				return null;
+			parent = (ListTreeMap) childNode;
+			start = end + Variable.SEPARATOR.length();
+		}
+	}
+
 	/**
 	 * Sets the given variable to the given value.
 	 * <p>
@@ -205,19 +993,28 @@ final class VariablesMap {
 	 * @param name the variable name.
 	 * @param value the variable value, {@code null} to delete the variable.
 	 */
-	@SuppressWarnings("unchecked")
 	void setVariable(String name, @Nullable Object value) {
 		// First update the hash map easily
 		if (!name.endsWith("*")) {
-			if (value == null)
-				hashMap.remove(name);
-			else
-				hashMap.put(name, value);
+			if (layout != null) {
+				Integer slot = layout.getSlot(name);
+				if (slot != null) {
+					setSlot(slot, value);
+					return;
+				}
+			}
+
+			if (!compact || !name.contains(Variable.SEPARATOR)) {
+				if (value == null)
+					hashMap.remove(name);
+				else
+					hashMap.put(name, value);
+			}
 		}
 
 		// Then update the tree map by going down the branches
 		String[] split = Variables.splitVariableName(name);
-		TreeMap<String, Object> parent = treeMap;
+		ListTreeMap parent = writableTreeMap();
 
 		// Iterate over the parts of the variable name
 		for (int i = 0; i < split.length; i++) {
@@ -229,25 +1026,26 @@ final class VariablesMap {
 				if (i == split.length - 1) {
 					// End of the variable name reached, set variable if needed
 					if (value != null)
-						parent.put(childNodeName, value);
+						parent.put(indexName(childNodeName), value);
 
 					break;
 				} else if (value != null) {
 					// Create child node, add it to parent and continue iteration
-					childNode = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+					childNode = newList(split, i);
 
-					parent.put(childNodeName, childNode);
-					parent = (TreeMap<String, Object>) childNode;
+					parent.put(indexName(childNodeName), childNode);
+					parent = (ListTreeMap) childNode;
 				} else {
 					// Want to set variable to null, bu variable is already null
 					break;
 				}
-			} else if (childNode instanceof TreeMap) {
+			} else if (childNode instanceof ListTreeMap) {
 				// Child node found
-				TreeMap<String, Object> childNodeMap = ((TreeMap<String, Object>) childNode);
+				ListTreeMap childNodeMap = ((ListTreeMap) childNode);
 
 				if (i == split.length - 1) {
 					// End of variable name reached, adjust child node accordingly
+					childNodeMap = writableList(parent, childNodeName, childNodeMap);
 					if (value == null)
 						childNodeMap.remove(null);
 					else
@@ -259,7 +1057,8 @@ final class VariablesMap {
 					assert value == null;
 
 					// Delete all indices of the list variable from hashMap
-					deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), childNodeMap);
+					if (!compact)
+						deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), childNodeMap);
 
 					// If the list variable itself has a value ,
 					//  e.g. list `{mylist::3}` while variable `{mylist}` also has a value,
@@ -273,7 +1072,7 @@ final class VariablesMap {
 					break;
 				} else {
 					// Continue iteration
-					parent = childNodeMap;
+					parent = writableList(parent, childNodeName, childNodeMap);
 				}
 			} else {
 				// Ran into leaf node
@@ -287,7 +1086,7 @@ final class VariablesMap {
 					break;
 				} else if (value != null) {
 					// Need to continue iteration, create new child node and put old value in it
-					TreeMap<String, Object> newChildNodeMap = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+					ListTreeMap newChildNodeMap = newList(split, i);
 					newChildNodeMap.put(null, childNode);
 
 					// Add new child node to parent
@@ -300,6 +1099,158 @@ final class VariablesMap {
 		}
 	}
 
+	/**
+	 * @param name a part of a variable name that is about to be added to the {@link #treeMap}.
+	 * @return the interned name if this map is {@link #compact}, otherwise the given name.
+	 */
+	private String indexName(String name) {
+		return compact && name.length() <= MAX_INTERNED_LENGTH ? INDEX_NAMES.intern(name) : name;
+	}
+
+	/**
+	 * Creates the list node for the given part of a variable name,
+	 * with a value index if the list is configured to have one.
+	 *
+	 * @param split the split variable name.
+	 * @param end the index of the last part of the list name in {@code split}.
+	 * @return the new list.
+	 */
+	private static ListTreeMap newList(String[] split, int end) {
+		ListTreeMap list = new ListTreeMap();
+		if (!Variables.indexedListVariables.isEmpty()) {
+			String name = StringUtils.join(split, Variable.SEPARATOR, 0, end + 1) + Variable.SEPARATOR + "*";
+			if (Variables.indexedListVariables.contains(name.toLowerCase(Locale.ENGLISH)))
+				list.enableValueIndex();
+		}
+		return list;
+	}
+
+	/**
+	 * @return the {@link #treeMap}, copied first if it is shared with a copy of this map.
+	 */
+	private ListTreeMap writableTreeMap() {
+		if (treeMapShared) {
+			treeMap = treeMap.unsharedCopy();
+			treeMapShared = false;
+		}
+		return treeMap;
+	}
+
+	/**
+	 * Returns the given nested list, copied first if it is shared.
+	 * The copy replaces the list in its parent, which must be writable itself.
+	 *
+	 * @param parent the writable parent of the list.
+	 * @param name the name of the list in its parent.
+	 * @param list the list.
+	 * @return a list that can be modified.
+	 */
+	private static ListTreeMap writableList(ListTreeMap parent, String name, ListTreeMap list) {
+		if (!list.shared)
+			return list;
+		ListTreeMap copy = list.unsharedCopy();
+		parent.put(name, copy);
+		return copy;
+	}
+
+	/**
+	 * Marks the lists nested in the given list as shared,
+	 * as they are now also referenced by a copy of it.
+	 */
+	private static void markNestedListsShared(ListTreeMap list) {
+		for (Object value : list.values()) {
+			if (value instanceof ListTreeMap)
+				((ListTreeMap) value).shared = true;
+		}
+	}
+
+	/**
+	 * Returns the value of a variable with a slot in the given layout.
+	 *
+	 * @param layout the layout the slot belongs to.
+	 * @param slot the slot of the variable.
+	 * @param name the name of the variable, used if this map uses a different layout.
+	 * @return the value of the variable, or {@code null} if it is not set.
+	 */
+	@Nullable
+	Object getVariable(LocalVariableLayout layout, int slot, String name) {
+		if (this.layout != layout && !adopt(layout))
+			return getVariable(name);
+		return getSlot(slot);
+	}
+
+	/**
+	 * Sets a variable with a slot in the given layout.
+	 *
+	 * @param layout the layout the slot belongs to.
+	 * @param slot the slot of the variable.
+	 * @param name the name of the variable, used if this map uses a different layout.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	void setVariable(LocalVariableLayout layout, int slot, String name, @Nullable Object value) {
+		if (this.layout != layout && !adopt(layout)) {
+			setVariable(name, value);
+			return;
+		}
+		setSlot(slot, value);
+	}
+
+	@Nullable
+	private Object getSlot(int slot) {
+		return slot < slots.length ? slots[slot] : null;
+	}
+
+	private void setSlot(int slot, @Nullable Object value) {
+		if (slot >= slots.length) {
+			if (value == null)
+				return;
+			slots = Arrays.copyOf(slots, slot + 1);
+		}
+		slots[slot] = value;
+	}
+
+	/**
+	 * Starts storing the variables of the given layout in slots, if this map doesn't use a layout yet.
+	 * Variables that were previously set by name, e.g. function parameters, are moved to their slots.
+	 *
+	 * @param layout the layout to use.
+	 * @return whether this map now uses the given layout.
+	 */
+	private boolean adopt(LocalVariableLayout layout) {
+		if (this.layout != null)
+			return false;
+		this.layout = layout;
+		slots = new Object[layout.size()];
+
+		List<Entry<String, Object>> moved = new ArrayList<>();
+		for (Entry<String, Object> entry : hashMap.entrySet()) {
+			if (layout.getSlot(entry.getKey()) != null)
+				moved.add(entry);
+		}
+		if (moved.isEmpty())
+			return true;
+
+		ListTreeMap treeMap = writableTreeMap();
+		for (Entry<String, Object> entry : moved) {
+			Integer slot = layout.getSlot(entry.getKey());
+			assert slot != null;
+			setSlot(slot, entry.getValue());
+			hashMap.remove(entry.getKey());
+
+			// The tree either holds the value itself or a list with the value as its null key
+			Object node = treeMap.get(entry.getKey());
+			if (node instanceof ListTreeMap) {
+				ListTreeMap list = writableList(treeMap, entry.getKey(), (ListTreeMap) node);
+				list.remove(null);
+				if (list.isEmpty())
+					treeMap.remove(entry.getKey());
+			} else if (node != null) {
+				treeMap.remove(entry.getKey());
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Deletes all indices of a list variable from the {@link #hashMap}.
 	 *
@@ -307,8 +1258,7 @@ final class VariablesMap {
 	 *                  e.g. {@code list} for {@code list::*}.
 	 * @param current the map of the list variable.
 	 */
-	@SuppressWarnings("unchecked")
-	void deleteFromHashMap(String parent, TreeMap<String, Object> current) {
+	void deleteFromHashMap(String parent, ListTreeMap current) {
 		for (Entry<String, Object> e : current.entrySet()) {
 			if (e.getKey() == null)
 				continue;
@@ -319,53 +1269,146 @@ final class VariablesMap {
 
 			// Recurse if needed
 			Object val = e.getValue();
-			if (val instanceof TreeMap) {
-				deleteFromHashMap(childName, (TreeMap<String, Object>) val);
+			if (val instanceof ListTreeMap) {
+				deleteFromHashMap(childName, (ListTreeMap) val);
 			}
 		}
 	}
 
 	/**
-	 * Creates a copy of this map.
+	 * @return the amount of variables stored by name in this map, i.e. not counting those stored in slots.
+	 */
+	int size() {
+		return compact ? count(treeMap) : hashMap.size();
+	}
+
+	/**
+	 * @return the amount of variables in the given list, including nested lists and the list variable itself.
+	 */
+	private static int count(ListTreeMap list) {
+		int count = list.value != null ? 1 : 0;
+		for (int i = 0; i < list.chunkCount; i++) {
+			ListTreeMap.Chunk chunk = list.chunks[i];
+			for (int j = 0; j < chunk.size; j++)
+				count += chunk.values[j] instanceof ListTreeMap ? count((ListTreeMap) chunk.values[j]) : 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a view of all variables stored by name in this map, i.e. not those stored in slots,
+	 * mapped by their full name. Unless this map is {@link #compact}, this is the {@link #hashMap} itself.
+	 * <p>
+	 * The view can't be modified.
 	 *
-	 * @return the copy.
+	 * @return the view.
 	 */
-	public VariablesMap copy() {
-		VariablesMap copy = new VariablesMap();
+	Map<String, Object> byName() {
+		if (!compact)
+			return Collections.unmodifiableMap(hashMap);
+		return new AbstractMap<String, Object>() {
+			@Override
+			@Nullable
+			public Object get(Object key) {
+				return key instanceof String && !((String) key).endsWith("*") ? getVariable((String) key) : null;
+			}
 
-		copy.hashMap.putAll(hashMap);
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
 
-		TreeMap<String, Object> treeMapCopy = copyTreeMap(treeMap);
-		copy.treeMap.putAll(treeMapCopy);
+			@Override
+			public Set<Entry<String, Object>> entrySet() {
+				return new AbstractSet<Entry<String, Object>>() {
+					@Override
+					public Iterator<Entry<String, Object>> iterator() {
+						return new NameIterator(treeMap);
+					}
 
-		return copy;
+					@Override
+					public int size() {
+						return VariablesMap.this.size();
+					}
+				};
+			}
+		};
 	}
 
 	/**
-	 * Makes a deep copy of the given {@link TreeMap}.
-	 * <p>
-	 * The 'deep copy' means that each subtree of the given tree is copied
-	 * as well.
-	 *
-	 * @param original the original tree map.
-	 * @return the copy.
+	 * Iterates over the variables in a {@link #treeMap} depth first, mapped by their full name.
 	 */
-	@SuppressWarnings("unchecked")
-	private static TreeMap<String, Object> copyTreeMap(TreeMap<String, Object> original) {
-		TreeMap<String, Object> copy = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+	private static final class NameIterator implements Iterator<Entry<String, Object>> {
+
+		/**
+		 * The names of the lists on the path to the current variable, and an iterator over the entries of each.
+		 */
+		private final Deque<String> names = new ArrayDeque<>();
+		private final Deque<Iterator<Entry<String, Object>>> iterators = new ArrayDeque<>();
+
+		@Nullable
+		private Entry<String, Object> next;
 
-		for (Entry<String, Object> child : original.entrySet()) {
-			String key = child.getKey();
-			Object value = child.getValue();
+		NameIterator(ListTreeMap root) {
+			iterators.push(root.entrySet().iterator());
+		}
 
-			// Copy by recursion if the child is a TreeMap
-			if (value instanceof TreeMap) {
-				value = copyTreeMap((TreeMap<String, Object>) value);
+		@Override
+		public boolean hasNext() {
+			while (next == null && !iterators.isEmpty()) {
+				Iterator<Entry<String, Object>> iterator = iterators.peek();
+				if (!iterator.hasNext()) {
+					iterators.pop();
+					names.poll();
+					continue;
+				}
+				Entry<String, Object> entry = iterator.next();
+				if (entry.getKey() == null) {
+					// the value of the list variable itself
+					next = new AbstractMap.SimpleImmutableEntry<>(names.element(), entry.getValue());
+					continue;
+				}
+				String name = names.isEmpty() ? entry.getKey() : names.element() + Variable.SEPARATOR + entry.getKey();
+				if (entry.getValue() instanceof ListTreeMap) {
+					names.push(name);
+					iterators.push(((ListTreeMap) entry.getValue()).entrySet().iterator());
+				} else {
+					next = new AbstractMap.SimpleImmutableEntry<>(name, entry.getValue());
+				}
 			}
+			return next != null;
+		}
 
-			copy.put(key, value);
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry<String, Object> next = this.next;
+			this.next = null;
+			return next;
 		}
 
+	}
+
+	/**
+	 * Creates a copy of this map.
+	 * <p>
+	 * This takes constant time, as the copy shares all variables with this map.
+	 * Whichever map is modified afterwards copies the parts it modifies:
+	 * the nodes of the {@link #hashMap} and the lists of the {@link #treeMap} on the path to the changed variable.
+	 *
+	 * @return the copy.
+	 */
+	public VariablesMap copy() {
+		VariablesMap copy = new VariablesMap(compact);
+
+		copy.hashMap = hashMap.copy();
+		copy.treeMap = treeMap;
+		treeMapShared = copy.treeMapShared = true;
+
+		copy.layout = layout;
+		copy.slots = slots.length == 0 ? EMPTY_SLOTS : slots.clone();
+
 		return copy;
 	}
 
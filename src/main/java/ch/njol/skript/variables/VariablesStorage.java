@@ -20,7 +20,10 @@ package ch.njol.skript.variables;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -91,6 +94,18 @@ public abstract class VariablesStorage implements Closeable {
 	// created in the constructor, started in load()
 	private final Thread writeThread;
 
+	/**
+	 * The maximum amount of changes the {@link #writeThread write thread}
+	 * passes to {@link #saveBatch(List)} at once.
+	 */
+	protected int batchSize = 1;
+
+	/**
+	 * The maximum time in milliseconds the {@link #writeThread write thread}
+	 * waits for more changes to fill a batch, see {@link #batchSize}.
+	 */
+	protected long batchLatency = 0;
+
 	/**
 	 * Creates a new variable storage with the given name.
 	 * <p>
@@ -104,20 +119,34 @@ public abstract class VariablesStorage implements Closeable {
 		databaseName = name;
 
 		writeThread = Skript.newThread(() -> {
+			List<SerializedVariable> batch = new ArrayList<>();
 			while (!closed) {
 				try {
-					// Take a variable from the queue and process it
-					SerializedVariable variable = changesQueue.take();
-					Value value = variable.value;
-
-					// Actually save the variable
-					if (value != null)
-						save(variable.name, value.type, value.data);
-					else
-						save(variable.name, null, null);
+					// Take a variable from the queue
+					batch.add(changesQueue.take());
+
+					// Collect more variables for a batch, waiting at most batchLatency for them
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchLatency);
+					while (batch.size() < batchSize) {
+						if (changesQueue.drainTo(batch, batchSize - batch.size()) > 0)
+							continue;
+						long remaining = deadline - System.nanoTime();
+						if (remaining <= 0)
+							break;
+						SerializedVariable variable = changesQueue.poll(remaining, TimeUnit.NANOSECONDS);
+						if (variable == null)
+							break;
+						batch.add(variable);
+					}
 				} catch (InterruptedException ignored) {
 					// Ignored as the `closed` field will indicate whether the thread actually needs to stop
 				}
+
+				// Actually save the variables, even when interrupted, as they have already been taken from the queue
+				if (!batch.isEmpty()) {
+					saveBatch(batch);
+					batch.clear();
+				}
 			}
 		}, "Skript variable save thread for database '" + name + "'");
 	}
@@ -275,8 +304,8 @@ public abstract class VariablesStorage implements Closeable {
 	protected abstract File getFile(String fileName);
 
 	/**
-	 * Must be locked after {@link Variables#getReadLock()}
-	 * (if that lock is used at all).
+	 * Must be locked after the locks of {@link Variables.Stripe}s
+	 * (if those locks are used at all).
 	 */
 	protected final Object connectionLock = new Object();
 
@@ -411,23 +440,15 @@ public abstract class VariablesStorage implements Closeable {
 	 * <p>
 	 * The default implementation will wait for all variables to be saved
 	 * before setting {@link #closed} to {@code true} and stopping
-	 * the {@link #writeThread write thread}.
+	 * the {@link #writeThread write thread}, but gives up after {@link Variables#CLOSE_TIMEOUT}.
 	 * <p>
 	 * Therefore, make sure to call {@code super.close()}
 	 * if this method is overridden.
 	 */
 	@Override
 	public void close() {
-		// Wait for all variable changes to be processed
-		while (changesQueue.size() > 0) {
-			try {
-				Thread.sleep(10);
-			} catch (InterruptedException ignored) {}
-		}
-
-		// Now safely close storage and interrupt thread
-		closed = true;
-		writeThread.interrupt();
+		// Wait for all variable changes to be saved, then safely close storage and interrupt thread
+		Variables.stopThread(writeThread, changesQueue, () -> closed = true, "the database '" + databaseName + "'");
 	}
 
 	/**
@@ -457,4 +478,22 @@ public abstract class VariablesStorage implements Closeable {
 	 */
 	protected abstract boolean save(String name, @Nullable String type, @Nullable byte[] value);
 
+	/**
+	 * Saves the given variable changes, in the order they were made.
+	 * <p>
+	 * This is called from the {@link #writeThread} with at most {@link #batchSize} changes.
+	 * The default implementation {@link #save(String, String, byte[]) saves} each change separately.
+	 *
+	 * @param changes the changes.
+	 */
+	protected void saveBatch(List<SerializedVariable> changes) {
+		for (SerializedVariable change : changes) {
+			Value value = change.value;
+			if (value != null)
+				save(change.name, value.type, value.data);
+			else
+				save(change.name, null, null);
+		}
+	}
+
 }
@@ -20,28 +20,106 @@ package org.skriptlang.skript.lang.arithmetic;
 
 import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
-import ch.njol.util.Pair;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.UnmodifiableView;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public final class Arithmetics {
 
 	private static final Map<Operator, List<OperationInfo<?, ?, ?>>> operations = Collections.synchronizedMap(new HashMap<>());
-	private static final Map<Operator, Map<Pair<Class<?>, Class<?>>, OperationInfo<?, ?, ?>>> cachedOperations = Collections.synchronizedMap(new HashMap<>());
+
+	// Lookups are only allowed once registrations have finished, so these caches are never invalidated
+	// They don't require any locking, as they are indexed by classes through ClassValues
+	private static final Map<Operator, PairCache<OperationInfo<?, ?, ?>>> cachedOperations = new EnumMap<>(Operator.class);
+	private static final Map<Operator, PairCache<OperationInfo<?, ?, ?>>> cachedConvertedOperations = new EnumMap<>(Operator.class);
+
+	static {
+		for (Operator operator : Operator.values()) {
+			cachedOperations.put(operator, new PairCache<>((leftClass, rightClass) -> findOperationInfo(operator, leftClass, rightClass)));
+			cachedConvertedOperations.put(operator, new PairCache<>((leftClass, rightClass) -> findConvertedOperationInfo(operator, leftClass, rightClass)));
+		}
+	}
 
 	private static final Map<Class<?>, DifferenceInfo<?, ?>> differences = Collections.synchronizedMap(new HashMap<>());
-	private static final Map<Class<?>, DifferenceInfo<?, ?>> cachedDifferences = Collections.synchronizedMap(new HashMap<>());
+	private static final ClassValue<Object> cachedDifferences = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			return orMissing(findAssignable(differences, type));
+		}
+	};
 
 	private static final Map<Class<?>, Supplier<?>> defaultValues = Collections.synchronizedMap(new HashMap<>());
-	private static final Map<Class<?>, Supplier<?>> cachedDefaultValues = Collections.synchronizedMap(new HashMap<>());
+	private static final ClassValue<Object> cachedDefaultValues = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> type) {
+			return orMissing(findAssignable(defaultValues, type));
+		}
+	};
+
+	/**
+	 * Marks a cache entry for which nothing was found, as {@link ClassValue}s can't hold null.
+	 */
+	private static final Object MISSING = new Object();
+
+	private static Object orMissing(@Nullable Object value) {
+		return value != null ? value : MISSING;
+	}
+
+	@Nullable
+	private static Object fromMissing(Object value) {
+		return value != MISSING ? value : null;
+	}
+
+	@Nullable
+	private static <V> V findAssignable(Map<Class<?>, V> map, Class<?> type) {
+		synchronized (map) {
+			if (map.containsKey(type))
+				return map.get(type);
+			for (Map.Entry<Class<?>, V> entry : map.entrySet()) {
+				if (entry.getKey().isAssignableFrom(type))
+					return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A cache indexed by a pair of classes, which doesn't require locking or allocations to look up a value.
+	 */
+	private static final class PairCache<V> extends ClassValue<ClassValue<Object>> {
+
+		private final BiFunction<Class<?>, Class<?>, V> resolver;
+
+		PairCache(BiFunction<Class<?>, Class<?>, V> resolver) {
+			this.resolver = resolver;
+		}
+
+		@Override
+		protected ClassValue<Object> computeValue(Class<?> leftClass) {
+			return new ClassValue<Object>() {
+				@Override
+				protected Object computeValue(Class<?> rightClass) {
+					return orMissing(resolver.apply(leftClass, rightClass));
+				}
+			};
+		}
+
+		@Nullable
+		@SuppressWarnings("unchecked")
+		V get(Class<?> leftClass, Class<?> rightClass) {
+			return (V) fromMissing(get(leftClass).get(rightClass));
+		}
+
+	}
 
 	public static <T> void registerOperation(Operator operator, Class<T> type, Operation<T, T, T> operation) {
 		registerOperation(operator, type, type, type, operation);
@@ -107,23 +185,23 @@ public final class Arithmetics {
 		return null;
 	}
 
-	private static Map<Pair<Class<?>, Class<?>>, OperationInfo<?, ?, ?>> getCachedOperations(Operator operator) {
-		return cachedOperations.computeIfAbsent(operator, o -> Collections.synchronizedMap(new HashMap<>()));
-	}
-
 	@Nullable
 	@SuppressWarnings("unchecked")
 	public static <L, R> OperationInfo<L, R, ?> getOperationInfo(Operator operator, Class<L> leftClass, Class<R> rightClass) {
 		assertIsOperationsDoneLoading();
-		return (OperationInfo<L, R, ?>) getCachedOperations(operator).computeIfAbsent(new Pair<>(leftClass, rightClass), pair ->
-			getOperations(operator).stream()
-				.filter(info -> info.getLeft().isAssignableFrom(leftClass) && info.getRight().isAssignableFrom(rightClass))
-				.reduce((info, info2) -> {
-					if (info2.getLeft() == leftClass && info2.getRight() == rightClass)
-						return info2;
-					return info;
-				})
-				.orElse(null));
+		return (OperationInfo<L, R, ?>) cachedOperations.get(operator).get(leftClass, rightClass);
+	}
+
+	@Nullable
+	private static OperationInfo<?, ?, ?> findOperationInfo(Operator operator, Class<?> leftClass, Class<?> rightClass) {
+		return getOperations(operator).stream()
+			.filter(info -> info.getLeft().isAssignableFrom(leftClass) && info.getRight().isAssignableFrom(rightClass))
+			.reduce((info, info2) -> {
+				if (info2.getLeft() == leftClass && info2.getRight() == rightClass)
+					return info2;
+				return info;
+			})
+			.orElse(null);
 	}
 
 	@Nullable
@@ -150,16 +228,19 @@ public final class Arithmetics {
 		OperationInfo<L, R, ?> operationInfo = getOperationInfo(operator, leftClass, rightClass);
 		if (operationInfo != null)
 			return operationInfo;
-		return (OperationInfo<L, R, ?>) getCachedOperations(operator).computeIfAbsent(new Pair<>(leftClass, rightClass), pair -> {
-			for (OperationInfo<?, ?, ?> info : getOperations(operator)) {
-				if (!info.getLeft().isAssignableFrom(leftClass) && !info.getRight().isAssignableFrom(rightClass))
-					continue;
-				OperationInfo<L, R, ?> convertedInfo = info.getConverted(leftClass, rightClass, info.getReturnType());
-				if (convertedInfo != null)
-					return convertedInfo;
-			}
-			return null;
-		});
+		return (OperationInfo<L, R, ?>) cachedConvertedOperations.get(operator).get(leftClass, rightClass);
+	}
+
+	@Nullable
+	private static <L, R> OperationInfo<L, R, ?> findConvertedOperationInfo(Operator operator, Class<L> leftClass, Class<R> rightClass) {
+		for (OperationInfo<?, ?, ?> info : getOperations(operator)) {
+			if (!info.getLeft().isAssignableFrom(leftClass) && !info.getRight().isAssignableFrom(rightClass))
+				continue;
+			OperationInfo<L, R, ?> convertedInfo = info.getConverted(leftClass, rightClass, info.getReturnType());
+			if (convertedInfo != null)
+				return convertedInfo;
+		}
+		return null;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -205,15 +286,7 @@ public final class Arithmetics {
 	public static <T> DifferenceInfo<T, ?> getDifferenceInfo(Class<T> type) {
 		if (Skript.isAcceptRegistrations())
 			throw new SkriptAPIException("Differences cannot be retrieved until Skript has finished registrations.");
-		return (DifferenceInfo<T, ?>) cachedDifferences.computeIfAbsent(type, c -> {
-			if (differences.containsKey(type))
-				return differences.get(type);
-			for (Map.Entry<Class<?>, DifferenceInfo<?, ?>> entry : differences.entrySet()) {
-				if (entry.getKey().isAssignableFrom(type))
-					return entry.getValue();
-			}
-			return null;
-		});
+		return (DifferenceInfo<T, ?>) fromMissing(cachedDifferences.get(type));
 	}
 
 	public static <T, R> Operation<T, T, R> getDifference(Class<T> type, Class<R> returnType) {
@@ -249,15 +322,7 @@ public final class Arithmetics {
 	public static <R, T extends R> R getDefaultValue(Class<T> type) {
 		if (Skript.isAcceptRegistrations())
 			throw new SkriptAPIException("Default values cannot be retrieved until Skript has finished registrations.");
-		Supplier<R> supplier = (Supplier<R>) cachedDefaultValues.computeIfAbsent(type, c -> {
-			if (defaultValues.containsKey(type))
-				return defaultValues.get(type);
-			for (Map.Entry<Class<?>, Supplier<?>> entry : defaultValues.entrySet()) {
-				if (entry.getKey().isAssignableFrom(type))
-					return entry.getValue();
-			}
-			return null;
-		});
+		Supplier<R> supplier = (Supplier<R>) fromMissing(cachedDefaultValues.get(type));
 		return supplier == null ? null : supplier.get();
 	}
 
@@ -0,0 +1,285 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package org.skriptlang.skript.lang.comparator;
+
+import ch.njol.skript.SkriptConfig;
+import ch.njol.util.Kleenean;
+import org.bukkit.OfflinePlayer;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A hash based index over a group of objects, used to determine whether an object is {@link Relation#EQUAL}
+ *  to any of them without comparing it with each one.
+ * Objects are reduced to a key that is equal for two objects exactly when their comparator considers them equal.
+ * This is only possible for a few kinds of objects:
+ * <ul>
+ *     <li>Strings, using the String comparator (case folded unless Skript is case sensitive)</li>
+ *     <li>Integral numbers that can be represented exactly by a double, using the Number comparator</li>
+ *     <li>Offline players, using the OfflinePlayer comparator (which compares their names)</li>
+ *     <li>Enums and UUIDs that have no comparator for their own class, thus being compared with {@link Object#equals(Object)}</li>
+ * </ul>
+ * Before a lookup, the comparator resolved for the classes involved is checked to be the one the key was built for
+ *  (see {@link #isKeyComparison(Class, Class)}).
+ * Whenever that is not the case, {@link #contains(Object)} returns {@link Kleenean#UNKNOWN}
+ *  and the caller is expected to compare the object manually.
+ */
+public final class EqualityIndex {
+
+	/**
+	 * The amount of values below which building an index costs more than comparing each value.
+	 */
+	public static final int MIN_SIZE = 16;
+
+	/**
+	 * The largest magnitude up to which every long can be represented exactly by a double.
+	 */
+	private static final long MAX_EXACT_INTEGER = 1L << 53;
+
+	/**
+	 * The maximum amount of different classes an index may contain.
+	 * Each lookup class has to be verified against all of them.
+	 */
+	private static final int MAX_CLASSES = 8;
+
+	private enum Domain {
+		STRING, INTEGER, OFFLINE_PLAYER, EQUALS
+	}
+
+	/**
+	 * The key of an offline player, wrapping its name so that it is never equal to the key of a string.
+	 */
+	private static final class PlayerName {
+
+		@Nullable
+		private final String name;
+
+		private PlayerName(@Nullable String name) {
+			this.name = name;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof PlayerName && Objects.equals(name, ((PlayerName) other).name);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(name);
+		}
+
+	}
+
+	private final boolean caseSensitive;
+	@Nullable
+	private final Comparator<?, ?> comparator;
+	private final Class<?>[] classes;
+	private final Set<Object> keys;
+
+	/**
+	 * Whether each class that has been looked up can use this index.
+	 * Indices only live for a single evaluation, so this does not need to be thread-safe.
+	 */
+	private final Map<Class<?>, Boolean> verified = new IdentityHashMap<>();
+
+	private EqualityIndex(boolean caseSensitive, @Nullable Comparator<?, ?> comparator, Class<?>[] classes, Set<Object> keys) {
+		this.caseSensitive = caseSensitive;
+		this.comparator = comparator;
+		this.classes = classes;
+		this.keys = keys;
+	}
+
+	/**
+	 * Builds an index over the given values, which are compared using {@link Comparators#compare(Object, Object)}.
+	 * @param values The values to index. Null elements are not allowed.
+	 * @return An index, or null if the values can not be indexed.
+	 * @see #of(Object[], Comparator)
+	 */
+	@Nullable
+	public static EqualityIndex of(Object[] values) {
+		return of(values, null);
+	}
+
+	/**
+	 * Builds an index over the given values.
+	 * @param values The values to index. Null elements are not allowed.
+	 * @param comparator The comparator used for comparisons, or null if they are made
+	 *  using {@link Comparators#compare(Object, Object)}.
+	 *  The index is only used for looked up objects whose resolved comparator is this one.
+	 * @return An index, or null if the values can not be indexed.
+	 */
+	@Nullable
+	public static EqualityIndex of(Object[] values, @Nullable Comparator<?, ?> comparator) {
+		if (values.length == 0)
+			return null;
+
+		boolean caseSensitive = SkriptConfig.caseSensitive.value();
+		Set<Class<?>> classes = new HashSet<>();
+		Set<Object> keys = new HashSet<>(values.length * 4 / 3 + 1);
+		for (Object value : values) {
+			Object key = getKey(value, caseSensitive);
+			if (key == null)
+				return null;
+			if (classes.add(value.getClass()) && classes.size() > MAX_CLASSES)
+				return null;
+			keys.add(key);
+		}
+
+		return new EqualityIndex(caseSensitive, comparator, classes.toArray(new Class[0]), keys);
+	}
+
+	/**
+	 * @param value The object to look up.
+	 * @return {@link Kleenean#TRUE} if the object is equal to any indexed value,
+	 *  {@link Kleenean#FALSE} if it is equal to none of them,
+	 *  or {@link Kleenean#UNKNOWN} if the index can not be used for this object.
+	 */
+	public Kleenean contains(Object value) {
+		Object key = getKey(value, caseSensitive);
+		if (key == null)
+			return Kleenean.UNKNOWN;
+		Boolean usable = verified.get(value.getClass());
+		if (usable == null) {
+			usable = verify(value.getClass());
+			verified.put(value.getClass(), usable);
+		}
+		if (!usable)
+			return Kleenean.UNKNOWN;
+		return Kleenean.get(keys.contains(key));
+	}
+
+	/**
+	 * @return Whether objects of the given class are compared with all indexed classes
+	 *  using the comparator the keys of this index were built for.
+	 */
+	private boolean verify(Class<?> type) {
+		for (Class<?> indexed : classes) {
+			if (!isKeyComparison(type, indexed))
+				return false;
+			if (comparator != null && Comparators.getComparator(type, indexed) != comparator)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the key of the given object.
+	 * Two objects with keys are {@link Relation#EQUAL} exactly when their keys are equal,
+	 *  provided that {@link #isKeyComparison(Class, Class)} holds for their classes.
+	 * @param value The object.
+	 * @param caseSensitive Whether strings are compared case sensitively, see {@link SkriptConfig#caseSensitive}.
+	 * @return The key of the object, or null if it doesn't have one.
+	 */
+	@Nullable
+	public static Object getKey(Object value, boolean caseSensitive) {
+		Domain domain = getDomain(value.getClass());
+		if (domain == null)
+			return null;
+		switch (domain) {
+			case STRING:
+				return caseSensitive ? value : foldCase((String) value);
+			case INTEGER:
+				long number = ((Number) value).longValue();
+				return -MAX_EXACT_INTEGER <= number && number <= MAX_EXACT_INTEGER ? number : null;
+			case OFFLINE_PLAYER:
+				return new PlayerName(((OfflinePlayer) value).getName());
+			case EQUALS:
+				return value;
+			default:
+				throw new IllegalStateException();
+		}
+	}
+
+	/**
+	 * @param first The class of the first object of comparisons.
+	 * @param second The class of the second object of comparisons.
+	 * @return Whether objects of these classes are compared using the comparator their keys are built for,
+	 *  i.e. whether such objects with {@link #getKey(Object, boolean) keys} are equal exactly when their keys are.
+	 */
+	public static boolean isKeyComparison(Class<?> first, Class<?> second) {
+		Domain domain = getDomain(first);
+		if (domain == null || getDomain(second) != domain)
+			return false;
+		Class<?> expected;
+		switch (domain) {
+			case STRING:
+				expected = String.class;
+				break;
+			case INTEGER:
+				expected = Number.class;
+				break;
+			case OFFLINE_PLAYER:
+				expected = OfflinePlayer.class;
+				break;
+			case EQUALS:
+				if (first != second) // equality is only used for objects of the same class
+					return false;
+				expected = Object.class;
+				break;
+			default:
+				throw new IllegalStateException();
+		}
+		ComparatorInfo<?, ?> info = Comparators.getComparatorInfo(first, second);
+		// registering another comparator for these exact types is not possible, so this is Skript's default one
+		return info != null && info.getFirstType() == expected && info.getSecondType() == expected;
+	}
+
+	@Nullable
+	private static Domain getDomain(Class<?> type) {
+		if (type == String.class)
+			return Domain.STRING;
+		if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class)
+			return Domain.INTEGER;
+		if (OfflinePlayer.class.isAssignableFrom(type))
+			return Domain.OFFLINE_PLAYER;
+		if (Enum.class.isAssignableFrom(type) || type == UUID.class)
+			return Domain.EQUALS;
+		return null;
+	}
+
+	/**
+	 * Folds the case of a string such that two strings have the same folded form
+	 *  exactly when {@link String#equalsIgnoreCase(String)} considers them equal.
+	 */
+	private static String foldCase(String string) {
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			if (c >= 0x80 || c >= 'A' && c <= 'Z')
+				return foldCase(string, i);
+		}
+		return string;
+	}
+
+	private static String foldCase(String string, int start) {
+		StringBuilder builder = new StringBuilder(string.length());
+		builder.append(string, 0, start);
+		string.codePoints().skip(string.codePointCount(0, start)).forEach(codePoint ->
+			builder.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)))
+		);
+		return builder.toString();
+	}
+
+}
@@ -20,7 +20,6 @@ package org.skriptlang.skript.lang.converter;
 
 import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
-import ch.njol.util.Pair;
 import org.eclipse.jdt.annotation.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
@@ -29,8 +28,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * Converters are used to provide Skript with specific instructions for converting an object to a different type.
@@ -49,7 +51,9 @@ public final class Converters {
 	 * @return An unmodifiable list containing all registered {@link ConverterInfo}s.
 	 * Please note that this does not include any special Converters resolved by Skript during runtime.
 	 * This method ONLY returns converters explicitly registered during registration.
-	 * Thus, it is recommended to use {@link #getConverter(Class, Class)}.
+	 * In particular, {@link ChainedConverter}s are no longer included, as they are only resolved on demand.
+	 * Thus, it is recommended to use {@link #getConverter(Class, Class)},
+	 * or {@link #getConverterInfos(Class)} to list chained converters as well.
 	 */
 	@Unmodifiable
 	public static List<ConverterInfo<?, ?>> getConverterInfos() {
@@ -58,11 +62,30 @@ public final class Converters {
 	}
 
 	/**
-	 * A map for quickly access converters that have already been resolved.
-	 * Some pairs may point to a null value, indicating that no converter exists between the two types.
+	 * A marker for type pairs that have no converter.
 	 * This is useful for skipping complex lookups that may require chaining.
 	 */
-	private static final Map<Pair<Class<?>, Class<?>>, ConverterInfo<?, ?>> QUICK_ACCESS_CONVERTERS = new HashMap<>(50);
+	private static final Object NO_CONVERTER = new Object();
+
+	/**
+	 * A two-level cache for quickly accessing converters that have already been resolved,
+	 * indexed by the type to convert from and then the type to convert to.
+	 * Some pairs may point to {@link #NO_CONVERTER}, indicating that no converter exists between the two types.
+	 * Lookups don't require any locking, as converters are only resolved once registration has finished.
+	 */
+	private static final ClassValue<ClassValue<Object>> QUICK_ACCESS_CONVERTERS = new ClassValue<ClassValue<Object>>() {
+		@Override
+		protected ClassValue<Object> computeValue(Class<?> fromType) {
+			return new ClassValue<Object>() {
+				@Override
+				@SuppressWarnings("unchecked")
+				protected Object computeValue(Class<?> toType) {
+					ConverterInfo<?, ?> converter = getConverterInfo_i((Class<Object>) fromType, (Class<Object>) toType);
+					return converter != null ? converter : NO_CONVERTER;
+				}
+			};
+		}
+	};
 
 	/**
 	 * Registers a new Converter with Skript's collection of Converters.
@@ -97,67 +120,118 @@ public final class Converters {
 	}
 
 	/**
-	 * This method is to be called after Skript has finished registration.
-	 * It allows {@link ChainedConverter}s to be created so that Skript may do more complex conversions
-	 *  involving multiple converters.
+	 * This method used to create all {@link ChainedConverter}s after Skript had finished registration.
+	 * Chained converters are now resolved on demand when a conversion between two types is first requested.
+	 * @deprecated This method does nothing. Note that, as a result, {@link #getConverterInfos()}
+	 * no longer includes any {@link ChainedConverter}s, use {@link #getConverterInfos(Class)} to list them.
 	 */
-	// TODO Find a better way of doing this that doesn't require a method to be called (probably requires better Registration API)
-	// REMIND how to manage overriding of converters? - shouldn't actually matter
-	@SuppressWarnings("unchecked")
-	public static <F, M, T> void createChainedConverters() {
+	@Deprecated
+	public static void createChainedConverters() {
 		Skript.checkAcceptRegistrations();
-		synchronized (CONVERTERS) {
-			for (int i = 0; i < CONVERTERS.size(); i++) {
-
-				ConverterInfo<?, ?> unknownInfo1 = CONVERTERS.get(i);
-				for (int j = 0; j < CONVERTERS.size(); j++) { // Not from j = i+1 since new converters get added during the loops
-
-					ConverterInfo<?, ?> unknownInfo2 = CONVERTERS.get(j);
-
-					// chain info -> info2
-					if (
-						unknownInfo2.getFrom() != Object.class // Object can only exist at the beginning of a chain
-							&& unknownInfo1.getFrom() != unknownInfo2.getTo()
-							&& (unknownInfo1.getFlags() & Converter.NO_RIGHT_CHAINING) == 0
-							&& (unknownInfo2.getFlags() & Converter.NO_LEFT_CHAINING) == 0
-							&& unknownInfo2.getFrom().isAssignableFrom(unknownInfo1.getTo())
-							&& !exactConverterExists_i(unknownInfo1.getFrom(), unknownInfo2.getTo())
-					) {
-						ConverterInfo<F, M> info1 = (ConverterInfo<F, M>) unknownInfo1;
-						ConverterInfo<M, T> info2 = (ConverterInfo<M, T>) unknownInfo2;
-
-						CONVERTERS.add(new ConverterInfo<>(
-							info1.getFrom(),
-							info2.getTo(),
-							new ChainedConverter<>(info1, info2),
-							info1.getFlags() | info2.getFlags()
-						));
-					}
+	}
 
-					// chain info2 -> info
-					else if (
-						unknownInfo1.getFrom() != Object.class // Object can only exist at the beginning of a chain
-							&& unknownInfo2.getFrom() != unknownInfo1.getTo()
-							&& (unknownInfo1.getFlags() & Converter.NO_LEFT_CHAINING) == 0
-							&& (unknownInfo2.getFlags() & Converter.NO_RIGHT_CHAINING) == 0
-							&& unknownInfo1.getFrom().isAssignableFrom(unknownInfo2.getTo())
-							&& !exactConverterExists_i(unknownInfo2.getFrom(), unknownInfo1.getTo())
-					) {
-						ConverterInfo<M, T> info1 = (ConverterInfo<M, T>) unknownInfo1;
-						ConverterInfo<F, M> info2 = (ConverterInfo<F, M>) unknownInfo2;
-
-						CONVERTERS.add(new ConverterInfo<>(
-							info2.getFrom(),
-							info1.getTo(),
-							new ChainedConverter<>(info2, info1),
-							info2.getFlags() | info1.getFlags()
-						));
-					}
+	/**
+	 * A cache for {@link #getConverterInfos(Class)}, indexed by the type to convert to.
+	 */
+	private static final ClassValue<List<ConverterInfo<?, ?>>> CONVERTERS_TO = new ClassValue<List<ConverterInfo<?, ?>>>() {
+		@Override
+		protected List<ConverterInfo<?, ?>> computeValue(Class<?> toType) {
+			List<ConverterInfo<?, ?>> converters = new ArrayList<>();
+			for (ConverterInfo<?, ?> info : CONVERTERS) {
+				if (toType.isAssignableFrom(info.getTo()))
+					converters.add(info);
+			}
+			converters.addAll(findChains(info -> toType.isAssignableFrom(info.getTo()), info -> true, true));
+			return Collections.unmodifiableList(converters);
+		}
+	};
 
-				}
+	/**
+	 * Unlike {@link #getConverterInfos()}, this includes {@link ChainedConverter}s.
+	 * Registered converters are listed before chained ones, and shorter chains before longer ones.
+	 * @param toType The type to convert to.
+	 * @return An unmodifiable list of all converters, including chained converters, that convert into <code>toType</code> or a subtype of it.
+	 */
+	@Unmodifiable
+	public static List<ConverterInfo<?, ?>> getConverterInfos(Class<?> toType) {
+		assertIsDoneLoading();
+		return CONVERTERS_TO.get(toType);
+	}
 
+	/**
+	 * Checks whether a chain ending in <code>first</code> may be continued with <code>second</code>,
+	 *  by the same rules that used to be applied when creating all chains upfront.
+	 */
+	private static boolean canChain(ConverterInfo<?, ?> first, ConverterInfo<?, ?> second) {
+		return second.getFrom() != Object.class // Object can only exist at the beginning of a chain
+			&& first.getFrom() != second.getTo()
+			&& (first.getFlags() & Converter.NO_RIGHT_CHAINING) == 0
+			&& (second.getFlags() & Converter.NO_LEFT_CHAINING) == 0
+			&& second.getFrom().isAssignableFrom(first.getTo());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <F, M, T> ConverterInfo<F, T> chain(ConverterInfo<?, ?> unknownFirst, ConverterInfo<?, ?> unknownSecond) {
+		ConverterInfo<F, M> first = (ConverterInfo<F, M>) unknownFirst;
+		ConverterInfo<M, T> second = (ConverterInfo<M, T>) unknownSecond;
+		return new ConverterInfo<>(
+			first.getFrom(),
+			second.getTo(),
+			new ChainedConverter<>(first, second),
+			first.getFlags() | second.getFlags()
+		);
+	}
+
+	/**
+	 * Searches for chains of registered converters with a breadth-first search, so that shorter chains are found first.
+	 * Like before chains were resolved on demand, at most one chain is returned for each pair of types,
+	 *  and no chain is returned for a pair of types that already has a registered converter.
+	 * @param start Whether a chain may be started with this converter. When searching backwards, chains are started at their end.
+	 * @param result Whether a completed chain is part of the result.
+	 * @param backwards Whether to build chains from their end instead of their beginning.
+	 * @return All chains of at least two converters that match the given predicates.
+	 */
+	private static List<ConverterInfo<?, ?>> findChains(
+		Predicate<ConverterInfo<?, ?>> start,
+		Predicate<ConverterInfo<?, ?>> result,
+		boolean backwards
+	) {
+		// The pairs of types that have been reached by a chain, and the chaining flags they were reached with
+		// A chain that can't be continued must not prevent a different chain between the same types from being continued
+		Map<Class<?>, Map<Class<?>, Integer>> reached = new HashMap<>();
+		List<ConverterInfo<?, ?>> frontier = new ArrayList<>();
+		for (ConverterInfo<?, ?> info : CONVERTERS) {
+			if (start.test(info))
+				frontier.add(info);
+		}
+
+		List<ConverterInfo<?, ?>> chains = new ArrayList<>();
+		while (!frontier.isEmpty()) {
+			List<ConverterInfo<?, ?>> next = new ArrayList<>();
+			for (ConverterInfo<?, ?> current : frontier) {
+				for (ConverterInfo<?, ?> info : CONVERTERS) {
+					ConverterInfo<?, ?> first = backwards ? info : current;
+					ConverterInfo<?, ?> second = backwards ? current : info;
+					if (!canChain(first, second))
+						continue;
+
+					Map<Class<?>, Integer> reachedTo = reached.computeIfAbsent(first.getFrom(), k -> new HashMap<>());
+					Integer reachedFlags = reachedTo.get(second.getTo());
+					int flags = 1 << ((first.getFlags() | second.getFlags()) & Converter.NO_CHAINING);
+					if (reachedFlags != null && (reachedFlags & flags) != 0)
+						continue;
+					reachedTo.put(second.getTo(), reachedFlags == null ? flags : reachedFlags | flags);
+
+					// A registered converter between the same types always takes precedence, but chains may still continue from here
+					ConverterInfo<?, ?> chain = chain(first, second);
+					if (reachedFlags == null && !exactConverterExists_i(first.getFrom(), second.getTo()) && result.test(chain))
+						chains.add(chain);
+					next.add(chain);
+				}
 			}
+			frontier = next;
 		}
+		return chains;
 	}
 
 	/**
@@ -244,19 +318,8 @@ public final class Converters {
 	public static <F, T> ConverterInfo<F, T> getConverterInfo(Class<F> fromType, Class<T> toType) {
 		assertIsDoneLoading();
 
-		Pair<Class<?>, Class<?>> pair = new Pair<>(fromType, toType);
-		ConverterInfo<F, T> converter;
-
-		synchronized (QUICK_ACCESS_CONVERTERS) {
-			if (QUICK_ACCESS_CONVERTERS.containsKey(pair)) {
-				converter = (ConverterInfo<F, T>) QUICK_ACCESS_CONVERTERS.get(pair);
-			} else { // Compute QUICK_ACCESS for provided types
-				converter = getConverterInfo_i(fromType, toType);
-				QUICK_ACCESS_CONVERTERS.put(pair, converter);
-			}
-		}
-
-		return converter;
+		Object converter = QUICK_ACCESS_CONVERTERS.get(fromType).get(toType);
+		return converter != NO_CONVERTER ? (ConverterInfo<F, T>) converter : null;
 	}
 
 	/**
@@ -270,93 +333,160 @@ public final class Converters {
 	 *
 	 * @param <F> The type to convert from.
 	 * @param <T> The type to convert to.
-	 * @param <SubType> The <code>fromType</code> for a Converter that may only convert certain objects of <code>fromType</code>
-	 * @param <ParentType> The <code>toType</code> for a Converter that may only sometimes convert objects of <code>fromType</code>
-	 * into objects of <code>toType</code> (e.g. the converted object may only share a parent with <code>toType</code>)
 	 */
 	@Nullable
-	@SuppressWarnings("unchecked")
-	private static <F, T extends ParentType, SubType extends F, ParentType> ConverterInfo<F, T> getConverterInfo_i(
-		Class<F> fromType,
-		Class<T> toType
-	) {
-		// Check for an exact match
-		for (ConverterInfo<?, ?> info : CONVERTERS) {
-			if (fromType == info.getFrom() && toType == info.getTo()) {
-				return (ConverterInfo<F, T>) info;
+	private static <F, T> ConverterInfo<F, T> getConverterInfo_i(Class<F> fromType, Class<T> toType) {
+		// Within each kind of match, chains are considered after the registered converters, as if they had been registered last.
+		// They are only searched for once a kind of match isn't found among the registered converters.
+		List<ConverterInfo<?, ?>> chains = null;
+		for (Match match : Match.values()) {
+			// We don't want to create "maybe" converters for 'Object -> X' conversions
+			// Instead, we should just try and convert during runtime when we have a better idea of the fromType
+			if (match == Match.PARTIAL && fromType == Object.class) {
+				return new ConverterInfo<>(
+					fromType, toType, fromObject -> Converters.convert(fromObject, toType), Converter.NO_LEFT_CHAINING
+				);
 			}
-		}
 
-		// Check for an almost perfect match
-		for (ConverterInfo<?, ?> info : CONVERTERS) {
-			if (info.getFrom().isAssignableFrom(fromType) && toType.isAssignableFrom(info.getTo())) {
-				return (ConverterInfo<F, T>) info;
-			}
-		}
+			ConverterInfo<F, T> converter = findConverterInfo(fromType, toType, CONVERTERS, match);
+			if (converter != null)
+				return converter;
 
-		// We don't want to create "maybe" converters for 'Object -> X' conversions
-		// Instead, we should just try and convert during runtime when we have a better idea of the fromType
-		if (fromType == Object.class) {
-			return new ConverterInfo<>(
-				fromType, toType, fromObject -> Converters.convert(fromObject, toType), Converter.NO_LEFT_CHAINING
-			);
+			if (chains == null) {
+				chains = findChains(
+					// Converters from subtypes of Object aren't needed, as Object is handled separately above
+					info -> info.getFrom().isAssignableFrom(fromType) || (fromType != Object.class && fromType.isAssignableFrom(info.getFrom())),
+					info -> info.getTo().isAssignableFrom(toType) || toType.isAssignableFrom(info.getTo()),
+					false
+				);
+			}
+			converter = findConverterInfo(fromType, toType, chains, match);
+			if (converter != null)
+				return converter;
 		}
 
-		// Attempt to find converters that have either 'from' OR 'to' not exactly matching
-		for (ConverterInfo<?, ?> unknownInfo : CONVERTERS) {
-			if (unknownInfo.getFrom().isAssignableFrom(fromType) && unknownInfo.getTo().isAssignableFrom(toType)) {
-				ConverterInfo<F, ParentType> info = (ConverterInfo<F, ParentType>) unknownInfo;
-
-				// 'to' doesn't exactly match and needs to be filtered
-				// Basically, this converter might convert 'F' into something that's shares a parent with 'T'
-				return new ConverterInfo<>(fromType, toType, fromObject -> {
-					Object converted = info.getConverter().convert(fromObject);
-					if (toType.isInstance(converted)) {
-						return (T) converted;
-					}
-					return null;
-				}, Converter.ALL_CHAINING);
+		// No converter available
+		return null;
+	}
 
-			} else if (fromType.isAssignableFrom(unknownInfo.getFrom()) && toType.isAssignableFrom(unknownInfo.getTo())) {
-				ConverterInfo<SubType, T> info = (ConverterInfo<SubType, T>) unknownInfo;
+	/**
+	 * The kinds of matches {@link #getConverterInfo_i(Class, Class)} looks for, in order of preference.
+	 */
+	private enum Match {
+		/**
+		 * The converter converts exactly from 'from' to 'to'.
+		 */
+		EXACT,
+		/**
+		 * The converter converts from a supertype of 'from' to a subtype of 'to'.
+		 */
+		ALMOST_PERFECT,
+		/**
+		 * Either 'from' OR 'to' of the converter doesn't match, so its input or its result needs to be filtered.
+		 */
+		PARTIAL,
+		/**
+		 * Both 'from' AND 'to' of the converter don't match, so both its input and its result need to be filtered.
+		 */
+		FILTERED
+	}
 
-				// 'from' doesn't exactly match and needs to be filtered
-				// Basically, this converter will only convert certain 'F' objects
-				return new ConverterInfo<>(fromType, toType, fromObject -> {
-					if (!info.getFrom().isInstance(fromObject)) {
-						return null;
+	/**
+	 * Finds a converter for {@link #getConverterInfo_i(Class, Class)} among the given converters.
+	 *
+	 * @param converters The converters to choose from, in order of preference.
+	 * @param match The kind of match to look for.
+	 *
+	 * @param <SubType> The <code>fromType</code> for a Converter that may only convert certain objects of <code>fromType</code>
+	 * @param <ParentType> The <code>toType</code> for a Converter that may only sometimes convert objects of <code>fromType</code>
+	 * into objects of <code>toType</code> (e.g. the converted object may only share a parent with <code>toType</code>)
+	 */
+	@Nullable
+	@SuppressWarnings("unchecked")
+	private static <F, T extends ParentType, SubType extends F, ParentType> ConverterInfo<F, T> findConverterInfo(
+		Class<F> fromType,
+		Class<T> toType,
+		List<ConverterInfo<?, ?>> converters,
+		Match match
+	) {
+		switch (match) {
+			case EXACT:
+				// Check for an exact match
+				for (ConverterInfo<?, ?> info : converters) {
+					if (fromType == info.getFrom() && toType == info.getTo()) {
+						return (ConverterInfo<F, T>) info;
 					}
-					return info.getConverter().convert((SubType) fromObject);
-				}, Converter.ALL_CHAINING);
+				}
+				return null;
 
-			}
-		}
+			case ALMOST_PERFECT:
+				// Check for an almost perfect match
+				for (ConverterInfo<?, ?> info : converters) {
+					if (info.getFrom().isAssignableFrom(fromType) && toType.isAssignableFrom(info.getTo())) {
+						return (ConverterInfo<F, T>) info;
+					}
+				}
+				return null;
+
+			case PARTIAL:
+				// Attempt to find converters that have either 'from' OR 'to' not exactly matching
+				for (ConverterInfo<?, ?> unknownInfo : converters) {
+					if (unknownInfo.getFrom().isAssignableFrom(fromType) && unknownInfo.getTo().isAssignableFrom(toType)) {
+						ConverterInfo<F, ParentType> info = (ConverterInfo<F, ParentType>) unknownInfo;
+
+						// 'to' doesn't exactly match and needs to be filtered
+						// Basically, this converter might convert 'F' into something that's shares a parent with 'T'
+						return new ConverterInfo<>(fromType, toType, fromObject -> {
+							Object converted = info.getConverter().convert(fromObject);
+							if (toType.isInstance(converted)) {
+								return (T) converted;
+							}
+							return null;
+						}, Converter.ALL_CHAINING);
+
+					} else if (fromType.isAssignableFrom(unknownInfo.getFrom()) && toType.isAssignableFrom(unknownInfo.getTo())) {
+						ConverterInfo<SubType, T> info = (ConverterInfo<SubType, T>) unknownInfo;
+
+						// 'from' doesn't exactly match and needs to be filtered
+						// Basically, this converter will only convert certain 'F' objects
+						return new ConverterInfo<>(fromType, toType, fromObject -> {
+							if (!info.getFrom().isInstance(fromObject)) {
+								return null;
+							}
+							return info.getConverter().convert((SubType) fromObject);
+						}, Converter.ALL_CHAINING);
 
-		// At this point, accept both 'from' AND 'to' not exactly matching
-		for (ConverterInfo<?, ?> unknownInfo : CONVERTERS) {
-			if (fromType.isAssignableFrom(unknownInfo.getFrom()) && unknownInfo.getTo().isAssignableFrom(toType)) {
-				ConverterInfo<SubType, ParentType> info = (ConverterInfo<SubType, ParentType>) unknownInfo;
-
-				// 'from' and 'to' both don't exactly match and need to be filtered
-				// Basically, this converter will only convert certain 'F' objects
-				//   and some conversion results will only share a parent with 'T'
-				return new ConverterInfo<>(fromType, toType, fromObject -> {
-					if (!info.getFrom().isInstance(fromObject)) {
-						return null;
 					}
-					Object converted = info.getConverter().convert((SubType) fromObject);
-					if (toType.isInstance(converted)) {
-						return (T) converted;
+				}
+				return null;
+
+			case FILTERED:
+				// At this point, accept both 'from' AND 'to' not exactly matching
+				for (ConverterInfo<?, ?> unknownInfo : converters) {
+					if (fromType.isAssignableFrom(unknownInfo.getFrom()) && unknownInfo.getTo().isAssignableFrom(toType)) {
+						ConverterInfo<SubType, ParentType> info = (ConverterInfo<SubType, ParentType>) unknownInfo;
+
+						// 'from' and 'to' both don't exactly match and need to be filtered
+						// Basically, this converter will only convert certain 'F' objects
+						//   and some conversion results will only share a parent with 'T'
+						return new ConverterInfo<>(fromType, toType, fromObject -> {
+							if (!info.getFrom().isInstance(fromObject)) {
+								return null;
+							}
+							Object converted = info.getConverter().convert((SubType) fromObject);
+							if (toType.isInstance(converted)) {
+								return (T) converted;
+							}
+							return null;
+						}, Converter.ALL_CHAINING);
+
 					}
-					return null;
-				}, Converter.ALL_CHAINING);
+				}
+				return null;
 
-			}
+			default:
+				throw new IllegalStateException();
 		}
-
-
-		// No converter available
-		return null;
 	}
 
 	/**
@@ -0,0 +1,162 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.lang.util;
+
+import ch.njol.skript.SkriptAPIException;
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.util.Kleenean;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleExpressionTest {
+
+	private static final Event EVENT = new Event() {
+		@Override
+		public HandlerList getHandlers() {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	@Test
+	public void testEmptyArrays() {
+		TestExpression expression = new TestExpression(false);
+		Long[] empty = expression.getArray(EVENT);
+		assertEquals(0, empty.length);
+		assertEquals(Long.class, empty.getClass().getComponentType());
+		assertSame(empty, expression.getArray(EVENT));
+		assertSame(empty, expression.getAll(EVENT));
+		assertNull(expression.getSingle(EVENT));
+
+		expression.values = new Long[] {null, null};
+		assertSame(empty, expression.getArray(EVENT));
+		assertNull(expression.getSingle(EVENT));
+	}
+
+	@Test
+	public void testSingleValue() {
+		for (boolean fast : new boolean[] {false, true}) {
+			TestExpression expression = new TestExpression(fast);
+			expression.values = new Long[] {5L};
+			assertEquals(Long.valueOf(5), expression.getSingle(EVENT));
+			assertArrayEquals(new Long[] {5L}, expression.getArray(EVENT));
+		}
+
+		TestExpression expression = new TestExpression(false);
+		expression.values = new Long[] {null, 7L, null};
+		assertEquals(Long.valueOf(7), expression.getSingle(EVENT));
+	}
+
+	@Test(expected = SkriptAPIException.class)
+	public void testSeveralValues() {
+		TestExpression expression = new TestExpression(false);
+		expression.values = new Long[] {1L, 2L};
+		expression.getSingle(EVENT);
+	}
+
+	/**
+	 * Checks that {@link SimpleExpression#getSingle(Event)} doesn't allocate anything
+	 * with an overridden {@link SimpleExpression#getSingleValue(Event)}, unlike going through {@link SimpleExpression#getArray(Event)}.
+	 */
+	@Test
+	public void testSingleValueAllocations() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean
+			&& ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported());
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+
+		TestExpression expression = new TestExpression(true);
+		expression.values = new Long[] {5L};
+
+		int iterations = 1_000_000;
+		allocated(bean, iterations, () -> expression.getSingle(EVENT)); // warm-up
+		long allocated = allocated(bean, iterations, () -> expression.getSingle(EVENT));
+		// Allow for a few bytes allocated by measuring itself
+		assertTrue("getSingle() allocated " + allocated + " bytes in " + iterations + " evaluations", allocated < 1024);
+	}
+
+	private static Object sink;
+
+	private static long allocated(com.sun.management.ThreadMXBean bean, int iterations, java.util.function.Supplier<Object> evaluation) {
+		long threadId = Thread.currentThread().getId();
+		long before = bean.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < iterations; i++)
+			sink = evaluation.get();
+		return bean.getThreadAllocatedBytes(threadId) - before;
+	}
+
+	private static class TestExpression extends SimpleExpression<Long> {
+
+		private final boolean overrideSingle;
+		@Nullable
+		private Long[] values;
+
+		TestExpression(boolean overrideSingle) {
+			this.overrideSingle = overrideSingle;
+		}
+
+		@Override
+		@Nullable
+		protected Long[] get(Event event) {
+			return values == null ? null : values.clone();
+		}
+
+		@Override
+		@Nullable
+		protected Long getSingleValue(Event event) {
+			if (!overrideSingle || values == null)
+				return super.getSingleValue(event);
+			return values[0];
+		}
+
+		@Override
+		public boolean isSingle() {
+			return true;
+		}
+
+		@Override
+		public Class<? extends Long> getReturnType() {
+			return Long.class;
+		}
+
+		@Override
+		public boolean init(Expression<?>[] expressions, int matchedPattern, Kleenean isDelayed, ParseResult parseResult) {
+			return true;
+		}
+
+		@Override
+		public String toString(@Nullable Event event, boolean debug) {
+			return "test expression";
+		}
+
+	}
+
+}
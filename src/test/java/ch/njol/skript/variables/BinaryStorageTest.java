@@ -0,0 +1,116 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class BinaryStorageTest {
+
+	private static final String[] TYPES = {"string", "long", "location", "itemtype"};
+
+	private static List<Object[]> createVariables(int count) {
+		Random random = new Random(42);
+		List<Object[]> variables = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			String name = random.nextInt(4) == 0 ? "länge::" + i : "player::" + (i / 10) + "::home::" + i;
+			byte[] value = new byte[random.nextInt(4) == 0 ? 0 : random.nextInt(300)];
+			random.nextBytes(value);
+			variables.add(new Object[] {name, TYPES[random.nextInt(TYPES.length)], value});
+		}
+		return variables;
+	}
+
+	private static void write(File file, List<Object[]> variables) throws IOException {
+		try (BinaryStorage.Writer writer = new BinaryStorage.Writer(file)) {
+			for (Object[] variable : variables)
+				writer.write((String) variable[0], (String) variable[1], (byte[]) variable[2]);
+		}
+	}
+
+	private static void assertReads(File file, List<Object[]> variables, ExecutorService executor) throws IOException {
+		List<Object[]> read = new ArrayList<>();
+		BinaryStorage.read(file, executor, (name, type, value) -> read.add(new Object[] {name, type, value}));
+		assertEquals(variables.size(), read.size());
+		for (int i = 0; i < variables.size(); i++)
+			assertArrayEquals(variables.get(i), read.get(i));
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = File.createTempFile("variables", ".skv");
+		try {
+			// Enough variables for many blocks
+			List<Object[]> variables = createVariables(20_000);
+			write(file, variables);
+			assertTrue(BinaryStorage.isBinary(file));
+
+			assertReads(file, variables, null);
+			ExecutorService executor = Executors.newFixedThreadPool(3);
+			try {
+				assertReads(file, variables, executor);
+			} finally {
+				executor.shutdownNow();
+			}
+
+			// Reading doesn't keep the checkpoint in use, so it can be replaced right away
+			write(file, new ArrayList<>());
+			assertReads(file, new ArrayList<>(), null);
+		} finally {
+			Files.delete(file.toPath());
+		}
+	}
+
+	@Test
+	public void testInvalidFiles() throws IOException {
+		File file = File.createTempFile("variables", ".csv");
+		try {
+			assertFalse(BinaryStorage.isBinary(file));
+			Files.write(file.toPath(), "# version: 2.7.0\nname, string, 0123\n".getBytes());
+			assertFalse(BinaryStorage.isBinary(file));
+
+			write(file, createVariables(100));
+			try (RandomAccessFile truncated = new RandomAccessFile(file, "rw")) {
+				truncated.setLength(truncated.length() - 1);
+			}
+			try {
+				BinaryStorage.read(file, null, (name, type, value) -> {});
+				fail("Truncated file was read");
+			} catch (IOException ignored) {}
+		} finally {
+			Files.delete(file.toPath());
+		}
+	}
+
+}
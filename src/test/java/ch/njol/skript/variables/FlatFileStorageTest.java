@@ -19,13 +19,227 @@
 package ch.njol.skript.variables;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.junit.Test;
 
+import ch.njol.skript.registrations.Classes;
+
 public class FlatFileStorageTest {
 
+	/**
+	 * A storage in the given folder that stores all variables, regardless of the configured storages.
+	 */
+	private static final class TestStorage extends FlatFileStorage {
+
+		TestStorage(File folder) {
+			super("flat file storage test");
+			file = new File(folder, "variables.csv");
+		}
+
+		@Override
+		boolean isStorageOf(String name) {
+			return true;
+		}
+
+	}
+
+	/**
+	 * Reads the checkpoint and the change log of the given storage, as when loading it.
+	 */
+	private static Map<String, Object> read(FlatFileStorage storage) throws IOException {
+		Map<String, Object> variables = new HashMap<>();
+		FlatFileStorage.LoadErrors errors = new FlatFileStorage.LoadErrors();
+		storage.readVariables(errors, (name, value) -> {
+			if (value == null) {
+				variables.remove(name);
+			} else {
+				variables.put(name, value);
+			}
+		});
+		assertEquals(errors.invalid.toString(), 0, errors.unsuccessfulVariableCount);
+		return variables;
+	}
+
+	/**
+	 * Changes a variable in memory and appends the change to the change log of the given storage.
+	 */
+	private static void set(FlatFileStorage storage, VariablesMap variables, String name, @Nullable Object value) {
+		variables.setVariable(name, value);
+		if (value == null) {
+			assertTrue(storage.save(name, null, null));
+		} else {
+			SerializedVariable.Value serialized = Classes.serialize(value);
+			assertNotNull(serialized);
+			assertTrue(storage.save(name, serialized.type, serialized.data));
+		}
+	}
+
+	/**
+	 * @return The variables in the given map, as read by {@link #read(FlatFileStorage)}.
+	 */
+	private static Map<String, Object> toMap(VariablesMap variables) {
+		Map<String, Object> map = new HashMap<>();
+		new TestStorage(new File(".")).forEachVariable(new VariablesMap[] {variables},
+			(name, value) -> map.put(name, Classes.deserialize(value.type, value.data)));
+		return map;
+	}
+
+	private static long getChangeLogSize(File folder) {
+		long size = 0;
+		File[] files = folder.listFiles((dir, name) -> name.matches("variables\\.csv\\.\\d+\\.log"));
+		assertNotNull(files);
+		for (File segment : files)
+			size += segment.length();
+		return size;
+	}
+
+	private static void delete(File folder) throws IOException {
+		File[] files = folder.listFiles();
+		if (files != null) {
+			for (File file : files)
+				Files.delete(file.toPath());
+		}
+		Files.delete(folder.toPath());
+	}
+
+	@Test
+	public void testChangeLog() throws IOException {
+		File folder = Files.createTempDirectory("variables").toFile();
+		try {
+			VariablesMap variables = new VariablesMap();
+			variables.setVariable("a", "checkpoint a");
+			variables.setVariable("b", "checkpoint b");
+			variables.setVariable("list::1", 1L);
+			TestStorage storage = new TestStorage(folder);
+			assertNotNull(storage.file);
+			storage.writeCheckpoint(storage.file, new VariablesMap[] {variables});
+			assertEquals(toMap(variables), read(storage));
+
+			// The change log overrides the checkpoint
+			assertTrue(storage.connect());
+			set(storage, variables, "a", "changed a");
+			set(storage, variables, "b", null);
+			set(storage, variables, "list::2", 2L);
+			set(storage, variables, "c", "new c");
+			storage.disconnect();
+
+			storage = new TestStorage(folder);
+			Map<String, Object> read = read(storage);
+			assertEquals(toMap(variables), read);
+			assertEquals("changed a", read.get("a"));
+			// A deleted variable stays deleted
+			assertFalse(read.containsKey("b"));
+
+			// Changes of a later session are appended to a new segment, which overrides the earlier ones
+			assertTrue(storage.connect());
+			set(storage, variables, "b", "b again");
+			set(storage, variables, "c", null);
+			storage.disconnect();
+
+			assertEquals(toMap(variables), read(new TestStorage(folder)));
+			assertTrue(new File(folder, "variables.csv.0.log").exists());
+			assertTrue(new File(folder, "variables.csv.1.log").exists());
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		File folder = Files.createTempDirectory("variables").toFile();
+		try {
+			VariablesMap variables = new VariablesMap();
+			TestStorage storage = new TestStorage(folder);
+			assertNotNull(storage.file);
+			storage.writeCheckpoint(storage.file, new VariablesMap[] {variables});
+			read(storage);
+
+			assertTrue(storage.connect());
+			for (int i = 0; i < 100; i++)
+				set(storage, variables, "player::" + i + "::name", "player " + i);
+			for (int i = 0; i < 100; i += 3)
+				set(storage, variables, "player::" + i + "::name", null);
+			set(storage, variables, "player::1::name", "changed");
+			File oldSegment = new File(folder, "variables.csv.0.log");
+			byte[] oldChanges = Files.readAllBytes(oldSegment.toPath());
+
+			storage.saveVariables(false, () -> new VariablesMap[] {variables});
+			// The merged segment is deleted, and changes continue in a new one
+			assertFalse(oldSegment.exists());
+			set(storage, variables, "player::2::name", null);
+			set(storage, variables, "player::100::name", "player 100");
+			storage.disconnect();
+
+			// The new checkpoint and the change log contain the same variables as before
+			Map<String, Object> expected = toMap(variables);
+			assertEquals(expected, read(new TestStorage(folder)));
+			assertEquals(66, expected.size());
+
+			// Segments that couldn't be deleted are merged again, which doesn't change any variable
+			Files.write(oldSegment.toPath(), oldChanges);
+			assertEquals(expected, read(new TestStorage(folder)));
+
+			storage = new TestStorage(folder);
+			read(storage);
+			assertTrue(storage.connect());
+			storage.saveVariables(true, () -> new VariablesMap[] {variables});
+			assertEquals(0, getChangeLogSize(folder));
+			assertEquals(expected, read(new TestStorage(folder)));
+		} finally {
+			delete(folder);
+		}
+	}
+
+	@Test
+	public void testCompactionRatio() throws IOException {
+		File folder = Files.createTempDirectory("variables").toFile();
+		try {
+			VariablesMap variables = new VariablesMap();
+			for (int i = 0; i < 2000; i++)
+				variables.setVariable("value::" + i, "a value long enough to make the checkpoint larger than the minimal change log " + i);
+			TestStorage storage = new TestStorage(folder);
+			assertNotNull(storage.file);
+			storage.writeCheckpoint(storage.file, new VariablesMap[] {variables});
+			long checkpointSize = storage.file.length();
+			assertTrue(checkpointSize > 2 * 64 * 1024);
+
+			storage.compactionRatio = 0.5;
+			read(storage);
+			assertTrue(storage.connect());
+			assertFalse(storage.isCompactionRequired());
+
+			// The change log is compacted once it is half as large as the checkpoint
+			for (int i = 0; ; i++) {
+				set(storage, variables, "value::" + (i % 2000), "changed value " + i);
+				long changeLogSize = getChangeLogSize(folder);
+				boolean required = changeLogSize >= 0.5 * checkpointSize;
+				assertEquals("change log of " + changeLogSize + " bytes", required, storage.isCompactionRequired());
+				if (required)
+					break;
+			}
+
+			storage.saveVariables(false, () -> new VariablesMap[] {variables});
+			assertFalse(storage.isCompactionRequired());
+			storage.requireCompaction();
+			assertTrue(storage.isCompactionRequired());
+			storage.disconnect();
+			assertEquals(toMap(variables), read(new TestStorage(folder)));
+		} finally {
+			delete(folder);
+		}
+	}
+
 	@Test
 	public void testHexCoding() {
 		byte[] bytes = {-0x80, -0x50, -0x01, 0x00, 0x01, 0x44, 0x7F};
@@ -0,0 +1,55 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+public class LazyVariablesTest {
+
+	@Test
+	@SuppressWarnings("null")
+	public void testGroups() {
+		LazyVariables lazyVariables = new LazyVariables(null, Pattern.compile("playerdata::[^:]+"), 1);
+
+		assertEquals("playerdata::abc", lazyVariables.getGroup("playerdata::abc"));
+		assertEquals("playerdata::abc", lazyVariables.getGroup("playerdata::abc::kills"));
+		assertEquals("playerdata::abc", lazyVariables.getGroup("playerdata::abc::homes::1"));
+		assertEquals("playerdata::abc", lazyVariables.getGroup("playerdata::abc::*"));
+
+		// The list of all groups and unrelated variables aren't loaded lazily
+		assertNull(lazyVariables.getGroup("playerdata::*"));
+		assertNull(lazyVariables.getGroup("playerdata"));
+		assertNull(lazyVariables.getGroup("other::abc::kills"));
+		assertNull(lazyVariables.getGroup("playerdataabc"));
+
+		// Only the first part of names that may belong to a group needs to be checked further
+		assertTrue(lazyVariables.mayHaveGroup("playerdata"));
+		assertTrue(lazyVariables.mayHaveGroup("player"));
+		assertFalse(lazyVariables.mayHaveGroup("playerdataabc"));
+		assertFalse(lazyVariables.mayHaveGroup("other"));
+	}
+
+}
@@ -0,0 +1,148 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares writing variables to a local SQLite database one by one, as {@link SQLStorage} used to,
+ * with writing them in batches.
+ */
+public class SQLStorageTest {
+
+	private static final int CHANGES = 50_000;
+	private static final int BATCH_SIZE = 500;
+
+	private static final String TABLE = "variables21";
+	private static final String GUID = "00000000-0000-0000-0000-000000000000";
+
+	private static List<SerializedVariable> createChanges() {
+		Random random = new Random(42);
+		List<SerializedVariable> changes = new ArrayList<>(CHANGES);
+		for (int i = 0; i < CHANGES; i++) {
+			String name = "player::" + random.nextInt(CHANGES / 4) + "::balance";
+			if (random.nextInt(10) == 0) {
+				changes.add(new SerializedVariable(name, null));
+			} else {
+				byte[] data = new byte[8 + random.nextInt(64)];
+				random.nextBytes(data);
+				changes.add(new SerializedVariable(name, new SerializedVariable.Value("long", data)));
+			}
+		}
+		return changes;
+	}
+
+	private static Connection connect(File file) throws SQLException {
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+		try (Statement statement = connection.createStatement()) {
+			// The table of SQLiteStorage
+			statement.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (" +
+				"name         VARCHAR(" + SQLStorage.MAX_VARIABLE_NAME_LENGTH + ")  NOT NULL  PRIMARY KEY," +
+				"type         VARCHAR(" + SQLStorage.MAX_CLASS_CODENAME_LENGTH + ")," +
+				"value        BLOB(" + SQLStorage.MAX_VALUE_SIZE + ")," +
+				"update_guid  CHAR(36)  NOT NULL" +
+				")");
+		}
+		connection.setAutoCommit(false);
+		return connection;
+	}
+
+	private static Map<String, byte[]> readVariables(Connection connection) throws SQLException {
+		Map<String, byte[]> variables = new LinkedHashMap<>();
+		try (Statement statement = connection.createStatement();
+			 ResultSet result = statement.executeQuery("SELECT name, value FROM " + TABLE + " ORDER BY name")) {
+			while (result.next())
+				variables.put(result.getString(1), result.getBytes(2));
+		}
+		return variables;
+	}
+
+	private static void writeSeparately(Connection connection, List<SerializedVariable> changes) throws SQLException {
+		try (PreparedStatement writeQuery = connection.prepareStatement(SQLStorage.getWriteQuery(TABLE, 1));
+			 PreparedStatement deleteQuery = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE name = ?")) {
+			for (SerializedVariable change : changes) {
+				SerializedVariable.Value value = change.value;
+				if (value == null) {
+					deleteQuery.setString(1, change.name);
+					deleteQuery.executeUpdate();
+				} else {
+					writeQuery.setString(1, change.name);
+					writeQuery.setString(2, value.type);
+					writeQuery.setBytes(3, value.data);
+					writeQuery.setString(4, GUID);
+					writeQuery.executeUpdate();
+				}
+			}
+			connection.commit();
+		}
+	}
+
+	private static void writeBatched(Connection connection, List<SerializedVariable> changes) throws SQLException {
+		try (PreparedStatement multiRowWriteQuery = connection.prepareStatement(SQLStorage.getWriteQuery(TABLE, SQLStorage.ROWS_PER_STATEMENT));
+			 PreparedStatement writeQuery = connection.prepareStatement(SQLStorage.getWriteQuery(TABLE, 1));
+			 PreparedStatement deleteQuery = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE name = ?")) {
+			for (int i = 0; i < changes.size(); i += BATCH_SIZE) {
+				// Like SQLStorage#saveBatch, only the last change of each variable is written
+				Map<String, SerializedVariable> lastChanges = new LinkedHashMap<>();
+				for (SerializedVariable change : changes.subList(i, Math.min(i + BATCH_SIZE, changes.size())))
+					lastChanges.put(change.name, change);
+				SQLStorage.writeBatch(multiRowWriteQuery, writeQuery, deleteQuery, lastChanges.values(), GUID);
+				connection.commit();
+			}
+		}
+	}
+
+	@Test
+	public void testBatchedWrites() throws Exception {
+		List<SerializedVariable> changes = createChanges();
+		File separateFile = File.createTempFile("variables", ".db");
+		File batchedFile = File.createTempFile("variables", ".db");
+		try (Connection separate = connect(separateFile); Connection batched = connect(batchedFile)) {
+			writeSeparately(separate, changes);
+			writeBatched(batched, changes);
+
+			Map<String, byte[]> expected = readVariables(separate);
+			Map<String, byte[]> actual = readVariables(batched);
+			assertEquals(expected.keySet(), actual.keySet());
+			for (Map.Entry<String, byte[]> entry : expected.entrySet())
+				assertArrayEquals(entry.getValue(), actual.get(entry.getKey()));
+		} finally {
+			Files.delete(separateFile.toPath());
+			Files.delete(batchedFile.toPath());
+		}
+	}
+
+}
@@ -0,0 +1,286 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class VariablesMapTest {
+
+	/**
+	 * Appends values the same way {@link ch.njol.skript.lang.Variable} adds to a list variable.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void add(VariablesMap variables, String list, Object value) {
+		Map<String, Object> map = (Map<String, Object>) variables.getVariable(list + "::*");
+		int index = map == null ? 1 : Variables.getNextFreeListIndex(map, 1);
+		variables.setVariable(list + "::" + index, value);
+	}
+
+	@Test
+	public void testNextFreeListIndex() {
+		VariablesMap variables = new VariablesMap();
+		for (int i = 1; i <= 5; i++)
+			add(variables, "list", i);
+		assertEquals(5, variables.hashMap.size());
+
+		// Deleting an index makes it the next free one
+		variables.setVariable("list::2", null);
+		add(variables, "list", "a");
+		assertEquals("a", variables.getVariable("list::2"));
+		add(variables, "list", "b");
+		assertEquals("b", variables.getVariable("list::6"));
+
+		// Indices set directly are skipped
+		variables.setVariable("list::7", "c");
+		add(variables, "list", "d");
+		assertEquals("d", variables.getVariable("list::8"));
+
+		// Non-numerical and zero-padded indices don't count
+		variables.setVariable("list::09", "e");
+		variables.setVariable("list::key", "f");
+		add(variables, "list", "g");
+		assertEquals("g", variables.getVariable("list::9"));
+
+		// Turning an index into a sublist keeps it in use, deleting the sublist frees it
+		variables.setVariable("list::3::sub", "h");
+		variables.setVariable("list::3", null);
+		variables.setVariable("list::3::*", null);
+		add(variables, "list", "i");
+		assertEquals("i", variables.getVariable("list::3"));
+
+		// Copies keep working independently
+		VariablesMap copy = variables.copy();
+		copy.setVariable("list::1", null);
+		add(copy, "list", "j");
+		add(variables, "list", "k");
+		assertEquals("j", copy.getVariable("list::1"));
+		assertEquals("k", variables.getVariable("list::10"));
+	}
+
+	/**
+	 * Appending used to probe every index from 1 onwards, making this quadratic.
+	 */
+	@Test(timeout = 10_000)
+	public void testListAppendBenchmark() {
+		int size = 200_000;
+		VariablesMap variables = new VariablesMap();
+
+		for (int i = 0; i < size; i++)
+			add(variables, "list", i);
+
+		assertEquals(size, variables.hashMap.size());
+		assertEquals(size - 1, variables.getVariable("list::" + size));
+	}
+
+	@Test
+	public void testCopyOnWrite() {
+		VariablesMap variables = new VariablesMap();
+		variables.setVariable("a", 1);
+		variables.setVariable("list::1", "x");
+		variables.setVariable("list::2::1", "y");
+		variables.setVariable("other::1", "z");
+
+		// Changes to a copy don't affect the original, even in nested lists
+		VariablesMap copy = variables.copy();
+		copy.setVariable("a", 2);
+		copy.setVariable("list::2::1", "changed");
+		copy.setVariable("list::3", "added");
+		assertEquals(1, variables.getVariable("a"));
+		assertEquals("y", variables.getVariable("list::2::1"));
+		assertNull(variables.getVariable("list::3"));
+		assertEquals(2, copy.getVariable("a"));
+		assertEquals("changed", copy.getVariable("list::2::1"));
+		assertEquals("x", copy.getVariable("list::1"));
+
+		// Lists that weren't changed are still shared
+		assertSame(variables.treeMap.get("other"), copy.treeMap.get("other"));
+
+		// Neither do changes to the original affect the copy
+		variables.setVariable("list::*", null);
+		variables.setVariable("other::1", "changed");
+		assertNull(variables.getVariable("list::1"));
+		assertEquals("x", copy.getVariable("list::1"));
+		assertEquals("z", copy.getVariable("other::1"));
+
+		assertEquals(5, copy.hashMap.size());
+
+		// Copies of copies
+		VariablesMap copyOfCopy = copy.copy();
+		copyOfCopy.setVariable("list::*", null);
+		assertEquals("x", copy.getVariable("list::1"));
+		assertNull(copyOfCopy.getVariable("list::1"));
+		assertEquals(2, copyOfCopy.getVariable("a"));
+	}
+
+	/**
+	 * Copying used to deep copy all variables, making it linear in their amount.
+	 */
+	@Test(timeout = 10_000)
+	public void testCopyBenchmark() {
+		int size = 100_000;
+		VariablesMap variables = new VariablesMap();
+		for (int i = 1; i <= size; i++)
+			variables.setVariable("list::" + i, i);
+		variables.setVariable("counter", 0);
+
+		VariablesMap current = variables;
+		for (int i = 1; i <= size; i++) {
+			current = current.copy();
+			current.setVariable("counter", i);
+		}
+
+		assertEquals(size, current.getVariable("counter"));
+		assertEquals(size, current.getVariable("list::" + size));
+		assertEquals(0, variables.getVariable("counter"));
+	}
+
+	@Test
+	public void testCompactMap() {
+		VariablesMap variables = new VariablesMap(true);
+		variables.setVariable("a", 1);
+		variables.setVariable("a::1", 2);
+		variables.setVariable("a::2::b", 3);
+		variables.setVariable("a::", 4);
+
+		// List indices are only stored in the tree
+		assertEquals(1, variables.hashMap.size());
+		assertEquals(1, variables.getVariable("a"));
+		assertEquals(2, variables.getVariable("a::1"));
+		assertEquals(3, variables.getVariable("a::2::b"));
+		assertEquals(4, variables.getVariable("a::"));
+		assertNull(variables.getVariable("a::2"));
+		assertNull(variables.getVariable("a::1::b"));
+		assertEquals(4, variables.size());
+
+		Map<String, Object> byName = new HashMap<>(variables.byName());
+		assertEquals(4, byName.size());
+		assertEquals(3, byName.get("a::2::b"));
+
+		// Copies are snapshots, e.g. for saving global variables while they are being changed
+		VariablesMap snapshot = variables.copy();
+		variables.setVariable("a::*", null);
+		variables.setVariable("b::1", 5);
+		assertNull(variables.getVariable("a::1"));
+		assertEquals(1, variables.getVariable("a"));
+		assertEquals(2, variables.size());
+		assertEquals(byName, new HashMap<>(snapshot.byName()));
+	}
+
+	/**
+	 * Compact maps used to store the full name of every variable besides its place in the tree of lists,
+	 * now they only store the name of each index, which is shared between lists if it is short.
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testCompactMapNames() {
+		int players = 1000;
+		String[] stats = {"kills", "deaths", "joins", "blocks broken", "time played"};
+		VariablesMap variables = new VariablesMap(true);
+		for (int i = 0; i < players; i++) {
+			for (String stat : stats)
+				variables.setVariable("playerdata::" + new UUID(i, -i) + "::stats::" + stat, (long) i);
+		}
+		assertEquals(players * stats.length, variables.size());
+
+		// The full names of list indices aren't stored
+		assertEquals(0, variables.hashMap.size());
+
+		// Each list stores the name of the index, but the same instance of it
+		Map<String, Object> first = (Map<String, Object>) variables.getVariable("playerdata::" + new UUID(0, 0) + "::stats::*");
+		Map<String, Object> last = (Map<String, Object>) variables.getVariable("playerdata::" + new UUID(players - 1, 1 - players) + "::stats::*");
+		assertNotNull(first);
+		assertNotNull(last);
+		assertEquals(stats.length, first.size());
+		for (String stat : stats) {
+			assertSame(getKey(first, stat), getKey(last, stat));
+			assertEquals(stat, getKey(first, stat));
+		}
+
+		// Long index names, e.g. UUIDs, are mostly unique, so they aren't shared
+		Map<String, Object> playerData = (Map<String, Object>) variables.getVariable("playerdata::*");
+		assertNotNull(playerData);
+		assertEquals(players, playerData.size());
+		assertTrue(playerData.containsKey(new UUID(0, 0).toString()));
+	}
+
+	/**
+	 * @return The instance of the given index name that the list stores.
+	 */
+	private static String getKey(Map<String, Object> list, String index) {
+		for (String key : list.keySet()) {
+			if (index.equals(key))
+				return key;
+		}
+		throw new AssertionError("Missing index " + index + " in " + list);
+	}
+
+	@Test
+	public void testLocalVariableSlots() {
+		LocalVariableLayout layout = new LocalVariableLayout();
+		int a = layout.getOrCreateSlot("a");
+		int b = layout.getOrCreateSlot("b");
+		assertEquals(a, layout.getOrCreateSlot("a"));
+
+		// Variables set by name before the layout is used, e.g. function parameters, are moved to their slots
+		VariablesMap variables = new VariablesMap();
+		variables.setVariable("a", 1);
+		variables.setVariable("a::1", 2);
+		variables.setVariable("c", 3);
+		assertEquals(1, variables.getVariable(layout, a, "a"));
+		assertNull(variables.hashMap.get("a"));
+
+		// Slots and names refer to the same variables
+		variables.setVariable(layout, b, "b", 4);
+		assertEquals(4, variables.getVariable("b"));
+		variables.setVariable("a", 5);
+		assertEquals(5, variables.getVariable(layout, a, "a"));
+		assertEquals(3, variables.getVariable("c"));
+
+		// List variables of the same name are unaffected
+		assertEquals(2, variables.getVariable("a::1"));
+		variables.setVariable("a::*", null);
+		assertNull(variables.getVariable("a::1"));
+		assertEquals(5, variables.getVariable(layout, a, "a"));
+
+		// Copies don't share slots
+		VariablesMap copy = variables.copy();
+		copy.setVariable(layout, b, "b", null);
+		assertNull(copy.getVariable("b"));
+		assertEquals(4, variables.getVariable("b"));
+
+		// Other layouts fall back to names
+		LocalVariableLayout other = new LocalVariableLayout();
+		other.getOrCreateSlot("c");
+		int otherB = other.getOrCreateSlot("b");
+		assertEquals(4, variables.getVariable(other, otherB, "b"));
+		variables.setVariable(other, otherB, "b", 6);
+		assertEquals(6, variables.getVariable(layout, b, "b"));
+	}
+
+}
@@ -0,0 +1,176 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package org.skriptlang.skript.test.tests.syntaxes;
+
+import ch.njol.skript.lang.Condition;
+import ch.njol.skript.lang.Effect;
+import ch.njol.skript.lang.TriggerItem;
+import ch.njol.skript.lang.util.ContextlessEvent;
+import ch.njol.skript.variables.Variables;
+import org.bukkit.event.Event;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that list variables named in the 'indexed list variables' option, which keep a reverse index of their values,
+ * behave the same as other lists for {@code remove}, {@code remove all} and {@code contains}.
+ */
+public class IndexedListVariablesTest {
+
+	private static final String INDEXED = "indexed list test::*";
+	private static final String UNINDEXED = "unindexed list test::*";
+
+	private Set<String> indexedListVariables;
+	private Event event;
+
+	@Before
+	public void setup() {
+		indexedListVariables = Variables.indexedListVariables;
+		event = ContextlessEvent.get();
+		// lists only get an index when they are created
+		Variables.indexedListVariables = Collections.singleton(INDEXED);
+		Variables.deleteVariable(INDEXED, event, false);
+		Variables.deleteVariable(UNINDEXED, event, false);
+	}
+
+	@After
+	public void cleanup() {
+		Variables.deleteVariable(INDEXED, event, false);
+		Variables.deleteVariable(UNINDEXED, event, false);
+		Variables.indexedListVariables = indexedListVariables;
+	}
+
+	private void run(String effect) {
+		Effect parsed = Effect.parse(effect, null);
+		Assert.assertNotNull(effect, parsed);
+		TriggerItem.walk(parsed, event);
+	}
+
+	private boolean check(String condition) {
+		Condition parsed = Condition.parse(condition, null);
+		Assert.assertNotNull(condition, parsed);
+		return parsed.check(event);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> getList(String name) {
+		Map<String, Object> list = (Map<String, Object>) Variables.getVariable(name, event, false);
+		Assert.assertNotNull(name, list);
+		return list;
+	}
+
+	@Test
+	public void testIndexedList() {
+		run("set {indexed list test::*} to 1, 2, 3, 2 and \"a\"");
+		Assert.assertTrue(Variables.isIndexedList(getList(INDEXED)));
+		Assert.assertEquals(Arrays.asList("2", "4"), Variables.getListIndicesOf(getList(INDEXED), 2L));
+
+		Assert.assertTrue(check("{indexed list test::*} contains 2"));
+		Assert.assertTrue(check("{indexed list test::*} contains \"a\""));
+		Assert.assertTrue(check("{indexed list test::*} contains 1 and 3"));
+		Assert.assertTrue(check("{indexed list test::*} contains 1 or 4"));
+		Assert.assertFalse(check("{indexed list test::*} contains 1 and 4"));
+		Assert.assertFalse(check("{indexed list test::*} contains 4"));
+		Assert.assertTrue(check("{indexed list test::*} does not contain 4"));
+		Assert.assertFalse(check("{indexed list test::*} does not contain 2"));
+
+		// only the first index holding the value is removed
+		run("remove 2 from {indexed list test::*}");
+		Assert.assertNull(Variables.getVariable("indexed list test::2", event, false));
+		Assert.assertNotNull(Variables.getVariable("indexed list test::4", event, false));
+		Assert.assertTrue(check("{indexed list test::*} contains 2"));
+
+		run("add 2 to {indexed list test::*}");
+		run("remove all 2 from {indexed list test::*}");
+		Assert.assertEquals(Collections.emptyList(), Variables.getListIndicesOf(getList(INDEXED), 2L));
+		Assert.assertFalse(check("{indexed list test::*} contains 2"));
+		Assert.assertTrue(check("{indexed list test::*} contains 1 and 3"));
+
+		run("remove all \"a\" and 1 from {indexed list test::*}");
+		Assert.assertFalse(check("{indexed list test::*} contains \"a\" or 1"));
+		Assert.assertTrue(check("{indexed list test::*} contains 3"));
+	}
+
+	@Test
+	public void testMixedValues() {
+		// decimals don't have a key, and may be equal to integers, so the index can't be used for either
+		run("set {indexed list test::*} to 1, 2.5, 3 and \"a\"");
+		Assert.assertTrue(Variables.isIndexedList(getList(INDEXED)));
+		Assert.assertNull(Variables.getListIndicesOf(getList(INDEXED), 1L));
+		Assert.assertNull(Variables.getListIndicesOf(getList(INDEXED), 2.5));
+
+		Assert.assertTrue(check("{indexed list test::*} contains 2.5"));
+		Assert.assertTrue(check("{indexed list test::*} contains 1 and 2.5"));
+		Assert.assertTrue(check("{indexed list test::*} contains 3.0"));
+		Assert.assertFalse(check("{indexed list test::*} contains 2"));
+		Assert.assertFalse(check("{indexed list test::*} contains 1 and 4.5"));
+
+		run("remove 2.5 from {indexed list test::*}");
+		Assert.assertFalse(check("{indexed list test::*} contains 2.5"));
+		run("remove all 1 and 3.0 from {indexed list test::*}");
+		Assert.assertFalse(check("{indexed list test::*} contains 1 or 3"));
+		Assert.assertTrue(check("{indexed list test::*} contains \"a\""));
+	}
+
+	@Test
+	public void testNestedList() {
+		run("set {indexed list test::1} to 1");
+		run("set {indexed list test::nested} to 5");
+		run("set {indexed list test::nested::1} to 6");
+		// the values of a list include the values of its nested lists, which aren't indexed
+		Assert.assertFalse(Variables.isIndexedList(getList(INDEXED)));
+
+		Assert.assertTrue(check("{indexed list test::*} contains 1"));
+		Assert.assertTrue(check("{indexed list test::*} contains 5"));
+		Assert.assertFalse(check("{indexed list test::*} contains 6"));
+
+		// indices holding a nested list are never removed by value
+		run("remove 5 from {indexed list test::*}");
+		Assert.assertNotNull(Variables.getVariable("indexed list test::nested", event, false));
+		run("remove all 1 from {indexed list test::*}");
+		Assert.assertNull(Variables.getVariable("indexed list test::1", event, false));
+		Assert.assertEquals(6L, Variables.getVariable("indexed list test::nested::1", event, false));
+	}
+
+	@Test
+	public void testUnindexedList() {
+		run("set {unindexed list test::*} to 1, 2, 3, 2 and \"a\"");
+		Assert.assertFalse(Variables.isIndexedList(getList(UNINDEXED)));
+		Assert.assertNull(Variables.getListIndicesOf(getList(UNINDEXED), 2L));
+
+		Assert.assertTrue(check("{unindexed list test::*} contains 2"));
+		Assert.assertTrue(check("{unindexed list test::*} contains 1 and \"a\""));
+		Assert.assertFalse(check("{unindexed list test::*} contains 4"));
+
+		run("remove 2 from {unindexed list test::*}");
+		Assert.assertNull(Variables.getVariable("unindexed list test::2", event, false));
+		Assert.assertTrue(check("{unindexed list test::*} contains 2"));
+		run("remove all 2 from {unindexed list test::*}");
+		Assert.assertFalse(check("{unindexed list test::*} contains 2"));
+		Assert.assertTrue(check("{unindexed list test::*} contains 1 and 3"));
+	}
+
+}